@@ -0,0 +1,144 @@
+package org.gedcomx.conversion;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.tools.SyntheticGedcomGenerator;
+
+
+/**
+ * The GEDCOM 5.5 files the benchmarks run over:
+ * <ul>
+ *   <li><code>small</code>: a handful of records (Case007-SourceCitations.ged)</li>
+ *   <li><code>medium</code>: a real-world tree of a few hundred persons (Fam001.ged)</li>
+ *   <li><code>large</code>: the medium tree repeated <code>-Dbenchmark.copies</code> times (100 by default, about 38,000
+ *   persons) with the identifiers renamed per copy. Use e.g. 5000 copies for about two million persons; the file is
+ *   generated once in the temporary directory and reused by later runs.</li>
+ *   <li><code>synthetic</code>: a tree of <code>-Dbenchmark.persons</code> persons (50,000 by default) from the
+ *   {@link SyntheticGedcomGenerator} with its default ratios and <code>-Dbenchmark.seed</code> (1 by default), also
+ *   generated once in the temporary directory.</li>
+ * </ul>
+ */
+public class BenchmarkInputs {
+
+  private static final Pattern XREF = Pattern.compile("@([^@\\s]+)@");
+
+  public static File file(String input) throws IOException {
+    switch (input) {
+      case "small":
+        return resource("Case007-SourceCitations.ged");
+      case "medium":
+        return resource("Fam001.ged");
+      case "large":
+        return repeated(resource("Fam001.ged"), Integer.getInteger("benchmark.copies", 100));
+      case "synthetic":
+        return synthetic(Integer.getInteger("benchmark.persons", 50000), Long.getLong("benchmark.seed", 1));
+      default:
+        throw new IllegalArgumentException("Unknown benchmark input: " + input);
+    }
+  }
+
+  public static Gedcom parse(String input) throws Exception {
+    Gedcom gedcom = new ModelParser().parseGedcom(file(input));
+    gedcom.createIndexes();
+    return gedcom;
+  }
+
+  private static File resource(String name) throws IOException {
+    URL url = BenchmarkInputs.class.getClassLoader().getResource(name);
+    if (url == null) {
+      throw new IOException("Missing benchmark input " + name);
+    }
+    try {
+      return new File(url.toURI());
+    }
+    catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Writes the level-0 records of a file the given number of times between its header and trailer. The first copy is
+   * left as it is and the identifiers of the others get a per-copy suffix, so every copy links up the same way.
+   */
+  private static File repeated(File source, int copies) throws IOException {
+    File target = new File(System.getProperty("java.io.tmpdir"), "gedcom5-benchmark-" + source.getName().replace(".ged", "") + "-x" + copies + ".ged");
+    if (target.exists()) {
+      return target;
+    }
+
+    // ISO-8859-1 maps every byte to a char and back, whatever the charset of the file
+    List<String> header = new ArrayList<String>();
+    List<String> records = new ArrayList<String>();
+    try (Reader in = new InputStreamReader(Files.newInputStream(source.toPath()), StandardCharsets.ISO_8859_1);
+         BufferedReader reader = new BufferedReader(in)) {
+      List<String> current = header;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("0 ") && line.indexOf(" TRLR") < 0 && current == header && !line.startsWith("0 HEAD")) {
+          current = records;
+        }
+        if (line.startsWith("0 TRLR")) {
+          break;
+        }
+        current.add(line);
+      }
+    }
+
+    File temp = File.createTempFile("gedcom5-benchmark-", ".ged", target.getParentFile());
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.ISO_8859_1))) {
+      for (String line : header) {
+        writer.write(line);
+        writer.write('\n');
+      }
+      for (int copy = 0; copy < copies; copy++) {
+        String suffix = "X" + copy;
+        for (String line : records) {
+          if (copy > 0 && line.indexOf('@') >= 0) {
+            Matcher matcher = XREF.matcher(line);
+            line = matcher.replaceAll("@$1" + suffix + "@");
+          }
+          writer.write(line);
+          writer.write('\n');
+        }
+      }
+      writer.write("0 TRLR\n");
+    }
+    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    return target;
+  }
+
+  private static File synthetic(int persons, long seed) throws IOException {
+    File target = new File(System.getProperty("java.io.tmpdir"), "gedcom5-benchmark-synthetic-" + persons + "-" + seed + ".ged");
+    if (target.exists()) {
+      return target;
+    }
+
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    generator.setPersons(persons);
+    generator.setSeed(seed);
+    File temp = File.createTempFile("gedcom5-benchmark-", ".ged", target.getParentFile());
+    generator.write(temp);
+    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    return target;
+  }
+
+  private BenchmarkInputs() { }
+}
@@ -0,0 +1,69 @@
+package org.gedcomx.conversion;
+
+import java.io.IOException;
+
+import org.gedcomx.Gedcomx;
+import org.gedcomx.agent.Agent;
+import org.gedcomx.conclusion.Person;
+import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.source.SourceDescription;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * A conversion result that hands everything that is added to it to a JMH blackhole, so that the benchmarks measure
+ * the mapping without the cost of collecting its output.
+ */
+public class BlackholeConversionResult implements GedcomxConversionResult {
+
+  private final Blackhole blackhole;
+
+  public BlackholeConversionResult(Blackhole blackhole) {
+    this.blackhole = blackhole;
+  }
+
+  @Override
+  public Gedcomx getDataset() {
+    return null;
+  }
+
+  @Override
+  public Agent getDatasetContributor() {
+    return null;
+  }
+
+  @Override
+  public void setDatasetContributor(Agent person) throws IOException {
+    blackhole.consume(person);
+  }
+
+  @Override
+  public void addPerson(Person person) throws IOException {
+    blackhole.consume(person);
+  }
+
+  @Override
+  public void addRelationship(Relationship relationship) throws IOException {
+    blackhole.consume(relationship);
+  }
+
+  @Override
+  public void addSourceDescription(SourceDescription description) throws IOException {
+    blackhole.consume(description);
+  }
+
+  @Override
+  public void addOrganization(Agent organization) throws IOException {
+    blackhole.consume(organization);
+  }
+
+  @Override
+  public void addLanguage(String langCode) {
+    blackhole.consume(langCode);
+  }
+
+  @Override
+  public ConversionDiagnostics getDiagnostics() {
+    return null;
+  }
+}
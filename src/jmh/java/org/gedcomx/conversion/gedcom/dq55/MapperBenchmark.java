@@ -0,0 +1,88 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.concurrent.TimeUnit;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.gedcomx.conversion.BenchmarkInputs;
+import org.gedcomx.conversion.BlackholeConversionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Measures the mappers over all the records of a parsed file; an operation is one pass over the records (or facts, or
+ * citations) of the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+  @Param({"small", "medium", "large", "synthetic"})
+  public String input;
+
+  private Gedcom gedcom;
+  private PersonMapper personMapper;
+  private FamilyMapper familyMapper;
+
+  @Setup
+  public void setUp() throws Exception {
+    gedcom = BenchmarkInputs.parse(input);
+    MappingConfig mappingConfig = new MappingConfig(input + ".ged", false);
+    personMapper = new PersonMapper(mappingConfig);
+    familyMapper = new FamilyMapper(mappingConfig);
+  }
+
+  @Benchmark
+  public void toPerson(Blackhole blackhole) throws Exception {
+    BlackholeConversionResult result = new BlackholeConversionResult(blackhole);
+    for (Person person : gedcom.getPeople()) {
+      personMapper.toPerson(person, result);
+    }
+  }
+
+  @Benchmark
+  public void toRelationship(Blackhole blackhole) throws Exception {
+    BlackholeConversionResult result = new BlackholeConversionResult(blackhole);
+    ChildLinkIndex childLinks = ChildLinkIndex.of(gedcom);
+    for (Family family : gedcom.getFamilies()) {
+      familyMapper.toRelationshipIndexed(family, childLinks, result);
+    }
+  }
+
+  @Benchmark
+  public void toFact(Blackhole blackhole) throws Exception {
+    BlackholeConversionResult result = new BlackholeConversionResult(blackhole);
+    for (Person person : gedcom.getPeople()) {
+      ConversionContext.pushRecord(person.getId(), "INDI");
+      for (EventFact fact : person.getEventsFacts()) {
+        blackhole.consume(FactMapper.toFact(fact, result));
+      }
+    }
+  }
+
+  @Benchmark
+  public void toSourcesAndSourceReferences(Blackhole blackhole) throws Exception {
+    BlackholeConversionResult result = new BlackholeConversionResult(blackhole);
+    for (Person person : gedcom.getPeople()) {
+      ConversionContext.pushRecord(person.getId(), "INDI");
+      blackhole.consume(CommonMapper.toSourcesAndSourceReferences(person.getSourceCitations(), result));
+    }
+  }
+}
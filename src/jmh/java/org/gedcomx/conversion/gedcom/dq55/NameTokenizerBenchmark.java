@@ -0,0 +1,71 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.gedcomx.conclusion.NamePart;
+import org.gedcomx.conversion.BenchmarkInputs;
+import org.gedcomx.types.NamePartType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Measures the splitting of the names of all the individuals of a parsed file into their full text and parts; an
+ * operation is one pass over the names of the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameTokenizerBenchmark {
+
+  @Param({"small", "large", "synthetic"})
+  public String input;
+
+  private List<Name> names;
+
+  @Setup
+  public void setUp() throws Exception {
+    Gedcom gedcom = BenchmarkInputs.parse(input);
+    names = new ArrayList<Name>();
+    for (Person person : gedcom.getPeople()) {
+      names.addAll(person.getNames());
+    }
+  }
+
+  @Benchmark
+  public void tokenize(Blackhole blackhole) {
+    for (Name name : names) {
+      List<NamePart> parts = new ArrayList<NamePart>(4);
+      NameTokenizer.addNameParts(parts, name.getPrefix(), NamePartType.Prefix);
+      NameTokenizer.addNameParts(parts, name.getGiven(), NamePartType.Given);
+      if (name.getValue() != null) {
+        NameTokenizer tokenizer = new NameTokenizer(name.getValue());
+        blackhole.consume(tokenizer.getFullText());
+        if (name.getSurname() == null) {
+          tokenizer.addSurnameParts(parts);
+        }
+      }
+      NameTokenizer.addNameParts(parts, name.getSurname(), NamePartType.Surname);
+      NameTokenizer.addNameParts(parts, name.getSuffix(), NamePartType.Suffix);
+      blackhole.consume(parts);
+    }
+  }
+}
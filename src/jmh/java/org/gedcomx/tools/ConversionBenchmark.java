@@ -0,0 +1,94 @@
+package org.gedcomx.tools;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.conversion.BenchmarkInputs;
+import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.kohsuke.args4j.CmdLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures parsing a GEDCOM 5.5 file and the whole conversion of a file to GEDCOM X (parsing, mapping, serializing and
+ * compressing), either of the whole file in memory (as JSON or Smile) or one record at a time
+ * (<code>--streaming --streaming-input</code>); an operation is one file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+  @Param({"small", "medium", "large", "synthetic"})
+  public String input;
+
+  private File file;
+
+  @Setup
+  public void setUp() throws Exception {
+    file = BenchmarkInputs.file(input);
+  }
+
+  @Benchmark
+  public Gedcom parseGedcom() throws Exception {
+    return new ModelParser().parseGedcom(file);
+  }
+
+  @Benchmark
+  public long convert55File() throws Exception {
+    CountingOutputStream out = new CountingOutputStream();
+    new Gedcom2Gedcomx().convert55File(file, out, new MappingConfig(file.getName(), false));
+    return out.count;
+  }
+
+  @Benchmark
+  public long convert55FileSmile() throws Exception {
+    CountingOutputStream out = new CountingOutputStream();
+    Gedcom2Gedcomx converter = new Gedcom2Gedcomx();
+    new CmdLineParser(converter).parseArgument("--format", "smile");
+    converter.convert55File(file, out, new MappingConfig(file.getName(), false));
+    return out.count;
+  }
+
+  @Benchmark
+  public long convert55FileStreaming() throws Exception {
+    CountingOutputStream out = new CountingOutputStream();
+    Gedcom2Gedcomx converter = new Gedcom2Gedcomx();
+    new CmdLineParser(converter).parseArgument("--streaming", "--streaming-input");
+    converter.convert55File(file, out, new MappingConfig(file.getName(), false));
+    return out.count;
+  }
+
+  /**
+   * Discards the converted file, keeping only its size.
+   */
+  private static final class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
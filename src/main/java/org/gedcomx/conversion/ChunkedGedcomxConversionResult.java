@@ -0,0 +1,201 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion;
+
+import org.gedcomx.Gedcomx;
+import org.gedcomx.agent.Agent;
+import org.gedcomx.conclusion.Person;
+import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.fileformat.GedcomxOutputStream;
+import org.gedcomx.source.SourceDescription;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+
+/**
+ * A conversion result that writes the dataset as many entries of a {@link GedcomxOutputStream} instead of a single one:
+ * the persons, relationships, source descriptions and agents are collected in chunks of a fixed number of objects, and
+ * each chunk is written as a GEDCOM X document of its own as soon as it is full, so that a reader can get at a few
+ * records without reading the whole dataset, and read the chunks in parallel. The chunks of a collection are named after
+ * the collection and their position in it (<code>persons/000000.json</code>, <code>persons/000001.json</code>, ...), and
+ * carry the name of their collection ({@link #COLLECTION_ATTRIBUTE}), the number of objects in them
+ * ({@link #COUNT_ATTRIBUTE}) and, if there is only one, its id ({@link #ID_ATTRIBUTE}). Closing the result writes the
+ * last chunks and an entry with the rest of the dataset (its language).
+ *
+ * The entries are written with the serializer of the output stream. Since the dataset is never held in memory,
+ * {@link #getDataset()} returns <code>null</code>.
+ */
+public class ChunkedGedcomxConversionResult implements GedcomxConversionResult, Closeable {
+
+  public static final String COLLECTION_ATTRIBUTE = "X-GEDCOMX-Collection";
+  public static final String COUNT_ATTRIBUTE = "X-GEDCOMX-Count";
+  public static final String ID_ATTRIBUTE = "X-GEDCOMX-Id";
+
+  private final GedcomxOutputStream output;
+  private final String contentType;
+  private final String entryName;
+  private final String extension;
+  private final int chunkSize;
+  private final Chunks<Person> persons;
+  private final Chunks<Relationship> relationships;
+  private final Chunks<SourceDescription> sourceDescriptions;
+  private final Chunks<Agent> agents;
+  private final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+  private Agent datasetContributor;
+  private String lang;
+  private boolean closed = false;
+
+  /**
+   * @param output the output stream to which the chunks are written
+   * @param contentType the content type of the entries, which the serializer of the output stream writes
+   * @param entryName the name of the entry with the rest of the dataset (e.g. "tree.json"); its extension is that of the chunks
+   * @param chunkSize the number of objects in a chunk
+   */
+  public ChunkedGedcomxConversionResult(GedcomxOutputStream output, String contentType, String entryName, int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("The chunk size must be positive: " + chunkSize);
+    }
+    this.output = output;
+    this.contentType = contentType;
+    this.entryName = entryName;
+    int dot = entryName.lastIndexOf('.');
+    this.extension = dot < 0 ? "" : entryName.substring(dot);
+    this.chunkSize = chunkSize;
+    this.persons = new Chunks<Person>("persons", Gedcomx::setPersons, Person::getId);
+    this.relationships = new Chunks<Relationship>("relationships", Gedcomx::setRelationships, Relationship::getId);
+    this.sourceDescriptions = new Chunks<SourceDescription>("sourceDescriptions", Gedcomx::setSourceDescriptions, SourceDescription::getId);
+    this.agents = new Chunks<Agent>("agents", Gedcomx::setAgents, Agent::getId);
+  }
+
+  @Override
+  public Gedcomx getDataset() {
+    return null;
+  }
+
+  @Override
+  public Agent getDatasetContributor() {
+    return datasetContributor;
+  }
+
+  @Override
+  public void setDatasetContributor(Agent person) throws IOException {
+    this.datasetContributor = person;
+  }
+
+  @Override
+  public void addPerson(Person person) throws IOException {
+    persons.add(person);
+  }
+
+  @Override
+  public void addRelationship(Relationship relationship) throws IOException {
+    relationships.add(relationship);
+  }
+
+  @Override
+  public void addSourceDescription(SourceDescription description) throws IOException {
+    sourceDescriptions.add(description);
+  }
+
+  @Override
+  public void addOrganization(Agent organization) throws IOException {
+    agents.add(organization);
+  }
+
+  @Override
+  public void addLanguage(String langCode) {
+    this.lang = langCode;
+  }
+
+  @Override
+  public ConversionDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /**
+   * Writes the last chunks and the entry with the rest of the dataset. The output stream itself is left open so that
+   * the caller can add attributes and other entries before closing it.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    for (Chunks<?> chunks : new Chunks<?>[]{persons, relationships, sourceDescriptions, agents}) {
+      chunks.flush();
+    }
+    Gedcomx rest = new Gedcomx();
+    rest.setLang(lang);
+    output.addResource(contentType, entryName, rest, new Date(), null);
+  }
+
+  /**
+   * The chunk being filled for a collection of the dataset.
+   */
+  private final class Chunks<T> {
+    private final String name;
+    private final BiConsumer<Gedcomx, List<T>> setter;
+    private final Function<T, String> ids;
+    private List<T> chunk;
+    private int written = 0;
+
+    private Chunks(String name, BiConsumer<Gedcomx, List<T>> setter, Function<T, String> ids) {
+      this.name = name;
+      this.setter = setter;
+      this.ids = ids;
+      this.chunk = new ArrayList<T>(Math.min(chunkSize, 1024));
+    }
+
+    private void add(T value) throws IOException {
+      synchronized (ChunkedGedcomxConversionResult.this) {
+        if (closed) {
+          throw new IllegalStateException("The conversion result has already been closed.");
+        }
+        chunk.add(value);
+        if (chunk.size() >= chunkSize) {
+          flush();
+        }
+      }
+    }
+
+    private void flush() throws IOException {
+      if (chunk.isEmpty()) {
+        return;
+      }
+
+      Gedcomx document = new Gedcomx();
+      setter.accept(document, chunk);
+      Map<String, String> attributes = new LinkedHashMap<String, String>();
+      attributes.put(COLLECTION_ATTRIBUTE, name);
+      attributes.put(COUNT_ATTRIBUTE, String.valueOf(chunk.size()));
+      if (chunk.size() == 1 && ids.apply(chunk.get(0)) != null) {
+        attributes.put(ID_ATTRIBUTE, ids.apply(chunk.get(0)));
+      }
+      output.addResource(contentType, String.format("%s/%06d%s", name, written++, extension), document, new Date(), attributes);
+      chunk = new ArrayList<T>(Math.min(chunkSize, 1024));
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * Aggregates the issues encountered during a conversion (data that was ignored, tags that aren't supported, values that
+ * couldn't be understood, ...) by category and tag, keeping a count and a small sample of where each issue was
+ * encountered. The counts are kept regardless of the logging configuration, so a summary of a conversion doesn't
+ * depend on one log line per warning.
+ *
+ * Issues may be recorded from several threads at once.
+ */
+public class ConversionDiagnostics {
+
+  /**
+   * The number of locations sampled per issue by default.
+   */
+  public static final int DEFAULT_MAX_SAMPLES = 10;
+
+  public enum Category {
+    /**
+     * Data that is valid GEDCOM 5.5 but isn't carried over to GEDCOM X (e.g. RIN, notes).
+     */
+    IGNORED,
+
+    /**
+     * Tags or structures the converter doesn't support (e.g. extension tags).
+     */
+    UNSUPPORTED,
+
+    /**
+     * Values that couldn't be understood (e.g. an unparseable date).
+     */
+    INVALID,
+
+    /**
+     * References to records that couldn't be found.
+     */
+    UNRESOLVED
+  }
+
+  private final int maxSamples;
+  private final Map<Category, ConcurrentHashMap<String, Issue>> issues = new EnumMap<Category, ConcurrentHashMap<String, Issue>>(Category.class);
+
+  public ConversionDiagnostics() {
+    this(DEFAULT_MAX_SAMPLES);
+  }
+
+  /**
+   * @param maxSamples the number of locations to keep per issue
+   */
+  public ConversionDiagnostics(int maxSamples) {
+    this.maxSamples = maxSamples;
+    for (Category category : Category.values()) {
+      issues.put(category, new ConcurrentHashMap<String, Issue>());
+    }
+  }
+
+  /**
+   * Records an occurrence of an issue.
+   *
+   * @param category the category of the issue
+   * @param tag the GEDCOM tag the issue is about
+   * @param message a description of the issue; only the message of the first occurrence is kept
+   * @param location where the issue was encountered; only called while the issue still needs samples
+   */
+  public void record(Category category, String tag, String message, Supplier<String> location) {
+    String key = tag == null ? "" : tag;
+    ConcurrentHashMap<String, Issue> byTag = issues.get(category);
+    Issue issue = byTag.get(key);
+    if (issue == null) {
+      Issue existing = byTag.putIfAbsent(key, issue = new Issue(category, key, message));
+      if (existing != null) {
+        issue = existing;
+      }
+    }
+
+    issue.count.incrementAndGet();
+    if (issue.sampling) {
+      issue.addSample(location.get(), maxSamples);
+    }
+  }
+
+  /**
+   * @return the number of issue occurrences recorded
+   */
+  public long getTotal() {
+    long total = 0;
+    for (ConcurrentHashMap<String, Issue> byTag : issues.values()) {
+      for (Issue issue : byTag.values()) {
+        total += issue.getCount();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * @return the issues recorded, ordered by category and then by descending count
+   */
+  public List<Issue> getIssues() {
+    List<Issue> list = new ArrayList<Issue>();
+    for (ConcurrentHashMap<String, Issue> byTag : issues.values()) {
+      List<Issue> ofCategory = new ArrayList<Issue>(byTag.values());
+      ofCategory.sort((a, b) -> a.getCount() != b.getCount() ? Long.compare(b.getCount(), a.getCount()) : a.getTag().compareTo(b.getTag()));
+      list.addAll(ofCategory);
+    }
+    return list;
+  }
+
+  /**
+   * @return the issue recorded for the given category and tag, or null if there is none
+   */
+  public Issue getIssue(Category category, String tag) {
+    return issues.get(category).get(tag == null ? "" : tag);
+  }
+
+  public static final class Issue {
+    private final Category category;
+    private final String tag;
+    private final String message;
+    private final AtomicLong count = new AtomicLong();
+    private final List<String> samples = new ArrayList<String>();
+    private volatile boolean sampling = true;
+
+    private Issue(Category category, String tag, String message) {
+      this.category = category;
+      this.tag = tag;
+      this.message = message;
+    }
+
+    private synchronized void addSample(String location, int maxSamples) {
+      if (samples.size() < maxSamples) {
+        samples.add(location);
+      }
+      sampling = samples.size() < maxSamples;
+    }
+
+    public Category getCategory() {
+      return category;
+    }
+
+    public String getTag() {
+      return tag;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    /**
+     * @return where the first occurrences of the issue were encountered
+     */
+    public synchronized List<String> getSamples() {
+      return Collections.unmodifiableList(new ArrayList<String>(samples));
+    }
+  }
+}
@@ -29,6 +29,7 @@ public class DefaultGedcomxConversionResult implements GedcomxConversionResult {
 
   private Gedcomx dataset = new Gedcomx();
   private Agent datasetContributor;
+  private final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
 
   @Override
   public Gedcomx getDataset() {
@@ -86,4 +87,9 @@ public class DefaultGedcomxConversionResult implements GedcomxConversionResult {
     dataset.setLang(langCode);
   }
 
+  @Override
+  public ConversionDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
 }
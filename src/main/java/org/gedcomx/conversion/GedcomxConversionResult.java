@@ -42,4 +42,12 @@ public interface GedcomxConversionResult {
 
   void addLanguage(String langCode);
 
+  /**
+   * @return the diagnostics the issues encountered during the conversion are recorded in, or null if they aren't recorded
+   * (the default)
+   */
+  default ConversionDiagnostics getDiagnostics() {
+    return null;
+  }
+
 }
@@ -0,0 +1,698 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion;
+
+import org.gedcomx.Gedcomx;
+import org.gedcomx.fileformat.GedcomxEntrySerializer;
+import org.gedcomx.fileformat.GedcomxOutputStream;
+import org.gedcomx.fileformat.GedcomxTimeStampUtil;
+import org.gedcomx.rt.GedcomxConstants;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * A {@link GedcomxOutputStream} that compresses the entries of the file on a pool of threads. The data of each entry is
+ * cut into blocks that are deflated independently (each with the end of the block before it as its dictionary, so the
+ * compression ratio barely suffers), and the compressed blocks are written in order as they are ready, so a large entry
+ * is compressed on all the threads, and the blocks of an entry are compressed while the next entries are serialized.
+ *
+ * The archive is a regular ZIP (JAR) file with the same manifest as that of a {@link GedcomxOutputStream}, and ZIP64
+ * records are written when the file is too large or has too many entries for the original format. The local header of
+ * an entry is only written once the entry is finished, with its sizes and checksum, so the (compressed) data of an entry
+ * is held until then; the exception is an entry that grows too large for the sizes of the original format, whose local
+ * header is written right away with a ZIP64 extra field, and whose sizes and checksum follow its data in a ZIP64 data
+ * descriptor. With a compression level of {@link Deflater#NO_COMPRESSION}, the entries are stored instead of deflated,
+ * for pipelines that compress the file again anyway; a stored entry is always held until it is finished, as the format
+ * requires.
+ *
+ * This writes the file itself: none of the state of the superclass is used. An output stream is not thread-safe.
+ */
+public class ParallelGedcomxOutputStream extends GedcomxOutputStream {
+
+  /**
+   * The size of the blocks that are compressed independently.
+   */
+  private static final int BLOCK_SIZE = 1 << 17;
+
+  /**
+   * The size of the deflate window, the most of a block that helps compress the next one.
+   */
+  private static final int DICTIONARY_SIZE = 1 << 15;
+
+  /**
+   * The size the buffer of an entry starts at, so that small entries (one per record) don't each allocate a block.
+   */
+  private static final int INITIAL_BUFFER_SIZE = 1 << 10;
+
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  /**
+   * The size at which a deflated entry is taken to need ZIP64 sizes; deflating can add a little to the size of data that
+   * doesn't compress.
+   */
+  private static final long ZIP64_THRESHOLD = ZIP64_MAGIC - (ZIP64_MAGIC >>> 8);
+
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+  private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+  private static final int FLAG_UTF8 = 1 << 11;
+
+  private final OutputStream out;
+  private final GedcomxEntrySerializer serializer;
+  private final int level;
+  private final ForkJoinPool pool;
+  private final int maxPiecesInFlight;
+  private final ThreadLocal<Deflater> deflaters;
+  private final Manifest manifest = new Manifest();
+  private final List<Entry> entries = new ArrayList<Entry>();
+  private final Deque<Piece> pieces = new ArrayDeque<Piece>();
+  private final Deque<Future<byte[]>> compressing = new ArrayDeque<Future<byte[]>>();
+  private final long zip64Threshold;
+  private final byte[] scratch = new byte[8];
+  private EntryOutputStream current;
+  private long position = 0;
+  private int entryCount = 0;
+  private boolean closed = false;
+
+  /**
+   * @param out where the file is written
+   * @param serializer the serializer of the resources
+   * @param threads the number of threads that compress the entries
+   * @param level the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION}); 0 stores the entries
+   */
+  public ParallelGedcomxOutputStream(OutputStream out, GedcomxEntrySerializer serializer, int threads, int level) throws IOException {
+    this(out, serializer, threads, level, ZIP64_THRESHOLD);
+  }
+
+  /**
+   * @param zip64Threshold the size at which a deflated entry is written with ZIP64 sizes
+   */
+  ParallelGedcomxOutputStream(OutputStream out, GedcomxEntrySerializer serializer, int threads, int level, long zip64Threshold) throws IOException {
+    super(new DiscardingOutputStream(), serializer);
+    if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.out = new BufferedOutputStream(out, 1 << 16);
+    this.serializer = serializer;
+    this.level = level;
+    this.pool = level == Deflater.NO_COMPRESSION ? null : new ForkJoinPool(Math.max(1, threads));
+    this.maxPiecesInFlight = Math.max(1, threads) * 4;
+    this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    this.manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    this.zip64Threshold = zip64Threshold;
+  }
+
+  @Override
+  public void addAttribute(String name, String value) {
+    manifest.getMainAttributes().putValue(name, value);
+  }
+
+  @Override
+  public void addResource(Gedcomx resource) throws IOException {
+    addResource(resource, new Date());
+  }
+
+  @Override
+  public void addResource(Gedcomx resource, Date lastModified) throws IOException {
+    addResource("tree" + (entryCount > 0 ? String.valueOf(entryCount) : "") + serializer.suggestFilenameExtension(), resource, lastModified);
+  }
+
+  @Override
+  public void addResource(String entryName, Gedcomx resource, Date lastModified) throws IOException {
+    addResource(GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE, entryName, resource, lastModified, null);
+  }
+
+  @Override
+  public void addResource(String contentType, String entryName, Object resource, Date lastModified) throws IOException {
+    addResource(contentType, entryName, resource, lastModified, null);
+  }
+
+  @Override
+  public void addResource(String contentType, String entryName, Object resource, Date lastModified, Map<String, String> attributes) throws IOException {
+    putNextEntry(contentType, entryName, lastModified, attributes);
+    serializer.serialize(resource, current);
+    closeEntry();
+    entryCount++;
+  }
+
+  @Override
+  public void addResource(String contentType, String entryName, InputStream resource, Date lastModified, Map<String, String> attributes) throws IOException {
+    putNextEntry(contentType, entryName, lastModified, attributes);
+    byte[] buffer = new byte[1 << 13];
+    int read;
+    while ((read = resource.read(buffer)) >= 0) {
+      current.write(buffer, 0, read);
+    }
+    closeEntry();
+    entryCount++;
+  }
+
+  @Override
+  protected void putNextEntry(String contentType, String entryName, Date lastModified, Map<String, String> attributes) throws IOException {
+    if (contentType == null || contentType.trim().length() == 0) {
+      throw new IllegalArgumentException("contentType must not be null or empty.");
+    }
+    entryName = entryName.replaceAll("\\\\", "/");
+    if (entryName.charAt(0) == '/') {
+      entryName = entryName.substring(1);
+    }
+
+    Attributes entryAttributes = new Attributes();
+    if (lastModified != null) {
+      entryAttributes.putValue("X-DC-modified", GedcomxTimeStampUtil.formatAsXmlUTC(lastModified));
+    }
+    entryAttributes.put(Attributes.Name.CONTENT_TYPE, contentType);
+    if (attributes != null) {
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        entryAttributes.putValue(attribute.getKey(), attribute.getValue());
+      }
+    }
+    manifest.getEntries().put(entryName, entryAttributes);
+    startEntry(entryName, lastModified);
+  }
+
+  private void startEntry(String entryName, Date lastModified) throws IOException {
+    if (closed) {
+      throw new IOException("The output stream has already been closed.");
+    }
+    closeEntry();
+    Entry entry = new Entry(entryName.getBytes(StandardCharsets.UTF_8), lastModified == null ? System.currentTimeMillis() : lastModified.getTime());
+    entries.add(entry);
+    pieces.addLast(new Piece(entry, Piece.HEADER, null, null, 0));
+    current = new EntryOutputStream(entry);
+  }
+
+  private void closeEntry() throws IOException {
+    if (current != null) {
+      EntryOutputStream entry = current;
+      current = null;
+      entry.finish();
+    }
+  }
+
+  /**
+   * Writes the manifest and the central directory of the file, and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      startEntry(JarFile.MANIFEST_NAME, null);
+      manifest.write(current);
+      closeEntry();
+      closed = true;
+      drain(true);
+
+      long directoryStart = position;
+      for (Entry entry : entries) {
+        writeCentralDirectoryHeader(entry);
+      }
+      writeEndOfCentralDirectory(directoryStart, position - directoryStart);
+      out.close();
+    }
+    finally {
+      closed = true;
+      for (Piece piece : pieces) {
+        if (piece.data != null) {
+          piece.data.cancel(true);
+        }
+      }
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Writes the pieces of the file that are ready, in order, waiting for the first ones if there are too many in flight
+   * (or if all of them are to be written). The local header of an entry waits for the entry to be finished (see
+   * {@link #isHeaderReady(Entry)}), while its blocks are compressed.
+   */
+  private void drain(boolean all) throws IOException {
+    while (!compressing.isEmpty() && (compressing.peekFirst().isDone() || compressing.size() > maxPiecesInFlight)) {
+      await(compressing.removeFirst());
+    }
+
+    while (!pieces.isEmpty()) {
+      Piece piece = pieces.peekFirst();
+      if (piece.type == Piece.HEADER && !isHeaderReady(piece.entry)) {
+        return;
+      }
+      if (!all && pieces.size() <= maxPiecesInFlight && piece.data != null && !piece.data.isDone()) {
+        return;
+      }
+      pieces.removeFirst();
+      Entry entry = piece.entry;
+      switch (piece.type) {
+        case Piece.HEADER:
+          entry.offset = position;
+          if (entry.finished) {
+            entry.compressedSize = compressedSize(entry);
+            entry.zip64 = entry.compressedSize >= ZIP64_MAGIC || entry.size >= ZIP64_MAGIC;
+          }
+          else {
+            entry.descriptor = true;
+            entry.zip64 = true;
+          }
+          writeLocalHeader(entry);
+          break;
+        case Piece.DATA:
+          byte[] bytes = piece.data != null ? await(piece.data) : piece.bytes;
+          int length = piece.data != null ? bytes.length : piece.length;
+          out.write(bytes, 0, length);
+          position += length;
+          if (entry.descriptor) {
+            entry.compressedSize += length;
+          }
+          break;
+        default:
+          if (entry.descriptor) {
+            writeDataDescriptor(entry);
+          }
+      }
+    }
+  }
+
+  /**
+   * @return whether the local header of the given entry can be written: once the entry is finished and its sizes are
+   * known, or once a deflated entry is so large that it is written with ZIP64 sizes in a data descriptor
+   */
+  private boolean isHeaderReady(Entry entry) {
+    return entry.finished || (pool != null && entry.size >= zip64Threshold);
+  }
+
+  /**
+   * @return the size of the data of the given finished entry, whose blocks are the next pieces
+   */
+  private long compressedSize(Entry entry) throws IOException {
+    long size = 0;
+    for (Piece piece : pieces) {
+      if (piece.entry != entry) {
+        break;
+      }
+      if (piece.type == Piece.DATA) {
+        size += piece.data != null ? await(piece.data).length : piece.length;
+      }
+    }
+    return size;
+  }
+
+  private static byte[] await(Future<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing in parallel.");
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Deflates a block of an entry into raw deflate data that continues the data of the blocks before it.
+   *
+   * @param dictionary the block before, whose end primes the compression of this one, or null for the first block
+   * @param last whether this is the last block of the entry, which ends the deflate stream
+   */
+  private byte[] deflate(byte[] block, int length, byte[] dictionary, boolean last) {
+    Deflater deflater = deflaters.get();
+    try {
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+      }
+      deflater.setInput(block, 0, length);
+      if (last) {
+        deflater.finish();
+      }
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+      byte[] buffer = new byte[1 << 14];
+      while (true) {
+        int deflated = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        compressed.write(buffer, 0, deflated);
+        if (last ? deflater.finished() : deflated < buffer.length) {
+          return compressed.toByteArray();
+        }
+      }
+    }
+    finally {
+      deflater.reset();
+    }
+  }
+
+  /**
+   * Writes the local header of an entry, with its sizes and checksum, or without them if they follow the data in a data
+   * descriptor. A ZIP64 entry has both sizes in a ZIP64 extra field, and then so does its data descriptor (as APPNOTE
+   * 4.3.9 has it).
+   */
+  private void writeLocalHeader(Entry entry) throws IOException {
+    writeInt(0x04034b50L);
+    writeShort(entry.zip64 ? 45 : 20);
+    writeShort(flags(entry));
+    writeShort(method());
+    writeInt(entry.dosTime);
+    writeInt(entry.descriptor ? 0 : entry.crc);
+    writeInt(entry.zip64 ? ZIP64_MAGIC : entry.compressedSize);
+    writeInt(entry.zip64 ? ZIP64_MAGIC : entry.size);
+    writeShort(entry.name.length);
+    writeShort(entry.zip64 ? 20 : 0);
+    writeBytes(entry.name);
+    if (entry.zip64) {
+      writeShort(0x0001);
+      writeShort(16);
+      writeLong(entry.descriptor ? 0 : entry.size);
+      writeLong(entry.descriptor ? 0 : entry.compressedSize);
+    }
+  }
+
+  private void writeDataDescriptor(Entry entry) throws IOException {
+    writeInt(0x08074b50L);
+    writeInt(entry.crc);
+    if (entry.zip64) {
+      writeLong(entry.compressedSize);
+      writeLong(entry.size);
+    }
+    else {
+      writeInt(entry.compressedSize);
+      writeInt(entry.size);
+    }
+  }
+
+  private void writeCentralDirectoryHeader(Entry entry) throws IOException {
+    boolean zip64Size = entry.size >= ZIP64_MAGIC;
+    boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+    boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+    int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+    int version = extraLength > 0 ? 45 : 20;
+
+    writeInt(0x02014b50L);
+    writeShort(version);
+    writeShort(version);
+    writeShort(flags(entry));
+    writeShort(method());
+    writeInt(entry.dosTime);
+    writeInt(entry.crc);
+    writeInt(zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize);
+    writeInt(zip64Size ? ZIP64_MAGIC : entry.size);
+    writeShort(entry.name.length);
+    writeShort(extraLength > 0 ? extraLength + 4 : 0);
+    writeShort(0);
+    writeShort(0);
+    writeShort(0);
+    writeInt(0);
+    writeInt(zip64Offset ? ZIP64_MAGIC : entry.offset);
+    writeBytes(entry.name);
+    if (extraLength > 0) {
+      writeShort(0x0001);
+      writeShort(extraLength);
+      if (zip64Size) {
+        writeLong(entry.size);
+      }
+      if (zip64CompressedSize) {
+        writeLong(entry.compressedSize);
+      }
+      if (zip64Offset) {
+        writeLong(entry.offset);
+      }
+    }
+  }
+
+  private void writeEndOfCentralDirectory(long directoryStart, long directorySize) throws IOException {
+    int count = entries.size();
+    if (count >= ZIP64_MAGIC_COUNT || directoryStart >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC) {
+      long zip64End = position;
+      writeInt(0x06064b50L);
+      writeLong(44);
+      writeShort(45);
+      writeShort(45);
+      writeInt(0);
+      writeInt(0);
+      writeLong(count);
+      writeLong(count);
+      writeLong(directorySize);
+      writeLong(directoryStart);
+
+      writeInt(0x07064b50L);
+      writeInt(0);
+      writeLong(zip64End);
+      writeInt(1);
+    }
+
+    writeInt(0x06054b50L);
+    writeShort(0);
+    writeShort(0);
+    writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+    writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+    writeInt(Math.min(directorySize, ZIP64_MAGIC));
+    writeInt(Math.min(directoryStart, ZIP64_MAGIC));
+    writeShort(0);
+  }
+
+  private int method() {
+    return level == Deflater.NO_COMPRESSION ? 0 : 8;
+  }
+
+  private static int flags(Entry entry) {
+    return (entry.descriptor ? FLAG_DATA_DESCRIPTOR : 0) | FLAG_UTF8;
+  }
+
+  private void writeShort(int value) throws IOException {
+    scratch[0] = (byte) value;
+    scratch[1] = (byte) (value >>> 8);
+    writeScratch(2);
+  }
+
+  private void writeInt(long value) throws IOException {
+    for (int i = 0; i < 4; i++) {
+      scratch[i] = (byte) (value >>> (8 * i));
+    }
+    writeScratch(4);
+  }
+
+  private void writeLong(long value) throws IOException {
+    for (int i = 0; i < 8; i++) {
+      scratch[i] = (byte) (value >>> (8 * i));
+    }
+    writeScratch(8);
+  }
+
+  private void writeScratch(int length) throws IOException {
+    out.write(scratch, 0, length);
+    position += length;
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    out.write(bytes);
+    position += bytes.length;
+  }
+
+  /**
+   * @return the given time in the MS-DOS format of ZIP files, in the local time zone
+   */
+  private static long dosTime(long time) {
+    LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    if (local.getYear() < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return ((long) (local.getYear() - 1980) << 25) | (local.getMonthValue() << 21) | (local.getDayOfMonth() << 16)
+      | (local.getHour() << 11) | (local.getMinute() << 5) | (local.getSecond() >> 1);
+  }
+
+  /**
+   * An entry of the file, as it is recorded in the central directory.
+   */
+  private static final class Entry {
+    private final byte[] name;
+    private final long dosTime;
+    private long offset;
+    private long crc;
+    private long size;
+    private long compressedSize;
+    private boolean finished;
+    private boolean descriptor;
+    private boolean zip64;
+
+    private Entry(byte[] name, long time) {
+      this.name = name;
+      this.dosTime = dosTime(time);
+    }
+  }
+
+  /**
+   * A part of the file that is written in turn: the local header of an entry, a block of its (compressed) data, or the
+   * end of the entry (with its data descriptor, if it has one).
+   */
+  private static final class Piece {
+    private static final int HEADER = 0;
+    private static final int DATA = 1;
+    private static final int DESCRIPTOR = 2;
+
+    private final Entry entry;
+    private final int type;
+    private final Future<byte[]> data;
+    private final byte[] bytes;
+    private final int length;
+
+    private Piece(Entry entry, int type, Future<byte[]> data, byte[] bytes, int length) {
+      this.entry = entry;
+      this.type = type;
+      this.data = data;
+      this.bytes = bytes;
+      this.length = length;
+    }
+  }
+
+  /**
+   * The data of the current entry, cut into blocks.
+   */
+  private final class EntryOutputStream extends OutputStream {
+    private final Entry entry;
+    private final CRC32 crc = new CRC32();
+    private byte[] block = new byte[INITIAL_BUFFER_SIZE];
+    private int count = 0;
+    private byte[] previousBlock;
+    private boolean finished = false;
+
+    private EntryOutputStream(Entry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == block.length) {
+        nextBlock();
+      }
+      block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (count == block.length) {
+          nextBlock();
+        }
+        int copied = Math.min(length, block.length - count);
+        System.arraycopy(bytes, offset, block, count, copied);
+        count += copied;
+        offset += copied;
+        length -= copied;
+      }
+    }
+
+    /**
+     * Entries are finished by the output stream; a serializer that closes the stream it writes to has no effect.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Grows the buffer to the block size, or submits it once it's a full block.
+     */
+    private void nextBlock() throws IOException {
+      if (block.length < BLOCK_SIZE) {
+        block = Arrays.copyOf(block, Math.min(block.length * 4, BLOCK_SIZE));
+      }
+      else {
+        submitBlock(false);
+      }
+    }
+
+    private void submitBlock(boolean last) throws IOException {
+      if (finished) {
+        throw new IOException("The entry has already been written.");
+      }
+      crc.update(block, 0, count);
+      entry.size += count;
+
+      if (pool == null) {
+        pieces.addLast(new Piece(entry, Piece.DATA, null, block, count));
+        block = last ? null : new byte[BLOCK_SIZE];
+      }
+      else {
+        byte[] submitted = block;
+        int length = count;
+        byte[] dictionary = previousBlock != null && previousBlock.length >= DICTIONARY_SIZE ? previousBlock : null;
+        Future<byte[]> data = pool.submit(() -> deflate(submitted, length, dictionary, last));
+        pieces.addLast(new Piece(entry, Piece.DATA, data, null, 0));
+        compressing.addLast(data);
+        previousBlock = submitted;
+        block = last ? null : new byte[BLOCK_SIZE];
+      }
+      count = 0;
+      drain(false);
+    }
+
+    private void finish() throws IOException {
+      submitBlock(true);
+      finished = true;
+      entry.crc = crc.getValue();
+      entry.finished = true;
+      pieces.addLast(new Piece(entry, Piece.DESCRIPTOR, null, null, 0));
+      drain(false);
+    }
+  }
+
+  /**
+   * Where the superclass writes, which is nothing.
+   */
+  private static final class DiscardingOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gedcomx.Gedcomx;
+import org.gedcomx.agent.Agent;
+import org.gedcomx.conclusion.Person;
+import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.fileformat.GedcomxOutputStream;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.rt.GedcomxConstants;
+import org.gedcomx.source.SourceDescription;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * A conversion result that serializes each object as soon as it is added instead of holding the whole dataset in
+ * memory. Because a GEDCOM X document groups its persons, relationships, source descriptions and agents while the
+ * mappers produce them interleaved, each collection is written through its own incremental JSON generator to a
+ * spool file. Closing the result assembles the spooled collections into a single entry of the
+ * {@link GedcomxOutputStream} with a streaming copy, so the memory used by a conversion no longer grows with the
+ * size of its output. The objects are written as JSON, or in the format of the factory of the given object mapper (such
+ * as Smile, see {@link SmileSerialization}), in which case the spooled collections are copied into the entry token by
+ * token.
+ *
+ * Since the dataset is never held in memory, {@link #getDataset()} returns <code>null</code>.
+ */
+public class StreamingGedcomxConversionResult implements GedcomxConversionResult, Closeable {
+
+  private final GedcomxOutputStream output;
+  private final String entryName;
+  private final String contentType;
+  private final ObjectMapper mapper;
+  private final File spoolDirectory;
+  private final ObjectWriter writer;
+  private final SpooledArray persons;
+  private final SpooledArray relationships;
+  private final SpooledArray sourceDescriptions;
+  private final SpooledArray agents;
+  private final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+  private Agent datasetContributor;
+  private String lang;
+  private boolean closed = false;
+
+  public StreamingGedcomxConversionResult(GedcomxOutputStream output, String entryName, Class<?>... extensionClasses) throws IOException {
+    this(output, entryName, JacksonJsonSerialization.createObjectMapper(false, extensionClasses), null);
+  }
+
+  /**
+   * @param output the output stream to which the converted dataset is written as a single entry
+   * @param entryName the name of the entry (e.g. "tree.json")
+   * @param mapper the object mapper used to serialize the individual objects
+   * @param spoolDirectory where the collections are spooled until the result is closed, or null for the default temporary-file directory
+   */
+  public StreamingGedcomxConversionResult(GedcomxOutputStream output, String entryName, ObjectMapper mapper, File spoolDirectory) throws IOException {
+    this(output, entryName, GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE, mapper, spoolDirectory);
+  }
+
+  /**
+   * @param output the output stream to which the converted dataset is written as a single entry
+   * @param entryName the name of the entry (e.g. "tree.smile")
+   * @param contentType the content type of the entry (e.g. {@link SmileSerialization#SMILE_MEDIA_TYPE})
+   * @param mapper the object mapper used to serialize the individual objects, in the format of the content type
+   * @param spoolDirectory where the collections are spooled until the result is closed, or null for the default temporary-file directory
+   */
+  public StreamingGedcomxConversionResult(GedcomxOutputStream output, String entryName, String contentType, ObjectMapper mapper, File spoolDirectory) throws IOException {
+    this.output = output;
+    this.entryName = entryName;
+    this.contentType = contentType;
+    this.mapper = mapper;
+    this.spoolDirectory = spoolDirectory;
+    // flushing after every value would defeat the buffering of the spool files
+    this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.persons = new SpooledArray("persons", spoolDirectory);
+    this.relationships = new SpooledArray("relationships", spoolDirectory);
+    this.sourceDescriptions = new SpooledArray("sourceDescriptions", spoolDirectory);
+    this.agents = new SpooledArray("agents", spoolDirectory);
+  }
+
+  @Override
+  public Gedcomx getDataset() {
+    return null;
+  }
+
+  @Override
+  public Agent getDatasetContributor() {
+    return datasetContributor;
+  }
+
+  @Override
+  public void setDatasetContributor(Agent person) throws IOException {
+    this.datasetContributor = person;
+  }
+
+  @Override
+  public void addPerson(Person person) throws IOException {
+    persons.add(person);
+  }
+
+  @Override
+  public void addRelationship(Relationship relationship) throws IOException {
+    relationships.add(relationship);
+  }
+
+  @Override
+  public void addSourceDescription(SourceDescription description) throws IOException {
+    sourceDescriptions.add(description);
+  }
+
+  @Override
+  public void addOrganization(Agent organization) throws IOException {
+    agents.add(organization);
+  }
+
+  @Override
+  public void addLanguage(String langCode) {
+    this.lang = langCode;
+  }
+
+  @Override
+  public ConversionDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /**
+   * Writes the spooled dataset to the output stream as a single entry and discards the spool files. The output
+   * stream itself is left open so that the caller can add attributes and other entries before closing it.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    List<SpooledArray> arrays = new ArrayList<SpooledArray>(4);
+    File document = null;
+    try {
+      for (SpooledArray array : new SpooledArray[]{persons, relationships, sourceDescriptions, agents}) {
+        array.finish();
+        if (array.count > 0) {
+          arrays.add(array);
+        }
+      }
+
+      if (!JsonFactory.FORMAT_NAME_JSON.equals(mapper.getFactory().getFormatName())) {
+        // the documents of a binary format can't be concatenated, so the collections are copied into a single one
+        document = copyDocument(arrays);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(document))) {
+          output.addResource(contentType, entryName, in, new Date(), null);
+        }
+        return;
+      }
+
+      List<InputStream> pieces = new ArrayList<InputStream>();
+      StringBuilder prefix = new StringBuilder("{");
+      boolean first = true;
+      if (lang != null) {
+        prefix.append("\"lang\":").append(mapper.writeValueAsString(lang));
+        first = false;
+      }
+      for (SpooledArray array : arrays) {
+        if (!first) {
+          prefix.append(',');
+        }
+        first = false;
+        prefix.append('"').append(array.name).append("\":");
+        pieces.add(new ByteArrayInputStream(prefix.toString().getBytes(StandardCharsets.UTF_8)));
+        pieces.add(new BufferedInputStream(new FileInputStream(array.file)));
+        prefix.setLength(0);
+      }
+      prefix.append('}');
+      pieces.add(new ByteArrayInputStream(prefix.toString().getBytes(StandardCharsets.UTF_8)));
+
+      try (InputStream in = new SequenceInputStream(Collections.enumeration(pieces))) {
+        output.addResource(contentType, entryName, in, new Date(), null);
+      }
+    }
+    finally {
+      for (SpooledArray array : new SpooledArray[]{persons, relationships, sourceDescriptions, agents}) {
+        array.discard();
+      }
+      if (document != null) {
+        document.delete();
+      }
+    }
+  }
+
+  /**
+   * @return a temporary file with the dataset, written with a single generator from the spooled collections
+   */
+  private File copyDocument(List<SpooledArray> arrays) throws IOException {
+    JsonFactory factory = mapper.getFactory();
+    File document = File.createTempFile("gedcomx-", ".dataset", spoolDirectory);
+    try (JsonGenerator generator = factory.createGenerator(new BufferedOutputStream(new FileOutputStream(document), 64 * 1024), JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      if (lang != null) {
+        generator.writeStringField("lang", lang);
+      }
+      for (SpooledArray array : arrays) {
+        generator.writeFieldName(array.name);
+        try (JsonParser parser = factory.createParser(new BufferedInputStream(new FileInputStream(array.file)))) {
+          parser.nextToken();
+          generator.copyCurrentStructure(parser);
+        }
+      }
+      generator.writeEndObject();
+    }
+    catch (IOException | RuntimeException e) {
+      document.delete();
+      throw e;
+    }
+    return document;
+  }
+
+  /**
+   * A JSON array that is written element by element to a temporary file.
+   */
+  private final class SpooledArray {
+    private final String name;
+    private final File spoolDirectory;
+    private File file;
+    private JsonGenerator generator;
+    private int count = 0;
+
+    private SpooledArray(String name, File spoolDirectory) {
+      this.name = name;
+      this.spoolDirectory = spoolDirectory;
+    }
+
+    private synchronized void add(Object value) throws IOException {
+      if (closed) {
+        throw new IllegalStateException("The conversion result has already been closed.");
+      }
+
+      if (generator == null) {
+        // the spool file is created lazily so that empty collections cost nothing
+        file = File.createTempFile("gedcomx-" + name + "-", ".json", spoolDirectory);
+        generator = mapper.getFactory().createGenerator(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024), JsonEncoding.UTF8);
+        generator.writeStartArray();
+      }
+
+      writer.writeValue(generator, value);
+      count++;
+    }
+
+    private synchronized void finish() throws IOException {
+      if (generator != null) {
+        generator.writeEndArray();
+        generator.close();
+        generator = null;
+      }
+    }
+
+    private synchronized void discard() throws IOException {
+      if (generator != null) {
+        generator.close();
+        generator = null;
+      }
+      if (file != null) {
+        file.delete();
+        file = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.ZoneId;
+import java.util.Date;
+
+
+/**
+ * Parses the DATE and TIME of a CHAN structure (e.g. <code>10 MAY 2012</code> and <code>01:00:00.12</code>).
+ *
+ * The date is <code>d MMM yy</code> and the time is <code>HH:mm</code>, optionally followed by <code>:ss</code> and
+ * <code>.SSS</code>, as they used to be parsed by {@link java.text.SimpleDateFormat}: month names are the English ones
+ * (abbreviated or not, in any case), a two-digit year falls within the 80 years before and the 20 years after the
+ * current year, out-of-range fields roll over, and anything after the last field that could be parsed is ignored. The
+ * result is in the default time zone. Unlike with the date format, the fields may also be separated by more than one
+ * space.
+ *
+ * The parser keeps no state and reports a value it can't parse (or that is past the range of a date) by returning
+ * <code>null</code>, so it may be shared between threads and is cheap on bad data.
+ */
+final class ChangeDateParser {
+
+  private static final String[] MONTHS = {
+    "JANUARY", "FEBRUARY", "MARCH", "APRIL", "MAY", "JUNE", "JULY", "AUGUST", "SEPTEMBER", "OCTOBER", "NOVEMBER", "DECEMBER"
+  };
+
+  private static final int MAX_DIGITS = 9;
+
+  /**
+   * @param date the value of the DATE (e.g. <code>10 MAY 2012</code>)
+   * @param time the value of the TIME (e.g. <code>01:00:00</code>), or null if there is none
+   * @return the date, or null if the value can't be parsed
+   */
+  static Date parse(String date, String time) {
+    if (date == null) {
+      return null;
+    }
+
+    Cursor cursor = new Cursor(time == null ? date : date + ' ' + time);
+    int day = cursor.number();
+    if (day < 0 || !cursor.whitespace()) {
+      return null;
+    }
+    int month = cursor.month();
+    if (month < 0 || !cursor.whitespace()) {
+      return null;
+    }
+    int yearStart = cursor.position;
+    int year = cursor.number();
+    if (year < 0) {
+      return null;
+    }
+    if (cursor.position - yearStart == 2) {
+      year = resolveTwoDigitYear(year);
+    }
+
+    int hours = 0;
+    int minutes = 0;
+    int seconds = 0;
+    int millis = 0;
+    if (time != null) {
+      if (!cursor.whitespace() || (hours = cursor.number()) < 0 || !cursor.skip(':') || (minutes = cursor.number()) < 0) {
+        return null;
+      }
+
+      // the seconds and milliseconds are optional; a separator that isn't followed by a number is trailing text
+      int mark = cursor.position;
+      if (cursor.skip(':') && (seconds = cursor.number()) >= 0) {
+        mark = cursor.position;
+        if (!cursor.skip('.') || (millis = cursor.number()) < 0) {
+          millis = 0;
+          cursor.position = mark;
+        }
+      }
+      else {
+        seconds = 0;
+        cursor.position = mark;
+      }
+    }
+
+    try {
+      LocalDateTime dateTime = LocalDateTime.of(year, 1, 1, 0, 0)
+        .plusMonths(month)
+        .plusDays(day - 1L)
+        .plusHours(hours)
+        .plusMinutes(minutes)
+        .plusSeconds(seconds)
+        .plusNanos(millis * 1000000L);
+      return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    catch (DateTimeException | IllegalArgumentException e) {
+      // the fields roll over past the last year a date can have
+      return null;
+    }
+  }
+
+  private static int resolveTwoDigitYear(int year) {
+    int centuryStart = Year.now().getValue() - 80;
+    int resolved = centuryStart / 100 * 100 + year;
+    return resolved < centuryStart ? resolved + 100 : resolved;
+  }
+
+  private static final class Cursor {
+    private final String text;
+    private int position = 0;
+
+    private Cursor(String text) {
+      this.text = text;
+    }
+
+    private boolean whitespace() {
+      int start = position;
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+      return position > start;
+    }
+
+    private boolean skip(char c) {
+      if (position < text.length() && text.charAt(position) == c) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * @return the unsigned number at the cursor, or -1 if there is none (or it is too long)
+     */
+    private int number() {
+      int start = position;
+      int value = 0;
+      while (position < text.length() && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+        value = value * 10 + (text.charAt(position) - '0');
+        position++;
+        if (position - start > MAX_DIGITS) {
+          return -1;
+        }
+      }
+      return position > start ? value : -1;
+    }
+
+    /**
+     * @return the zero-based month named at the cursor, or -1 if there is none
+     */
+    private int month() {
+      int start = position;
+      while (position < text.length() && Character.isLetter(text.charAt(position))) {
+        position++;
+      }
+      int length = position - start;
+      if (length >= 3) {
+        for (int month = 0; month < MONTHS.length; month++) {
+          String name = MONTHS[month];
+          if ((length == 3 || length == name.length()) && length <= name.length() && text.regionMatches(true, start, name, 0, length)) {
+            return month;
+          }
+        }
+      }
+      return -1;
+    }
+  }
+
+  private ChangeDateParser() { }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.folg.gedcom.model.ChildRef;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.ParentFamilyRef;
+import org.folg.gedcom.model.Person;
+import org.gedcomx.types.FactType;
+
+
+/**
+ * The links of the individuals of a file to their parent families (their <code>FAMC</code> lines, with the pedigree
+ * of each), indexed by family and child once for all the families of the file: the link of a child to a family is
+ * found without going through the links of the child to all of its families, and its pedigree is classified once for
+ * both parents. The identifiers are those of the GEDCOM 5.5 file, not the ones generated for GEDCOM X.
+ */
+final class ChildLinkIndex {
+
+  private final Set<String> persons = new HashSet<String>();
+  private final Map<String, Map<String, ChildLink>> families = new HashMap<String, Map<String, ChildLink>>();
+
+  /**
+   * @return the index of the individuals of the given model (none if it is null)
+   */
+  static ChildLinkIndex of(Gedcom gedcom) {
+    ChildLinkIndex index = new ChildLinkIndex();
+    if (gedcom != null) {
+      for (Person person : gedcom.getPeople()) {
+        index.add(person);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @return the index of the children of the given family, as they are in the given model (none if it is null)
+   */
+  static ChildLinkIndex ofChildren(Family family, Gedcom gedcom) {
+    ChildLinkIndex index = new ChildLinkIndex();
+    if (gedcom != null) {
+      for (ChildRef child : family.getChildRefs()) {
+        Person person = gedcom.getPerson(child.getRef());
+        if (person != null && !index.hasPerson(person.getId())) {
+          index.add(person);
+        }
+      }
+    }
+    return index;
+  }
+
+  void add(Person person) {
+    persons.add(person.getId());
+    for (ParentFamilyRef ref : person.getParentFamilyRefs()) {
+      Map<String, ChildLink> children = families.get(ref.getRef());
+      if (children == null) {
+        children = new LinkedHashMap<String, ChildLink>();
+        families.put(ref.getRef(), children);
+      }
+      ChildLink link = children.get(person.getId());
+      if (link == null) {
+        link = new ChildLink();
+        children.put(person.getId(), link);
+      }
+      link.add(ref.getRelationshipType());
+    }
+  }
+
+  /**
+   * @return whether the file has an individual with the given identifier
+   */
+  boolean hasPerson(String personId) {
+    return persons.contains(personId);
+  }
+
+  /**
+   * @return the link of the given child to the given family, or null if the child doesn't link to the family
+   */
+  ChildLink getLink(String familyId, String childId) {
+    Map<String, ChildLink> children = families.get(familyId);
+    return children == null ? null : children.get(childId);
+  }
+
+  /**
+   * @return the links of the children of the given family, by child identifier, in the order of the file
+   */
+  Map<String, ChildLink> getLinks(String familyId) {
+    Map<String, ChildLink> children = families.get(familyId);
+    return children == null ? Collections.<String, ChildLink>emptyMap() : children;
+  }
+
+  /**
+   * What the <code>PEDI</code> lines of the links of a child to a family say of its relationship to the parents.
+   */
+  static final class ChildLink {
+    private final List<FactType> facts = new ArrayList<FactType>(1);
+    private final List<String> dropped = new ArrayList<String>(0);
+
+    private void add(String relationshipType) {
+      if (relationshipType == null) {
+        return;
+      }
+      String type = relationshipType.toLowerCase().trim();
+      if (type.equals("adopted")) {
+        facts.add(FactType.AdoptiveParent);
+      } else if (type.equals("birth")) {
+        facts.add(FactType.BiologicalParent);
+      } else if (type.equals("foster")) {
+        facts.add(FactType.FosterParent);
+      } else {
+        dropped.add(relationshipType);
+      }
+    }
+
+    /**
+     * @return the type of the fact to add to the relationship with each parent, for each link with a known pedigree
+     */
+    List<FactType> getFacts() {
+      return facts;
+    }
+
+    /**
+     * @return the pedigrees that aren't known (and are dropped)
+     */
+    List<String> getDropped() {
+      return dropped;
+    }
+
+    @Override
+    public String toString() {
+      return facts + "\t" + dropped;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.gedcomx.common.URI;
+import org.gedcomx.source.CitationField;
+import org.gedcomx.source.SourceCitation;
+
+
+/**
+ * Collects the fields of a citation and builds its value (the values of the fields, separated by commas) and its list
+ * of fields at once, instead of concatenating the value again for each field. Each thread has its own builder, which
+ * keeps its buffers from one citation to the next (see {@link #start()}); a citation must be built before the next
+ * one is started on the same thread.
+ */
+final class CitationBuilder {
+
+  private static final ThreadLocal<CitationBuilder> BUILDERS = new ThreadLocal<CitationBuilder>() {
+    @Override
+    protected CitationBuilder initialValue() {
+      return new CitationBuilder();
+    }
+  };
+
+  // past this size, a buffer that was grown for an unusually long citation is let go rather than kept for the thread
+  private static final int MAX_KEPT_CAPACITY = 8192;
+
+  private URI[] names = new URI[8];
+  private String[] values = new String[8];
+  private int size;
+  private StringBuilder text = new StringBuilder(256);
+
+  private CitationBuilder() {
+  }
+
+  /**
+   * @return the builder of the current thread, without any fields
+   */
+  static CitationBuilder start() {
+    CitationBuilder builder = BUILDERS.get();
+    builder.clear();
+    return builder;
+  }
+
+  /**
+   * Adds a field to the citation, and its value to the value of the citation; null values are skipped.
+   */
+  CitationBuilder field(URI name, String value) {
+    if (value == null) {
+      return this;
+    }
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    names[size] = name;
+    values[size] = value;
+    size++;
+    append(value);
+    return this;
+  }
+
+  /**
+   * Adds text to the value of the citation, without a field.
+   */
+  CitationBuilder text(String value) {
+    if (value != null) {
+      append(value);
+    }
+    return this;
+  }
+
+  private void append(String value) {
+    if (text.length() > 0) {
+      text.append(", ");
+    }
+    text.append(value);
+  }
+
+  /**
+   * Sets the value and the fields of the given citation.
+   *
+   * @param terminator what to end the value with if it isn't empty (e.g. a period), or null
+   */
+  void build(SourceCitation citation, String terminator) {
+    if (terminator != null && text.length() > 0) {
+      text.append(terminator);
+    }
+    List<CitationField> fields = new ArrayList<CitationField>(size);
+    for (int i = 0; i < size; i++) {
+      CitationField field = new CitationField();
+      field.setName(names[i]);
+      field.setValue(values[i]);
+      fields.add(field);
+    }
+    citation.setFields(fields);
+    citation.setValue(text.toString());
+    clear();
+  }
+
+  private void clear() {
+    for (int i = 0; i < size; i++) {
+      names[i] = null;
+      values[i] = null;
+    }
+    size = 0;
+    if (text.capacity() > MAX_KEPT_CAPACITY) {
+      text = new StringBuilder(256);
+    }
+    else {
+      text.setLength(0);
+    }
+  }
+}
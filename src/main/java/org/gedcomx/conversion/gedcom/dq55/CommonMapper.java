@@ -23,38 +23,28 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import org.folg.gedcom.model.Change;
 import org.folg.gedcom.model.DateTime;
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.GedcomTag;
 import org.folg.gedcom.model.SourceCitation;
 import org.gedcomx.agent.Address;
 import org.gedcomx.agent.Agent;
 import org.gedcomx.common.ResourceReference;
 import org.gedcomx.common.TextValue;
 import org.gedcomx.common.URI;
+import org.gedcomx.conversion.ConversionDiagnostics.Category;
 import org.gedcomx.conversion.GedcomxConversionResult;
-import org.gedcomx.source.CitationField;
 import org.gedcomx.source.SourceDescription;
 import org.gedcomx.source.SourceReference;
 import org.gedcomx.types.ConfidenceLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
 
 public class CommonMapper {
   private static final Logger logger = LoggerFactory.getLogger(CommonMapper.class);
-  private static final String PARSEFORMAT_D_MMM_YY = "d MMM yy";
-  private static final String PARSEFORMAT_SSS = ".SSS";
-  private static final String PARSEFORMAT_SS = ":ss";
-  private static final String PARSEFORMAT_HH_MM = "HH:mm";
-
-  private static final List<String> CHAN_DATE_ONLY_PARSE_PATTERNS = Arrays.asList(PARSEFORMAT_D_MMM_YY);
-  private static final List<String> CHAN_DATE_TIME_PARSE_PATTERNS = Arrays.asList(
-      PARSEFORMAT_D_MMM_YY + ' ' + PARSEFORMAT_HH_MM + PARSEFORMAT_SS + PARSEFORMAT_SSS
-    , PARSEFORMAT_D_MMM_YY + ' ' + PARSEFORMAT_HH_MM + PARSEFORMAT_SS
-    , PARSEFORMAT_D_MMM_YY + ' ' + PARSEFORMAT_HH_MM);
 
   /**
    * Create a list of GedcomX SourceReference based on the ged5 SourceCitations.
@@ -66,55 +56,41 @@ public class CommonMapper {
 
     int index = 0;
     for (org.folg.gedcom.model.SourceCitation dqSource : dqSources) {
-      Marker sourceContext = ConversionContext.getDetachedMarker("SOUR." + (++index));
-      ConversionContext.addReference(sourceContext);
+      ConversionContext.push("SOUR", ++index);
       try {
         boolean sourceDescriptionHasData = false;
         boolean sourceReferenceHasData = false;
         SourceDescription gedxSourceDescription = new SourceDescription();
 
         org.gedcomx.source.SourceCitation citation = new org.gedcomx.source.SourceCitation();
-        citation.setCitationTemplate(new ResourceReference(URI.create("gedcom5:citation-template")));
-        citation.setFields(new ArrayList<CitationField>());
-        citation.setValue("");
+        citation.setCitationTemplate(Vocabulary.citationTemplate());
+        CitationBuilder citationBuilder = CitationBuilder.start();
 
         if (dqSource.getRef() != null) {
-          gedxSourceDescription.setId(dqSource.getRef() + "-" + Long.toHexString(SequentialIdentifierGenerator.getNextId()));
+          gedxSourceDescription.setId(ConversionContext.nextId(dqSource.getRef()));
 
           SourceReference componentOf = new SourceReference();
           componentOf.setDescriptionRef(URI.create(CommonMapper.getSourceDescriptionReference(dqSource.getRef())));
           gedxSourceDescription.setComponentOf(componentOf);
           sourceDescriptionHasData = true;
 
-          if (dqSource.getDate() != null) {
-            CitationField field = new CitationField();
-            field.setName(URI.create("gedcom5:citation-template/date"));
-            field.setValue(dqSource.getDate());
-            citation.getFields().add(field);
-            citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqSource.getDate() : dqSource.getDate()));
-          }
-
-          if (dqSource.getPage() != null) {
-            CitationField field = new CitationField();
-            field.setName(URI.create("gedcom5:citation-template/page"));
-            field.setValue(dqSource.getPage());
-            citation.getFields().add(field);
-            citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqSource.getPage() : dqSource.getPage()));
-          }
+          citationBuilder.field(Vocabulary.CITATION_DATE, dqSource.getDate());
+          citationBuilder.field(Vocabulary.CITATION_PAGE, dqSource.getPage());
         } else if (dqSource.getValue() != null) {
-          gedxSourceDescription.setId("SOUR-" + Long.toHexString(SequentialIdentifierGenerator.getNextId()));
+          gedxSourceDescription.setId(ConversionContext.nextId("SOUR"));
 
-          citation.setValue(dqSource.getValue());
+          citationBuilder.text(dqSource.getValue());
           citation.setCitationTemplate(null);
           sourceDescriptionHasData = true;
         }
+        citationBuilder.build(citation, null);
 
         String entryName = CommonMapper.getSourceDescriptionReference(gedxSourceDescription.getId());
         SourceReference gedxSourceReference = new SourceReference();
         gedxSourceReference.setDescriptionRef(URI.create(entryName));
 
         if (dqSource.getText() != null) {
-          logger.warn(ConversionContext.getContext(), "GEDCOM X does not currently support text extracted from a source.");
+          ConversionContext.warn(logger, Category.UNSUPPORTED, "TEXT", "GEDCOM X does not currently support text extracted from a source.");
           // dqSource.getText(); // see GEDCOM X issue 121 // TODO: address when the associated issue is resolved; log for now
           // sourceDescriptionHasData = true;
         }
@@ -127,12 +103,12 @@ public class CommonMapper {
 
         int cntNotes = dqSource.getNotes().size() + dqSource.getNoteRefs().size();
         if (cntNotes > 0) {
-          logger.warn(ConversionContext.getContext(), "Did not process {} notes or references to notes.", cntNotes);
+          ConversionContext.warn(logger, Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", cntNotes);
         }
 
         int cntMedia = dqSource.getMedia().size() + dqSource.getMediaRefs().size();
         if (cntMedia > 0) {
-          logger.warn(ConversionContext.getContext(), "Did not process {} media items or references to media items.", cntMedia);
+          ConversionContext.warn(logger, Category.IGNORED, "OBJE", "Did not process {} media items or references to media items.", cntMedia);
         }
 
         if (sourceDescriptionHasData) {
@@ -146,10 +122,10 @@ public class CommonMapper {
         }
 
         if ((!sourceDescriptionHasData) && (!sourceReferenceHasData)) {
-          logger.warn(ConversionContext.getContext(), "Source citation did not have any data that was mapped into GEDCOM X");
+          ConversionContext.warn(logger, Category.IGNORED, "SOUR", "Source citation did not have any data that was mapped into GEDCOM X");
         }
       } finally {
-        ConversionContext.removeReference(sourceContext);
+        ConversionContext.pop();
       }
     }
 
@@ -160,39 +136,22 @@ public class CommonMapper {
     if (dqChange == null) {
       return null;
     }
-    Marker changeContext = ConversionContext.getDetachedMarker("CHAN");
-    ConversionContext.addReference(changeContext);
+    ConversionContext.push("CHAN");
     java.util.Date date;
     try {
       date = toDate(dqChange.getDateTime());
     } finally {
-      ConversionContext.removeReference(changeContext);
+      ConversionContext.pop();
     }
     return date;
   }
 
   private static java.util.Date toDate(DateTime dateTime) {
-    List<String> legitimateParsePatterns = dateTime.getTime() != null ? CHAN_DATE_TIME_PARSE_PATTERNS : CHAN_DATE_ONLY_PARSE_PATTERNS;
-
-    String dateTimeString = dateTime.getValue();
-    if (dateTime.getTime() != null) {
-      dateTimeString += ' ' + dateTime.getTime();
-    }
-
-    java.util.Date extractedDate = null;
-    for (String parsePattern : legitimateParsePatterns) {
-      try {
-        extractedDate = parseDateString(parsePattern, dateTimeString);
-        break;
-      }
-      catch (ParseException e) {
-        // the parse pattern being tried did not match the string we were given; try the next one
-      }
-    }
+    java.util.Date extractedDate = ChangeDateParser.parse(dateTime.getValue(), dateTime.getTime());
 
     if (extractedDate == null) {
-      // none of the legitimate parse patterns matched the string we were given
-      logger.warn(ConversionContext.getContext(), "Could not parse DATE {}", dateTimeString);
+      String dateTimeString = dateTime.getTime() != null ? dateTime.getValue() + ' ' + dateTime.getTime() : dateTime.getValue();
+      ConversionContext.warn(logger, Category.INVALID, "DATE", "Could not parse DATE {}", dateTimeString);
     }
 
     return extractedDate;
@@ -213,12 +172,11 @@ public class CommonMapper {
       confidenceLevel = null;
 
       if (dqQuality != null) {
-        Marker qualityContext = ConversionContext.getDetachedMarker("QUAY");
-        ConversionContext.addReference(qualityContext);
+        ConversionContext.push("QUAY");
         try {
-          logger.warn(ConversionContext.getContext(), "Unrecognized value for QUAL tag {}", dqQuality);
+          ConversionContext.warn(logger, Category.INVALID, "QUAY", "Unrecognized value for QUAL tag {}", dqQuality);
         } finally {
-          ConversionContext.removeReference(qualityContext);
+          ConversionContext.pop();
         }
       }
     }
@@ -226,6 +184,10 @@ public class CommonMapper {
     return confidenceLevel;
   }
 
+  /**
+   * @deprecated creates a date format on every call; CHAN dates are parsed by a shared, thread-safe parser instead
+   */
+  @Deprecated
   public static java.util.Date parseDateString (String parsePattern, String value) throws ParseException {
     DateFormat dateFormat = DateFormat.getDateTimeInstance();
     ((SimpleDateFormat)dateFormat).applyPattern(parsePattern);
@@ -271,9 +233,47 @@ public class CommonMapper {
     return reference;
   }
 
+  /**
+   * GEDCOM 5.5 only has a LANG line in the header, for the whole file, but some applications add one to the individuals
+   * and families of multilingual trees, which the parser keeps as an extension of the record. Only the records that
+   * have extensions are looked at, so that the records of the other files cost nothing.
+   *
+   * @param dqRecord an individual or a family
+   * @return the code of the language of the record, or null if it has no LANG line (or one with an unknown language,
+   * which is warned about)
+   */
+  static String toRecordLanguage(ExtensionContainer dqRecord) {
+    if (dqRecord.getExtensions().isEmpty()) {
+      return null;
+    }
+    for (Object extensions : dqRecord.getExtensions().values()) {
+      if (!(extensions instanceof List)) {
+        continue;
+      }
+      for (Object extension : (List<?>) extensions) {
+        if (extension instanceof GedcomTag && isRecordLanguage((GedcomTag) extension)) {
+          String language = ((GedcomTag) extension).getValue();
+          LanguageMapping mapping = LanguageMapping.fromString(language);
+          if (mapping == null) {
+            ConversionContext.warn(logger, Category.INVALID, "LANG", "Unrecognized language ({}) was ignored.", language);
+            return null;
+          }
+          return mapping.getLanguageCode();
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return whether an extension of a record is the LANG line of the record (see {@link #toRecordLanguage})
+   */
+  static boolean isRecordLanguage(GedcomTag tag) {
+    return "LANG".equals(tag.getTag()) && tag.getValue() != null && tag.getChildren().isEmpty();
+  }
+
   public static boolean inCanonicalGlobalFormat(String telephoneNumber) {
-    final Pattern pattern = Pattern.compile("^\\+[\\d \\.\\(\\)\\-/]+");
-    return pattern.matcher(telephoneNumber).matches();
+    return Vocabulary.GLOBAL_TELEPHONE_NUMBER.matcher(telephoneNumber).matches();
   }
 
   public static void populateAgent(Agent agent, String id, String name, org.folg.gedcom.model.Address address, String phone, String fax, String email, String www) {
@@ -294,13 +294,12 @@ public class CommonMapper {
       agent.getAddresses().add(gedxAddress);
 
       if(address.getName() != null) {
-        Marker addressContext = ConversionContext.getDetachedMarker("ADDR");
-        ConversionContext.addReference(addressContext);
+        ConversionContext.push("ADDR");
         try {
-          logger.warn(ConversionContext.getContext(), "Ignoring extension tag for address name: {}", address.getName());
+          ConversionContext.warn(logger, Category.UNSUPPORTED, "_NAME", "Ignoring extension tag for address name: {}", address.getName());
         }
         finally {
-          ConversionContext.removeReference(addressContext);
+          ConversionContext.pop();
         }
       }
     }
@@ -341,13 +340,12 @@ public class CommonMapper {
         agent.getEmails().add(emailRef);
       }
       catch (RuntimeException ex) {
-        Marker emailContext = ConversionContext.getDetachedMarker("EMAIL");
-        ConversionContext.addReference(emailContext);
+        ConversionContext.push("EMAIL");
         try {
-          logger.warn(ConversionContext.getContext(), "Invalid value for EMAIL ({}) was ignored.", email);
+          ConversionContext.warn(logger, Category.INVALID, "EMAIL", "Invalid value for EMAIL ({}) was ignored.", email);
         }
         finally {
-          ConversionContext.removeReference(emailContext);
+          ConversionContext.pop();
         }
       }
     }
@@ -15,47 +15,223 @@
  */
 package org.gedcomx.conversion.gedcom.dq55;
 
+import java.util.Arrays;
+
+import org.gedcomx.conversion.ConversionDiagnostics;
+import org.slf4j.Logger;
 import org.slf4j.Marker;
 import org.slf4j.helpers.BasicMarkerFactory;
 
 
+/**
+ * Keeps track of where in the GEDCOM 5.5 file the mappers currently are (e.g. <code>@I1@ INDI</code>, <code>BIRT.2</code>,
+ * <code>SOUR.1</code>) so that warnings can be attributed to the record and structure that caused them.
+ *
+ * The path is kept per thread as a stack of the raw tags, identifiers and indexes; pushing and popping doesn't allocate.
+ * A marker or a path string is only built by {@link #getContext()} or {@link #getPath()}, i.e. when a warning is
+ * actually being emitted.
+ *
+ * Warnings are reported through {@link #warn(Logger, ConversionDiagnostics.Category, String, String, Object...)}, which
+ * records them in the diagnostics installed for the current thread (if any) as well as logging them.
+ */
 public class ConversionContext {
-  private static final ThreadLocal<BasicMarkerFactory> factory;
+  private static final int NO_INDEX = -1;
+  private static final int RECORD = -2;
+
+  private static final BasicMarkerFactory factory = new BasicMarkerFactory();
 
-  private static final ThreadLocal<Marker> rootContext;
+  private static final ThreadLocal<PathStack> path = new ThreadLocal<PathStack>() {
+      @Override
+      protected PathStack initialValue() {
+        return new PathStack();
+      }
+    };
+
+  /**
+   * Starts a new level-0 record (e.g. <code>@I1@ INDI</code>). Any structure left on the stack by a previous record is discarded.
+   * The record is taken to be at the position set by {@link #setRecordPosition(int)}, or to follow the previous record.
+   */
+  public static void pushRecord(String xref, String tag) {
+    PathStack stack = path.get();
+    stack.depth = 0;
+    stack.sequence = 0;
+    stack.recordPosition = stack.nextRecordPosition++;
+    stack.push(xref, tag, RECORD);
+  }
 
-  static {
+  /**
+   * Sets the position (starting at zero) of the next record started on the current thread among the records of its
+   * kind in the file; the records started after it are taken to follow it. A record without an identifier is known by
+   * its position (see {@link #getRecordKey()}).
+   */
+  static void setRecordPosition(int position) {
+    path.get().nextRecordPosition = position;
+  }
+
+  /**
+   * Enters the <code>index</code>th (one-based) occurrence of a tag within the current structure (e.g. <code>NAME.2</code>).
+   */
+  public static void push(String tag, int index) {
+    path.get().push(null, tag, index);
+  }
+
+  /**
+   * Enters a tag within the current structure.
+   */
+  public static void push(String tag) {
+    path.get().push(null, tag, NO_INDEX);
+  }
+
+  public static void pop() {
+    PathStack stack = path.get();
+    if (stack.depth > 0) {
+      stack.depth--;
+    }
+  }
 
-    factory = new ThreadLocal<BasicMarkerFactory>() {
-        @Override
-        protected BasicMarkerFactory initialValue() {
-          synchronized (ConversionContext.class) {
-            return new BasicMarkerFactory();
-          }
-        }
-      };
-    rootContext = new ThreadLocal<Marker>() {
-        @Override
-        protected Marker initialValue() {
-          return factory.get().getDetachedMarker("");
-        }
-      };
+  /**
+   * Installs the diagnostics the warnings of the current thread are recorded in.
+   *
+   * @param diagnostics the diagnostics, or null to stop recording
+   */
+  public static void setDiagnostics(ConversionDiagnostics diagnostics) {
+    path.get().diagnostics = diagnostics;
   }
 
-  public static Marker getDetachedMarker(String name) {
-    return factory.get().getDetachedMarker(name);
+  /**
+   * @return the diagnostics the warnings of the current thread are recorded in, or null if there are none
+   */
+  public static ConversionDiagnostics getDiagnostics() {
+    return path.get().diagnostics;
   }
 
-  public static void addReference(Marker reference) {
-    rootContext.get().add(reference);
+  /**
+   * Installs the generator of the ids minted on the current thread.
+   *
+   * @param identifierGenerator the generator, or null for the default one
+   */
+  public static void setIdentifierGenerator(IdentifierGenerator identifierGenerator) {
+    path.get().identifierGenerator = identifierGenerator;
   }
 
-  public static void removeReference(Marker reference) {
-    rootContext.get().remove(reference);
+  /**
+   * @return the generator of the ids minted on the current thread, or null if the default one is used
+   */
+  public static IdentifierGenerator getIdentifierGenerator() {
+    return path.get().identifierGenerator;
   }
 
+  /**
+   * Generates a new id with the generator installed for the current thread, or with a
+   * {@link RecordPathIdentifierGenerator} if there is none.
+   *
+   * @param prefix the prefix of the id
+   * @return the id
+   */
+  public static String nextId(String prefix) {
+    IdentifierGenerator identifierGenerator = path.get().identifierGenerator;
+    return (identifierGenerator == null ? RecordPathIdentifierGenerator.INSTANCE : identifierGenerator).nextId(prefix);
+  }
+
+  /**
+   * @return the identifier of the level-0 record being mapped on the current thread (or, if it has none, its tag and
+   * its position among the records of its kind, e.g. <code>INDI.3</code>), or null if there is no record
+   */
+  static String getRecordKey() {
+    PathStack stack = path.get();
+    if (stack.depth == 0 || stack.indexes[0] != RECORD) {
+      return null;
+    }
+    return stack.xrefs[0] != null ? stack.xrefs[0] : stack.tags[0] + '.' + stack.recordPosition;
+  }
+
+  /**
+   * @return the next number (starting at one) of a sequence that restarts with every record
+   */
+  static int nextSequenceInRecord() {
+    return ++path.get().sequence;
+  }
+
+  /**
+   * Reports a warning about the current path. The warning is counted in the installed diagnostics and, if the logger
+   * is enabled for warnings, logged with the current path as its marker.
+   *
+   * @param logger the logger of the mapper reporting the warning
+   * @param category the category of the warning
+   * @param tag the GEDCOM tag the warning is about
+   * @param message the log message
+   * @param args the arguments of the log message
+   */
+  public static void warn(Logger logger, ConversionDiagnostics.Category category, String tag, String message, Object... args) {
+    ConversionDiagnostics diagnostics = path.get().diagnostics;
+    if (diagnostics != null) {
+      diagnostics.record(category, tag, message, ConversionContext::getPath);
+    }
+    if (logger.isWarnEnabled()) {
+      logger.warn(getContext(), message, args);
+    }
+  }
+
+  /**
+   * @return a marker describing the current path, with one referenced marker per level, for use with a log statement
+   */
   public static Marker getContext() {
-    return rootContext.get();
+    PathStack stack = path.get();
+    Marker context = factory.getDetachedMarker("");
+    for (int i = 0; i < stack.depth; i++) {
+      context.add(factory.getDetachedMarker(stack.describe(i)));
+    }
+    return context;
+  }
+
+  /**
+   * @return the current path (e.g. <code>@I1@ INDI, BIRT.1, SOUR.2</code>)
+   */
+  public static String getPath() {
+    PathStack stack = path.get();
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < stack.depth; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(stack.describe(i));
+    }
+    return builder.toString();
+  }
+
+  private static final class PathStack {
+    private String[] xrefs = new String[8];
+    private String[] tags = new String[8];
+    private int[] indexes = new int[8];
+    private int depth = 0;
+    private int sequence = 0;
+    private int recordPosition = 0;
+    private int nextRecordPosition = 0;
+    private ConversionDiagnostics diagnostics;
+    private IdentifierGenerator identifierGenerator;
+
+    private void push(String xref, String tag, int index) {
+      if (depth == tags.length) {
+        int capacity = depth * 2;
+        xrefs = Arrays.copyOf(xrefs, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+        indexes = Arrays.copyOf(indexes, capacity);
+      }
+      xrefs[depth] = xref;
+      tags[depth] = tag;
+      indexes[depth] = index;
+      depth++;
+    }
+
+    private String describe(int level) {
+      if (indexes[level] == RECORD) {
+        return "@" + xrefs[level] + "@ " + tags[level];
+      }
+      if (indexes[level] != NO_INDEX) {
+        return String.valueOf(tags[level]) + '.' + indexes[level];
+      }
+      return String.valueOf(tags[level]);
+    }
   }
 
   private ConversionContext() { } // added to remove "major" sonar warning
@@ -16,7 +16,7 @@
 package org.gedcomx.conversion.gedcom.dq55;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -26,17 +26,15 @@ import org.folg.gedcom.model.Family;
 import org.folg.gedcom.model.Gedcom;
 import org.folg.gedcom.model.GedcomTag;
 import org.folg.gedcom.model.LdsOrdinance;
-import org.folg.gedcom.model.ParentFamilyRef;
-import org.folg.gedcom.model.Person;
 import org.folg.gedcom.model.SpouseRef;
 import org.gedcomx.conclusion.Fact;
 import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.conversion.ConversionDiagnostics.Category;
 import org.gedcomx.conversion.GedcomxConversionResult;
 import org.gedcomx.types.FactType;
 import org.gedcomx.types.RelationshipType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
 import org.familysearch.platform.ordinances.Ordinance;
 
@@ -50,12 +48,23 @@ public class FamilyMapper {
     this.mappingConfig = mappingConfig;
   }
 
+  /**
+   * Maps a family, with the links of its children to it as the individuals of the given model have them; only the
+   * children of the family are looked up in the model.
+   */
   public void toRelationship(Family dqFamily, Gedcom dqGedcom, GedcomxConversionResult result) throws IOException {
+    toRelationshipIndexed(dqFamily, ChildLinkIndex.ofChildren(dqFamily, dqGedcom), result);
+  }
+
+  /**
+   * Maps a family, with the links of its children to it as the given index has them (for the callers that map all the
+   * families of a model, and index the links of its individuals once with {@link ChildLinkIndex#of(Gedcom)}).
+   */
+  void toRelationshipIndexed(Family dqFamily, ChildLinkIndex childLinks, GedcomxConversionResult result) throws IOException {
     String dqFamilyId = dqFamily.getId();
     String gedxFamilyId = mappingConfig.createId(dqFamilyId);
 
-    Marker familyContext = ConversionContext.getDetachedMarker(String.format("@%s@ FAM", dqFamilyId));
-    ConversionContext.addReference(familyContext);
+    ConversionContext.pushRecord(dqFamilyId, "FAM");
 
     List<SpouseRef> husbands = dqFamily.getHusbandRefs();
     String husbandId = (husbands.size() > 0) ? mappingConfig.createId(husbands.get(0).getRef()) : null;
@@ -67,46 +76,51 @@ public class FamilyMapper {
 
     if ( husbandId != null && wifeId != null) {
       coupleRelationship = toRelationship(gedxFamilyId, husbandId, wifeId, RelationshipType.Couple);
-      result.addRelationship(coupleRelationship);
     }
 
+    // relationships are handed to the result only once they are complete (see below) because a result is free to
+    // serialize them as soon as they are added
+    List<Relationship> parentChildRelationships = new ArrayList<Relationship>(dqFamily.getChildRefs().size() * 2);
+
     for (ChildRef child : dqFamily.getChildRefs()) {
       String childId = mappingConfig.createId(child.getRef());
 
-      Person dqChild = (dqGedcom == null) ? null : dqGedcom.getPerson(childId);
-      List<ParentFamilyRef> childToFamilyLinks;
-      if (dqChild != null) {
-        childToFamilyLinks = dqChild.getParentFamilyRefs();
+      ChildLinkIndex.ChildLink childToFamilyLink = null;
+      if (childLinks.hasPerson(child.getRef())) {
+        childToFamilyLink = childLinks.getLink(dqFamilyId, child.getRef());
       } else {
-        logger.warn(ConversionContext.getContext(), "Could not find referenced child (@{}@ INDI).", childId);
-        childToFamilyLinks = Collections.emptyList();
+        ConversionContext.warn(logger, Category.UNRESOLVED, "CHIL", "Could not find referenced child (@{}@ INDI).", child.getRef());
+      }
+      if (childToFamilyLink != null && (husbandId != null || wifeId != null)) {
+        for (String dropped : childToFamilyLink.getDropped()) {
+          ConversionContext.warn(logger, Category.IGNORED, "PEDI", "Information designating this relationship as \"{}\" was dropped.", dropped);
+        }
       }
 
       if (husbandId != null) {
         Relationship gedxRelationship = toRelationship(gedxFamilyId, husbandId, childId, RelationshipType.ParentChild);
-        addFacts(gedxRelationship, dqFamilyId, childToFamilyLinks);
-        result.addRelationship(gedxRelationship);
+        addFacts(gedxRelationship, childToFamilyLink);
+        parentChildRelationships.add(gedxRelationship);
       }
       if (wifeId != null) {
         Relationship gedxRelationship = toRelationship(gedxFamilyId, wifeId, childId, RelationshipType.ParentChild);
-        addFacts(gedxRelationship, dqFamilyId, childToFamilyLinks);
-        result.addRelationship(gedxRelationship);
+        addFacts(gedxRelationship, childToFamilyLink);
+        parentChildRelationships.add(gedxRelationship);
       }
     }
 
     int index = 0;
     for (EventFact eventFact : dqFamily.getEventsFacts()) {
-      Marker factContext = ConversionContext.getDetachedMarker(eventFact.getTag() + '.' + (++index));
-      ConversionContext.addReference(factContext);
+      ConversionContext.push(eventFact.getTag(), ++index);
 
       if (coupleRelationship != null) {
         Fact fact = FactMapper.toFact(eventFact, result);
         coupleRelationship.addFact(fact);
       } else {
-        logger.warn(ConversionContext.getContext(), "The GEDCOM X converter only supports the {} fact in the presence of a couple relationship.", eventFact.getTag());
+        ConversionContext.warn(logger, Category.UNSUPPORTED, eventFact.getTag(), "The GEDCOM X converter only supports the {} fact in the presence of a couple relationship.", eventFact.getTag());
       }
 
-      ConversionContext.removeReference(factContext);
+      ConversionContext.pop();
     }
 
     if (coupleRelationship != null) {
@@ -114,14 +128,13 @@ public class FamilyMapper {
     } else {
       int size = dqFamily.getSourceCitations().size();
       if (size > 0) {
-        logger.warn(ConversionContext.getContext(), "The GEDCOM X converter only supports a source citation(s) in the presence of a couple relationship; {} source citation(s) ignored.", size);
+        ConversionContext.warn(logger, Category.UNSUPPORTED, "SOUR", "The GEDCOM X converter only supports a source citation(s) in the presence of a couple relationship; {} source citation(s) ignored.", size);
       }
     }
 
     index = 0;
     for (LdsOrdinance ldsOrdinance : dqFamily.getLdsOrdinances()) {
-      Marker ordinanceContext = ConversionContext.getDetachedMarker(ldsOrdinance.getTag() + '.' + (++index));
-      ConversionContext.addReference(ordinanceContext);
+      ConversionContext.push(ldsOrdinance.getTag(), ++index);
 
       if (coupleRelationship != null) {
         Fact ordinance = FactMapper.toOrdinance(ldsOrdinance);
@@ -130,50 +143,68 @@ public class FamilyMapper {
         }
       }
       else {
-        logger.warn(ConversionContext.getContext(), "The GEDCOM X converter only supports the {} ordinance in the presence of a couple relationship.", ldsOrdinance.getTag());
+        ConversionContext.warn(logger, Category.UNSUPPORTED, ldsOrdinance.getTag(), "The GEDCOM X converter only supports the {} ordinance in the presence of a couple relationship.", ldsOrdinance.getTag());
       }
 
-      ConversionContext.removeReference(ordinanceContext);
+      ConversionContext.pop();
+    }
+
+    String lang = CommonMapper.toRecordLanguage(dqFamily);
+    if (lang != null) {
+      if (coupleRelationship != null) {
+        coupleRelationship.setLang(lang);
+      }
+      for (Relationship parentChildRelationship : parentChildRelationships) {
+        parentChildRelationship.setLang(lang);
+      }
+    }
+
+    if (coupleRelationship != null) {
+      result.addRelationship(coupleRelationship);
+    }
+    for (Relationship parentChildRelationship : parentChildRelationships) {
+      result.addRelationship(parentChildRelationship);
     }
 
     int cntNotes = dqFamily.getNotes().size() + dqFamily.getNoteRefs().size();
     if (cntNotes > 0) {
-      logger.warn(ConversionContext.getContext(), "Did not process {} notes or references to notes.", cntNotes);
+      ConversionContext.warn(logger, Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", cntNotes);
     }
 
     int cntMedia = dqFamily.getMedia().size() + dqFamily.getMediaRefs().size();
     if (cntMedia > 0) {
-      logger.warn(ConversionContext.getContext(), "Did not process {} media items or references to media items.", cntMedia);
+      ConversionContext.warn(logger, Category.IGNORED, "OBJE", "Did not process {} media items or references to media items.", cntMedia);
     }
 
     for (String refNum : dqFamily.getReferenceNumbers()) {
-      Marker refnContext = ConversionContext.getDetachedMarker("REFN");
-      ConversionContext.addReference(refnContext);
-      logger.warn(ConversionContext.getContext(), "User reference number ({}) was ignored.", refNum);
-      ConversionContext.removeReference(refnContext);
+      ConversionContext.push("REFN");
+      ConversionContext.warn(logger, Category.IGNORED, "REFN", "User reference number ({}) was ignored.", refNum);
+      ConversionContext.pop();
     }
 
     if (dqFamily.getRin() != null) {
-      logger.warn(ConversionContext.getContext(), "RIN ({}) was ignored.", dqFamily.getRin());
+      ConversionContext.warn(logger, Category.IGNORED, "RIN", "RIN ({}) was ignored.", dqFamily.getRin());
     }
 
     if (dqFamily.getUid() != null) {
-      Marker uidContext = ConversionContext.getDetachedMarker(dqFamily.getUidTag());
-      ConversionContext.addReference(uidContext);
-      logger.warn(ConversionContext.getContext(), "UID ({}) was ignored.", dqFamily.getUid());
-      ConversionContext.removeReference(uidContext);
+      ConversionContext.push(dqFamily.getUidTag());
+      ConversionContext.warn(logger, Category.IGNORED, dqFamily.getUidTag(), "UID ({}) was ignored.", dqFamily.getUid());
+      ConversionContext.pop();
     }
 
     if (dqFamily.getExtensions().size() > 0) {
       for (String extensionCategory : dqFamily.getExtensions().keySet()) {
         for (GedcomTag tag : ((List<GedcomTag>)dqFamily.getExtension(extensionCategory))) {
-          logger.warn(ConversionContext.getContext(), "Unsupported ({}): {}", extensionCategory, tag);
+          if (CommonMapper.isRecordLanguage(tag)) {
+            continue;
+          }
+          ConversionContext.warn(logger, Category.UNSUPPORTED, tag.getTag(), "Unsupported ({}): {}", extensionCategory, tag);
           // DATA tag (and subordinates) in GEDCOM 5.5. SOURCE_RECORD not being looked for or parsed by DallanQ code
         }
       }
     }
 
-    ConversionContext.removeReference(familyContext);
+    ConversionContext.pop();
   }
 
   /**
@@ -206,29 +237,14 @@ public class FamilyMapper {
   }
 
 
-  private void addFacts(Relationship gedxRelationship, String ged5FamilyId, List<ParentFamilyRef> childToFamilyLinks) {
-    for (ParentFamilyRef ref : childToFamilyLinks) {
-      if (ref.getRef().equals(ged5FamilyId)) {
-        String relationshipType = ref.getRelationshipType();
-        if (relationshipType != null) {
-          relationshipType = relationshipType.toLowerCase().trim();
-          if (relationshipType.equalsIgnoreCase("adopted")) {
-            Fact fact = new Fact();
-            fact.setKnownType(FactType.AdoptiveParent);
-            gedxRelationship.addFact(fact);
-          } else if (relationshipType.equalsIgnoreCase("birth")) {
-            Fact fact = new Fact();
-            fact.setKnownType(FactType.BiologicalParent);
-            gedxRelationship.addFact(fact);
-          } else if (relationshipType.equalsIgnoreCase("foster")) {
-            Fact fact = new Fact();
-            fact.setKnownType(FactType.FosterParent);
-            gedxRelationship.addFact(fact);
-          } else {
-            logger.warn(ConversionContext.getContext(), "Information designating this relationship as \"{}\" was dropped.", ref.getRelationshipType());
-          }
-        }
-      }
+  private static void addFacts(Relationship gedxRelationship, ChildLinkIndex.ChildLink childToFamilyLink) {
+    if (childToFamilyLink == null) {
+      return;
+    }
+    for (FactType factType : childToFamilyLink.getFacts()) {
+      Fact fact = new Fact();
+      fact.setKnownType(factType);
+      gedxRelationship.addFact(fact);
     }
   }
 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.gedml.AnselInputStreamReader;
+import org.gedml.GedcomParser;
+
+
+/**
+ * Decodes GEDCOM 5.5 files the way the GEDCOM parser does: the charset is taken from the byte order mark if there is
+ * one and otherwise from the CHAR of the header, corrected for the quirks of known generators (see
+ * {@link GedcomParser#getCorrectedCharsetName(String, String, String)}); a file that doesn't name its charset is
+ * decoded as ANSEL, unless it looks like UTF-16.
+ */
+final class GedcomCharsets {
+
+  /**
+   * The most bytes read to find the charset of a file; the header is expected to name it well within this limit.
+   */
+  static final int MAX_HEADER_BYTES = 1 << 16;
+
+  /**
+   * The most header lines read to find the charset of a file, as many as the GEDCOM parser reads.
+   */
+  private static final int MAX_HEADER_LINES = 100;
+
+  static final String ANSEL = "ANSEL";
+
+  /**
+   * @return a reader of the characters of the given GEDCOM 5.5 file, starting at its first record
+   */
+  static Reader newReader(InputStream in) throws IOException {
+    InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, MAX_HEADER_BYTES);
+    buffered.mark(MAX_HEADER_BYTES);
+    byte[] head = new byte[MAX_HEADER_BYTES];
+    int length = readHead(buffered, head);
+    buffered.reset();
+
+    String charset = detect(head, length);
+    if (charset.startsWith("UTF-16") || charset.equals("UnicodeBigUnmarked")) {
+      // the decoder takes care of the byte order mark
+      return new InputStreamReader(buffered, charset);
+    }
+
+    // skip anything before the first record, such as a UTF-8 byte order mark
+    int skip = 0;
+    while (skip < length && head[skip] != '0') {
+      skip++;
+    }
+    long skipped = 0;
+    while (skipped < skip) {
+      skipped += buffered.skip(skip - skipped);
+    }
+    return ANSEL.equals(charset) ? new AnselInputStreamReader(buffered) : new InputStreamReader(buffered, charset);
+  }
+
+  /**
+   * @return the (Java) name of the charset of the given GEDCOM 5.5 file, or {@link #ANSEL}
+   */
+  static String detect(File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      byte[] head = new byte[MAX_HEADER_BYTES];
+      return detect(head, readHead(in, head));
+    }
+  }
+
+  private static int readHead(InputStream in, byte[] head) throws IOException {
+    int length = 0;
+    int read;
+    while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+      length += read;
+    }
+    return length;
+  }
+
+  /**
+   * @param head the first bytes of a GEDCOM 5.5 file
+   * @param length the number of bytes in <code>head</code>
+   * @return the (Java) name of the charset of the file, or {@link #ANSEL}
+   */
+  static String detect(byte[] head, int length) throws IOException {
+    if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+      return "UTF-8";
+    }
+    if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+      return "UTF-16BE";
+    }
+    if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+      return "UTF-16LE";
+    }
+    if (length >= 2 && head[0] == 0 && head[1] == '0') {
+      return "UTF-16BE";
+    }
+    if (length >= 2 && head[0] == '0' && head[1] == 0) {
+      return "UTF-16LE";
+    }
+
+    // every byte is a character in ISO-8859-1, and the header lines the charset is read from are ASCII
+    String charset = readCorrectedCharsetName(new ByteArrayInputStream(head, 0, length));
+    return charset.isEmpty() ? ANSEL : charset;
+  }
+
+  /**
+   * @return whether line breaks, spaces, digits and ASCII letters are the same single bytes in the given charset as in
+   * ASCII, and no other character contains these bytes, so that the lines and tags of a file can be found in its bytes:
+   * this is the case of ANSEL, UTF-8 and the single-byte charsets that extend ASCII, but not of the multibyte charsets
+   * such as Shift_JIS or Big5 (where the second byte of a character can be that of an ASCII character) or UTF-16
+   */
+  static boolean isAsciiCompatible(String charsetName) {
+    if (ANSEL.equals(charsetName)) {
+      return true;
+    }
+    Charset charset = Charset.forName(charsetName);
+    if (charset.equals(StandardCharsets.UTF_8)) {
+      return true;
+    }
+    if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+      return false;
+    }
+    // some single-byte charsets, such as EBCDIC, don't have the bytes of ASCII
+    byte[] ascii = new byte[0x80];
+    for (int i = 0; i < ascii.length; i++) {
+      ascii[i] = (byte) i;
+    }
+    return new String(ascii, charset).equals(new String(ascii, StandardCharsets.US_ASCII));
+  }
+
+  private static String readCorrectedCharsetName(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+    String generator = null;
+    String charset = null;
+    String version = null;
+    for (int i = 0; i < MAX_HEADER_LINES && (generator == null || charset == null); i++) {
+      String line = reader.readLine();
+      if (line == null) {
+        break;
+      }
+      String[] fields = line.trim().split("\\s+", 3);
+      if (fields.length != 3) {
+        continue;
+      }
+      if (generator == null && fields[0].equals("1") && fields[1].equals("SOUR")) {
+        generator = fields[2];
+      }
+      else if (fields[0].equals("1") && (fields[1].equals("CHAR") || fields[1].equals("CHARACTER"))) {
+        charset = fields[2].toUpperCase();
+        String next = reader.readLine();
+        if (next != null) {
+          String[] versionFields = next.trim().split("\\s+", 3);
+          if (versionFields.length == 3 && versionFields[0].equals("2") && versionFields[1].equals("VERS")) {
+            version = versionFields[2];
+          }
+        }
+      }
+    }
+    return GedcomParser.getCorrectedCharsetName(generator, charset, version);
+  }
+
+  private GedcomCharsets() { }
+}
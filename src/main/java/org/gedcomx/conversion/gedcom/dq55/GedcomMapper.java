@@ -15,29 +15,69 @@
  */
 package org.gedcomx.conversion.gedcom.dq55;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.folg.gedcom.model.Family;
 import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Header;
 import org.folg.gedcom.model.Person;
 import org.folg.gedcom.model.Repository;
 import org.folg.gedcom.model.Source;
+import org.gedcomx.conversion.ConversionDiagnostics;
 import org.gedcomx.conversion.DefaultGedcomxConversionResult;
 import org.gedcomx.conversion.GedcomxConversionResult;
+import org.xml.sax.SAXParseException;
 
 public class GedcomMapper {
 
+  /**
+   * The most records mapped by a single task when mapping in parallel.
+   */
+  private static final int MAX_SHARD_SIZE = 256;
+
+  /**
+   * The version of what the mapping puts in a {@link RecordCache}, to be changed when the mapping of a record changes.
+   */
+  private static final int CACHE_VERSION = 4;
+
+  /**
+   * The tags of the records whose mapping can be taken from a {@link RecordCache}.
+   */
+  private static final Set<String> CACHED_RECORDS = new HashSet<String>(Arrays.asList("INDI", "FAM", "SOUR", "REPO"));
+
+  private final MappingConfig mappingConfig;
   private final PersonMapper personMapper;
   private final FamilyMapper familyMapper;
   private final SubmitterMapper submitterMapper;
   private final SourceDescriptionMapper sourceDescriptionMapper;
+  private final PostProcessor postProcessor;
 
   public GedcomMapper(MappingConfig mappingConfig) {
     this(mappingConfig, null);
   }
 
+  /**
+   * @param mappingConfig the mapping configuration
+   * @param postProcessor the post processor, if any; it must be thread-safe if the mapping config maps records in parallel
+   */
   public GedcomMapper(MappingConfig mappingConfig, PostProcessor postProcessor) {
+    this.mappingConfig = mappingConfig;
+    this.postProcessor = postProcessor;
     personMapper = new PersonMapper(mappingConfig, postProcessor);
     familyMapper = new FamilyMapper(mappingConfig);
     submitterMapper = new SubmitterMapper();
@@ -48,22 +88,267 @@ public class GedcomMapper {
     return toGedcomx(dqGedcom, new DefaultGedcomxConversionResult());
   }
 
+  /**
+   * Maps a GEDCOM 5.5 file into the given result. The issues encountered while mapping are recorded in the diagnostics
+   * of the result (see {@link GedcomxConversionResult#getDiagnostics()}).
+   */
   public GedcomxConversionResult toGedcomx(Gedcom dqGedcom, GedcomxConversionResult result) throws IOException {
-    toPersons(dqGedcom.getPeople(), result);
-    toRelationships(dqGedcom.getFamilies(), dqGedcom, result);
-    toSourceDescriptions(dqGedcom.getSources(), result);
-    toOrganizations(dqGedcom.getRepositories(), result);
+    ConversionDiagnostics previous = ConversionContext.getDiagnostics();
+    IdentifierGenerator previousGenerator = ConversionContext.getIdentifierGenerator();
+    ConversionContext.setDiagnostics(result.getDiagnostics());
+    ConversionContext.setIdentifierGenerator(mappingConfig.getIdentifierGenerator());
+    try {
+      map(dqGedcom, result);
+    }
+    finally {
+      ConversionContext.setDiagnostics(previous);
+      ConversionContext.setIdentifierGenerator(previousGenerator);
+    }
+    return result;
+  }
+
+  /**
+   * Maps a GEDCOM 5.5 file one record at a time (see {@link GedcomRecordReader}), without building the model of the
+   * whole file first: each record is mapped into the given result as soon as it is read, and then discarded. What the
+   * families need to know about their children (the links of each child to its parent families) is collected in a
+   * first pass over the file and is all that is kept in memory between records, so the memory used doesn't depend on
+   * the size of the file if the result doesn't keep what it is given either (see
+   * {@link org.gedcomx.conversion.StreamingGedcomxConversionResult}).
+   *
+   * The records are mapped in the order of the file, on the calling thread. If the mapping config has more than one
+   * thread (see {@link MappingConfig#getParallelism()}), the file is parsed ahead of the mapping on these threads, in
+   * chunks of records (see {@link ParallelGedcomParser}), and the records of each chunk are mapped by kind (persons,
+   * then families, sources and repositories).
+   */
+  public GedcomxConversionResult toGedcomx(File gedcomFile, GedcomxConversionResult result) throws IOException, SAXParseException {
+    ChildLinkIndex childLinks = indexChildLinks(gedcomFile);
+
+    ConversionDiagnostics previous = ConversionContext.getDiagnostics();
+    IdentifierGenerator previousGenerator = ConversionContext.getIdentifierGenerator();
+    ConversionContext.setDiagnostics(result.getDiagnostics());
+    ConversionContext.setIdentifierGenerator(mappingConfig.getIdentifierGenerator());
+    try {
+      RecordsMapping mapping = new RecordsMapping(childLinks, result);
+      int parallelism = mappingConfig.getParallelism();
+      if (parallelism <= 1 || !new ParallelGedcomParser(parallelism).parseChunks(gedcomFile, mapping::map)) {
+        try (GedcomRecordReader reader = new GedcomRecordReader(gedcomFile)) {
+          Gedcom record;
+          while ((record = reader.nextRecord()) != null) {
+            mapping.map(record);
+          }
+        }
+      }
+      toLanguage(mapping.header, result);
+    }
+    finally {
+      ConversionContext.setDiagnostics(previous);
+      ConversionContext.setIdentifierGenerator(previousGenerator);
+    }
+    return result;
+  }
+
+  /**
+   * Maps a GEDCOM 5.5 file one record at a time, like {@link #toGedcomx(File, GedcomxConversionResult)}, but only the
+   * records that are new or have changed since the file was last converted with the given cache (see
+   * {@link RecordCache}): the individuals, families, sources and repositories that haven't changed are not parsed, and
+   * what they were mapped to the last time is taken from the cache. A family has changed if its own lines have, or the
+   * links of its children to it have. The records are mapped on the calling thread; the issues of the records that are
+   * taken from the cache are not reported again.
+   *
+   * What a record is mapped to only depends on the record if the identifiers are generated from the records (see
+   * {@link RecordPathIdentifierGenerator}); with another identifier generator, the cache isn't used.
+   *
+   * @param cache the cache to read and update; it must be committed (see {@link RecordCache#commit()}) once the result
+   *              has been written, for the next conversion to use it
+   */
+  public GedcomxConversionResult toGedcomx(File gedcomFile, GedcomxConversionResult result, RecordCache cache) throws IOException, SAXParseException {
+    if (!(mappingConfig.getIdentifierGenerator() instanceof RecordPathIdentifierGenerator)) {
+      return toGedcomx(gedcomFile, result);
+    }
+
+    ChildLinkIndex childLinks = indexChildLinks(gedcomFile);
+
+    ConversionDiagnostics previous = ConversionContext.getDiagnostics();
+    IdentifierGenerator previousGenerator = ConversionContext.getIdentifierGenerator();
+    ConversionContext.setDiagnostics(result.getDiagnostics());
+    ConversionContext.setIdentifierGenerator(mappingConfig.getIdentifierGenerator());
+    try {
+      MessageDigest digest = newDigest();
+      RecordsMapping mapping = new RecordsMapping(childLinks, result);
+      try (GedcomRecordReader reader = new GedcomRecordReader(gedcomFile)) {
+        // the records are digested as bytes, which mean other characters in another charset
+        cache.start(fingerprint(reader.getCharsetName()));
+        while (reader.skipRecord()) {
+          String key = reader.recordKey();
+          String tag = key == null ? null : key.substring(0, key.indexOf(' '));
+          if (key == null || !CACHED_RECORDS.contains(tag)) {
+            mapping.map(reader.parseRecord());
+            continue;
+          }
+          mapping.skip(tag);
+
+          reader.digestRecord(digest);
+          if (key.startsWith("FAM ")) {
+            for (Map.Entry<String, ChildLinkIndex.ChildLink> link : childLinks.getLinks(key.substring(4)).entrySet()) {
+              digest.update((link.getKey() + '\t' + link.getValue() + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+          }
+          byte[] recordDigest = digest.digest();
+          if (!cache.replay(key, recordDigest, result)) {
+            ShardConversionResult recordResult = new ShardConversionResult();
+            new RecordsMapping(childLinks, recordResult).map(reader.parseRecord());
+            cache.put(key, recordDigest, recordResult.getAdded());
+            recordResult.replay(result);
+          }
+        }
+      }
+      toLanguage(mapping.header, result);
+    }
+    finally {
+      ConversionContext.setDiagnostics(previous);
+      ConversionContext.setIdentifierGenerator(previousGenerator);
+    }
+    return result;
+  }
+
+  /**
+   * @param charsetName the charset the records were decoded with
+   * @return what the records were mapped with, besides the records themselves
+   */
+  private String fingerprint(String charsetName) {
+    return CACHE_VERSION + "|" + charsetName + "|" + mappingConfig.isIncludeFilenameInIds() + "|" + mappingConfig.getInputFilename()
+      + "|" + (postProcessor == null ? "" : postProcessor.getClass().getName() + ":" + postProcessor.getConfiguration())
+      + "|" + GedcomMapper.class.getPackage().getImplementationVersion();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Maps the records of a file as they are read, one or more at a time.
+   */
+  private final class RecordsMapping {
+    private final ChildLinkIndex childLinks;
+    private final GedcomxConversionResult result;
+    private Header header;
+    private boolean contributorMapped;
+    // the number of records of each kind read so far, which is the position of the next one (see ConversionContext#setRecordPosition)
+    private int persons;
+    private int families;
+    private int sources;
+    private int repositories;
+
+    private RecordsMapping(ChildLinkIndex childLinks, GedcomxConversionResult result) {
+      this.childLinks = childLinks;
+      this.result = result;
+    }
+
+    private void map(Gedcom records) throws IOException {
+      if (records.getHeader() != null) {
+        header = records.getHeader();
+      }
+      ConversionContext.setRecordPosition(persons);
+      toPersons(records.getPeople(), result);
+      persons += records.getPeople().size();
+      ConversionContext.setRecordPosition(families);
+      toRelationships(records.getFamilies(), childLinks, result);
+      families += records.getFamilies().size();
+      ConversionContext.setRecordPosition(sources);
+      toSourceDescriptions(records.getSources(), result);
+      sources += records.getSources().size();
+      ConversionContext.setRecordPosition(repositories);
+      toOrganizations(records.getRepositories(), result);
+      repositories += records.getRepositories().size();
+      if (!contributorMapped && records.getSubmitters() != null && !records.getSubmitters().isEmpty()) {
+        ConversionContext.setRecordPosition(0);
+        submitterMapper.toContributor(records.getSubmitters().get(0), result);
+        contributorMapped = true;
+      }
+    }
+
+    /**
+     * Counts a record of the given kind that isn't mapped by this mapping.
+     */
+    private void skip(String tag) {
+      switch (tag) {
+        case "INDI":
+          persons++;
+          break;
+        case "FAM":
+          families++;
+          break;
+        case "SOUR":
+          sources++;
+          break;
+        case "REPO":
+          repositories++;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * @return the index of the links of the individuals of the given file to their parent families
+   */
+  private static ChildLinkIndex indexChildLinks(File gedcomFile) throws IOException {
+    ChildLinkIndex index = new ChildLinkIndex();
+    try (GedcomRecordReader reader = new GedcomRecordReader(gedcomFile)) {
+      while (reader.skipRecord()) {
+        Person person = reader.scanParentFamilyRefs();
+        if (person != null) {
+          index.add(person);
+        }
+      }
+    }
+    return index;
+  }
+
+  private void map(Gedcom dqGedcom, GedcomxConversionResult result) throws IOException {
+    ChildLinkIndex childLinks = ChildLinkIndex.of(dqGedcom);
+    if (mappingConfig.getParallelism() > 1) {
+      ForkJoinPool pool = new ForkJoinPool(mappingConfig.getParallelism());
+      try {
+        mapInParallel(pool, dqGedcom.getPeople(), personMapper::toPerson, result);
+        mapInParallel(pool, dqGedcom.getFamilies(), (family, shardResult) -> familyMapper.toRelationshipIndexed(family, childLinks, shardResult), result);
+        mapInParallel(pool, dqGedcom.getSources(), sourceDescriptionMapper::toSourceDescription, result);
+        mapInParallel(pool, dqGedcom.getRepositories(), sourceDescriptionMapper::toOrganization, result);
+      }
+      finally {
+        pool.shutdown();
+      }
+    }
+    else {
+      ConversionContext.setRecordPosition(0);
+      toPersons(dqGedcom.getPeople(), result);
+      ConversionContext.setRecordPosition(0);
+      toRelationships(dqGedcom.getFamilies(), childLinks, result);
+      ConversionContext.setRecordPosition(0);
+      toSourceDescriptions(dqGedcom.getSources(), result);
+      ConversionContext.setRecordPosition(0);
+      toOrganizations(dqGedcom.getRepositories(), result);
+    }
 
     if (dqGedcom.getSubmitters() != null && !dqGedcom.getSubmitters().isEmpty()) {
+      ConversionContext.setRecordPosition(0);
       submitterMapper.toContributor(dqGedcom.getSubmitters().get(0), result);
     }
 
-    String lang = (dqGedcom.getHeader() == null || dqGedcom.getHeader().getLanguage() == null) ? null : dqGedcom.getHeader().getLanguage();
+    toLanguage(dqGedcom.getHeader(), result);
+  }
+
+  private static void toLanguage(Header dqHeader, GedcomxConversionResult result) {
+    String lang = (dqHeader == null || dqHeader.getLanguage() == null) ? null : dqHeader.getLanguage();
     LanguageMapping langMapping = LanguageMapping.fromString(lang);
     String langCode = (langMapping == null) ? null : langMapping.getLanguageCode();
     result.addLanguage(langCode);
-
-    return result;
   }
 
   void toPersons(List<Person> dqPersons, GedcomxConversionResult result) throws IOException {
@@ -72,9 +357,9 @@ public class GedcomMapper {
     }
   }
 
-  private void toRelationships(List<Family> dqFamilies, Gedcom dqGedcom, GedcomxConversionResult result) throws IOException {
+  private void toRelationships(List<Family> dqFamilies, ChildLinkIndex childLinks, GedcomxConversionResult result) throws IOException {
     for (Family family : dqFamilies) {
-      familyMapper.toRelationship(family, dqGedcom, result);
+      familyMapper.toRelationshipIndexed(family, childLinks, result);
     }
   }
 
@@ -89,4 +374,85 @@ public class GedcomMapper {
       sourceDescriptionMapper.toOrganization(dqRepository, result);
     }
   }
+
+  /**
+   * Maps the records in contiguous shards on the given pool. Each shard is mapped into its own {@link ShardConversionResult}
+   * and the shards are handed to the result in the order of the records, so the output is the same as that of a
+   * sequential mapping. Only a bounded number of shards is in flight at a time so that a result that writes its
+   * output as it goes doesn't have to wait for the whole list to be mapped.
+   */
+  private <T> void mapInParallel(ForkJoinPool pool, List<T> records, RecordMapping<T> mapping, GedcomxConversionResult result) throws IOException {
+    int parallelism = pool.getParallelism();
+    int shardSize = Math.max(1, Math.min(MAX_SHARD_SIZE, records.size() / (parallelism * 4)));
+    int maxShardsInFlight = parallelism * 4;
+    ConversionDiagnostics diagnostics = result.getDiagnostics();
+    IdentifierGenerator identifierGenerator = mappingConfig.getIdentifierGenerator();
+
+    Deque<Future<ShardConversionResult>> inFlight = new ArrayDeque<Future<ShardConversionResult>>(maxShardsInFlight);
+    try {
+      for (int start = 0; start < records.size(); start += shardSize) {
+        List<T> shard = records.subList(start, Math.min(records.size(), start + shardSize));
+        int firstPosition = start;
+        inFlight.addLast(pool.submit(() -> {
+          ShardConversionResult shardResult = new ShardConversionResult();
+          ConversionContext.setDiagnostics(diagnostics);
+          ConversionContext.setIdentifierGenerator(identifierGenerator);
+          ConversionContext.setRecordPosition(firstPosition);
+          try {
+            for (T record : shard) {
+              mapping.map(record, shardResult);
+            }
+          }
+          finally {
+            ConversionContext.setDiagnostics(null);
+            ConversionContext.setIdentifierGenerator(null);
+          }
+          return shardResult;
+        }));
+
+        if (inFlight.size() >= maxShardsInFlight) {
+          awaitShard(inFlight.removeFirst()).replay(result);
+        }
+      }
+
+      while (!inFlight.isEmpty()) {
+        awaitShard(inFlight.removeFirst()).replay(result);
+      }
+    }
+    finally {
+      for (Future<ShardConversionResult> future : inFlight) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static ShardConversionResult awaitShard(Future<ShardConversionResult> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while mapping records in parallel.");
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Maps a single GEDCOM 5.5 record into a conversion result.
+   */
+  private interface RecordMapping<T> {
+    void map(T record, GedcomxConversionResult result) throws IOException;
+  }
 }
@@ -0,0 +1,393 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.ParentFamilyRef;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.xml.sax.SAXParseException;
+
+
+/**
+ * Reads a GEDCOM 5.5 file one level-0 record (HEAD, INDI, FAM, SOUR, REPO, SUBM, ...) at a time, so that a record can be
+ * mapped and discarded before the next one is read. Each record is parsed on its own with the GEDCOM parser, into a
+ * {@link Gedcom} that holds only that record.
+ *
+ * A file in an ASCII-compatible charset (ANSEL, UTF-8 or a single-byte charset) is read through a
+ * {@link MappedGedcomFile}, which finds the records in the bytes of the file and only decodes the records that are
+ * parsed; other files (such as UTF-16 or Shift_JIS files) are decoded as they are read.
+ *
+ * A reader is not thread-safe.
+ */
+public class GedcomRecordReader implements Closeable {
+
+  private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+  private final MappedGedcomFile mappedFile;
+  private final Reader reader;
+  private final String charsetName;
+  private final ModelParser modelParser = new ModelParser();
+
+  private char[] buffer;
+  private int limit = 0;
+  private boolean endOfInput = false;
+  private int recordStart = 0;
+  private int recordEnd = 0;
+  private int resume = 0;
+
+  public GedcomRecordReader(File file) throws IOException {
+    this(MappedGedcomFile.open(file), file);
+  }
+
+  private GedcomRecordReader(MappedGedcomFile mappedFile, File file) throws IOException {
+    this.mappedFile = mappedFile;
+    this.charsetName = mappedFile == null ? GedcomCharsets.detect(file) : mappedFile.getCharsetName();
+    this.reader = mappedFile == null ? newReader(file) : null;
+    this.buffer = mappedFile == null ? new char[INITIAL_BUFFER_SIZE] : null;
+  }
+
+  private static Reader newReader(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      return GedcomCharsets.newReader(in);
+    }
+    catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @param reader the characters of the file, starting at its first record
+   */
+  public GedcomRecordReader(Reader reader) {
+    this.mappedFile = null;
+    this.reader = reader;
+    this.charsetName = null;
+    this.buffer = new char[INITIAL_BUFFER_SIZE];
+  }
+
+  GedcomRecordReader(MappedGedcomFile mappedFile) {
+    this.mappedFile = mappedFile;
+    this.reader = null;
+    this.charsetName = mappedFile.getCharsetName();
+  }
+
+  /**
+   * @return the (Java) name of the charset of the file, or {@link GedcomCharsets#ANSEL}; null if the reader was given
+   * the characters of the file
+   */
+  String getCharsetName() {
+    return charsetName;
+  }
+
+  /**
+   * @return the next record, in a {@link Gedcom} of its own, or null at the end of the file
+   */
+  public Gedcom nextRecord() throws IOException, SAXParseException {
+    if (!skipRecord()) {
+      return null;
+    }
+    return parseRecord();
+  }
+
+  /**
+   * @return the current record (see {@link #skipRecord()}), in a {@link Gedcom} of its own
+   */
+  Gedcom parseRecord() throws IOException, SAXParseException {
+    Reader record = mappedFile != null ? mappedFile.recordReader() : new CharArrayReader(buffer, recordStart, recordEnd - recordStart);
+    return modelParser.parseGedcom(record);
+  }
+
+  /**
+   * @return the tag and the identifier of the current record (e.g. <code>INDI I1</code>), or null if it has no identifier
+   */
+  String recordKey() throws IOException {
+    if (mappedFile != null) {
+      return mappedFile.recordKey();
+    }
+
+    Line line = new Line();
+    line.read(buffer, recordStart, recordEnd);
+    if (line.level != 0 || line.id == null || line.tagEnd <= line.tagStart) {
+      return null;
+    }
+    return new String(buffer, line.tagStart, line.tagEnd - line.tagStart).toUpperCase() + ' ' + line.id;
+  }
+
+  /**
+   * Adds the current record to the given digest (its bytes, or for a file that isn't read through a
+   * {@link MappedGedcomFile}, its characters encoded in UTF-8).
+   */
+  void digestRecord(MessageDigest digest) {
+    if (mappedFile != null) {
+      mappedFile.digestRecord(digest);
+    }
+    else {
+      digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(buffer, recordStart, recordEnd - recordStart)));
+    }
+  }
+
+  /**
+   * Moves to the next record without parsing it.
+   *
+   * @return false at the end of the file
+   */
+  boolean skipRecord() throws IOException {
+    if (mappedFile != null) {
+      return mappedFile.nextRecord();
+    }
+
+    // skip the blank lines between records
+    int start = recordEnd;
+    while (true) {
+      if (start >= limit) {
+        recordStart = start;
+        if (fill() < 0) {
+          recordEnd = recordStart;
+          return false;
+        }
+        start = recordStart;
+      }
+      else if (Character.isWhitespace(buffer[start]) || buffer[start] == '\uFEFF') {
+        start++;
+      }
+      else {
+        break;
+      }
+    }
+
+    // the record ends where the next line with level 0 starts
+    recordStart = start;
+    int scan = start + 1;
+    while (true) {
+      int end = findRecordEnd(scan);
+      if (end >= 0) {
+        recordEnd = end;
+        return true;
+      }
+      if (endOfInput) {
+        recordEnd = limit;
+        return true;
+      }
+      int resumeOffset = resume - recordStart;
+      fill();
+      scan = recordStart + resumeOffset;
+    }
+  }
+
+  /**
+   * @return the start of the first line with level 0 from the given position on, or -1 if the buffer ends first, in
+   * which case {@link #resume} is where to scan from once there is more in the buffer
+   */
+  private int findRecordEnd(int scan) {
+    for (int i = scan; i < limit; i++) {
+      char c = buffer[i];
+      if (c == '\n' || c == '\r') {
+        int line = i + 1;
+        while (line < limit && (buffer[line] == '\n' || buffer[line] == '\r' || buffer[line] == ' ' || buffer[line] == '\t')) {
+          line++;
+        }
+        if (line + 1 >= limit) {
+          resume = i;
+          return -1;
+        }
+        if (buffer[line] == '0' && (buffer[line + 1] == ' ' || buffer[line + 1] == '\t')) {
+          return line;
+        }
+        i = line - 1;
+      }
+    }
+    resume = limit;
+    return -1;
+  }
+
+  /**
+   * Reads more of the file into the buffer, first moving the current record to the start of the buffer, and growing
+   * the buffer if the record fills it.
+   *
+   * @return the number of characters read, or -1 at the end of the file
+   */
+  private int fill() throws IOException {
+    if (endOfInput) {
+      return -1;
+    }
+    if (recordStart > 0) {
+      System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+      limit -= recordStart;
+      recordStart = 0;
+    }
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+
+    int read = reader.read(buffer, limit, buffer.length - limit);
+    if (read < 0) {
+      endOfInput = true;
+      return -1;
+    }
+    limit += read;
+    return read;
+  }
+
+  /**
+   * Scans the current record for the links of an individual to the families it is a child of (FAMC, with the PEDI of
+   * each), without parsing the rest of the record.
+   *
+   * @return the individual of the current record with only its links to its parent families, or null if the record
+   * isn't an individual
+   */
+  Person scanParentFamilyRefs() throws IOException {
+    if (mappedFile != null) {
+      return mappedFile.scanParentFamilyRefs();
+    }
+
+    Line line = new Line();
+    int position = line.read(buffer, recordStart, recordEnd);
+    if (line.level != 0 || line.id == null || !line.tagIs(buffer, "INDI")) {
+      return null;
+    }
+
+    Person person = new Person();
+    person.setId(line.id);
+    ParentFamilyRef parentFamilyRef = null;
+    while (position < recordEnd) {
+      position = line.read(buffer, position, recordEnd);
+      if (line.level == 1) {
+        parentFamilyRef = null;
+        if (line.tagIs(buffer, "FAMC") && line.pointer != null) {
+          parentFamilyRef = new ParentFamilyRef();
+          parentFamilyRef.setRef(line.pointer);
+          person.addParentFamilyRef(parentFamilyRef);
+        }
+      }
+      else if (line.level == 2 && parentFamilyRef != null && line.tagIs(buffer, "PEDI")) {
+        parentFamilyRef.setRelationshipType(line.value(buffer));
+      }
+    }
+    return person;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (mappedFile != null) {
+      mappedFile.close();
+    }
+    else {
+      reader.close();
+    }
+  }
+
+  /**
+   * The fields of a line of a record.
+   */
+  private static final class Line {
+    private int level;
+    private String id;
+    private int tagStart;
+    private int tagEnd;
+    private String pointer;
+    private int valueStart;
+    private int valueEnd;
+
+    /**
+     * @return the start of the next line
+     */
+    private int read(char[] buffer, int start, int end) {
+      int lineEnd = start;
+      while (lineEnd < end && buffer[lineEnd] != '\n' && buffer[lineEnd] != '\r') {
+        lineEnd++;
+      }
+      int next = lineEnd;
+      while (next < end && (buffer[next] == '\n' || buffer[next] == '\r')) {
+        next++;
+      }
+
+      int i = skipWhitespace(buffer, start, lineEnd);
+      level = -1;
+      if (i < lineEnd && buffer[i] >= '0' && buffer[i] <= '9') {
+        level = 0;
+        while (i < lineEnd && buffer[i] >= '0' && buffer[i] <= '9') {
+          level = level * 10 + (buffer[i++] - '0');
+        }
+      }
+      i = skipWhitespace(buffer, i, lineEnd);
+
+      id = null;
+      int token = tokenEnd(buffer, i, lineEnd);
+      if (token - i > 2 && buffer[i] == '@' && buffer[token - 1] == '@') {
+        id = new String(buffer, i + 1, token - i - 2);
+        i = skipWhitespace(buffer, token, lineEnd);
+        token = tokenEnd(buffer, i, lineEnd);
+      }
+      tagStart = i;
+      tagEnd = token;
+
+      valueStart = token < lineEnd ? token + 1 : lineEnd;
+      valueEnd = lineEnd;
+      while (valueEnd > valueStart && Character.isWhitespace(buffer[valueEnd - 1])) {
+        valueEnd--;
+      }
+      pointer = null;
+      if (valueEnd - valueStart > 2 && buffer[valueStart] == '@' && buffer[valueEnd - 1] == '@') {
+        pointer = new String(buffer, valueStart + 1, valueEnd - valueStart - 2);
+      }
+      return next;
+    }
+
+    private boolean tagIs(char[] buffer, String tag) {
+      if (tagEnd - tagStart != tag.length()) {
+        return false;
+      }
+      for (int i = 0; i < tag.length(); i++) {
+        if (Character.toUpperCase(buffer[tagStart + i]) != tag.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private String value(char[] buffer) {
+      return valueEnd > valueStart ? new String(buffer, valueStart, valueEnd - valueStart) : null;
+    }
+
+    private static int skipWhitespace(char[] buffer, int i, int end) {
+      while (i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+        i++;
+      }
+      return i;
+    }
+
+    private static int tokenEnd(char[] buffer, int i, int end) {
+      while (i < end && buffer[i] != ' ' && buffer[i] != '\t') {
+        i++;
+      }
+      return i;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+/**
+ * Mints the ids of the objects that have no identifier in the GEDCOM 5.5 file, such as the source descriptions created
+ * for source citations. A generator is part of the {@link MappingConfig} of a conversion; it must be thread-safe if the
+ * records are mapped in parallel.
+ */
+public interface IdentifierGenerator {
+
+  /**
+   * @param prefix the prefix of the id (e.g. the id of the source a citation refers to)
+   * @return a new id starting with the given prefix, unique within the conversion
+   */
+  String nextId(String prefix);
+
+}
@@ -15,6 +15,10 @@
  */
 package org.gedcomx.conversion.gedcom.dq55;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * An enum to hold the mapping between Gedcom Languages and their corresponding Language Codes.
  *
@@ -118,18 +122,26 @@ public enum LanguageMapping {
     return this.languageCode;
   }
 
+  // the mappings by name, in lower case and with underscores for hyphens
+  private static final Map<String, LanguageMapping> BY_NAME = new HashMap<String, LanguageMapping>();
+  static {
+    for (LanguageMapping mapping : values()) {
+      BY_NAME.put(normalize(mapping.name()), mapping);
+    }
+  }
+
+  /**
+   * @return the mapping of a GEDCOM language name, whatever its case and whether its words are separated by hyphens or
+   * underscores (e.g. <code>Anglo-Saxon</code>), or null if the language is not known
+   */
   public static LanguageMapping fromString(String text) {
     if(text == null) {
       return null;
     }
-    if(text.contains("-")) {
-      text.replaceAll("-", "_");
-    }
-    for(LanguageMapping mapping : LanguageMapping.values()) {
-      if(mapping.name().equalsIgnoreCase(text)) {
-        return mapping;
-      }
-    }
-    return null;
+    return BY_NAME.get(normalize(text.trim()));
+  }
+
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT).replace('-', '_');
   }
 }
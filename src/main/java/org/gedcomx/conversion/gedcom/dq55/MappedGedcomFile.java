@@ -0,0 +1,524 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import org.folg.gedcom.model.ParentFamilyRef;
+import org.folg.gedcom.model.Person;
+import org.gedml.AnselInputStreamReader;
+
+
+/**
+ * A GEDCOM 5.5 file in a charset in which line breaks, spaces, digits and the letters of the tags are single ASCII bytes
+ * (ASCII, UTF-8, ANSEL, the single-byte code pages, ...), read through memory-mapped windows of the file. The charset is
+ * detected once, when the file is opened. The records are found, and the links of the individuals to their parent
+ * families are scanned, directly on the bytes of the file; only the records that are handed to the parser are decoded.
+ *
+ * A file is not thread-safe.
+ */
+final class MappedGedcomFile implements Closeable {
+
+  /**
+   * The size of the part of the file that is mapped at a time; a window is remapped from the start of the record that
+   * crosses its end, and is grown for a record that is larger than a window.
+   */
+  static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+  private final FileChannel channel;
+  private final long size;
+  private final long firstRecordStart;
+  private final int windowSize;
+  private final String charsetName;
+  private final CharsetDecoder decoder;
+
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long recordStart;
+  private long recordEnd;
+  private int resume;
+  private CharBuffer chars = CharBuffer.allocate(1 << 12);
+  private byte[] token = new byte[64];
+
+  private MappedGedcomFile(FileChannel channel, String charsetName, int windowSize) throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.windowSize = windowSize;
+    this.charsetName = charsetName;
+    this.decoder = GedcomCharsets.ANSEL.equals(charsetName) ? null : Charset.forName(charsetName).newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // skip anything before the first record, such as a byte order mark
+    map(0, 0);
+    long start = 0;
+    while (start < size && byteAt(start) != '0') {
+      start++;
+    }
+    this.firstRecordStart = start;
+    this.recordEnd = start;
+  }
+
+  /**
+   * @return the file, or null if its charset isn't one whose bytes can be scanned (such as UTF-16 or Shift_JIS)
+   */
+  static MappedGedcomFile open(File file) throws IOException {
+    return open(file, DEFAULT_WINDOW_SIZE);
+  }
+
+  static MappedGedcomFile open(File file, int windowSize) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer head = ByteBuffer.allocate((int) Math.min(channel.size(), GedcomCharsets.MAX_HEADER_BYTES));
+      while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+        // keep reading until the head is full
+      }
+      String charsetName = GedcomCharsets.detect(head.array(), head.position());
+      if (!GedcomCharsets.isAsciiCompatible(charsetName)) {
+        channel.close();
+        return null;
+      }
+      return new MappedGedcomFile(channel, charsetName, windowSize);
+    }
+    catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the (Java) name of the charset of the file, or {@link GedcomCharsets#ANSEL}
+   */
+  String getCharsetName() {
+    return charsetName;
+  }
+
+  /**
+   * @return the size of the file, in bytes
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * Finds where a record starts, so that the file can be split into ranges of whole records. This moves the window,
+   * and is not meant to be mixed with {@link #nextRecord()}.
+   *
+   * @return the position of the first record that starts at or after the given position, or the size of the file if
+   * there is none
+   */
+  long recordBoundary(long position) throws IOException {
+    if (position <= firstRecordStart) {
+      return firstRecordStart;
+    }
+    if (position >= size) {
+      return size;
+    }
+
+    // a record starts at the position if the line before it ends right there
+    map(position - 1, 0);
+    int scan = 0;
+    while (true) {
+      int end = findRecordEnd(scan);
+      if (end >= 0) {
+        return windowStart + end;
+      }
+      if (windowStart + window.limit() >= size) {
+        return size;
+      }
+      long resumeAt = windowStart + resume;
+      map(resumeAt, windowStart + window.limit() - resumeAt);
+      scan = 0;
+    }
+  }
+
+  /**
+   * Unlike the rest of the file, this can be called from any thread.
+   *
+   * @return a reader of the decoded characters between the given positions of the file
+   */
+  Reader rangeReader(long start, long end) throws IOException {
+    if (end - start > Integer.MAX_VALUE) {
+      throw new IOException("Range too large at offset " + start);
+    }
+    InputStream bytes = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+    if (decoder == null) {
+      return new AnselInputStreamReader(bytes);
+    }
+    return new InputStreamReader(bytes, Charset.forName(charsetName).newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE));
+  }
+
+  /**
+   * Moves to the next record.
+   *
+   * @return false at the end of the file
+   */
+  boolean nextRecord() throws IOException {
+    long start = recordEnd;
+    while (start < size && isBlank(byteAt(start))) {
+      start++;
+    }
+    if (start >= size) {
+      recordStart = recordEnd = size;
+      return false;
+    }
+
+    // the record ends where the next line with level 0 starts
+    int scan = (int) (start - windowStart) + 1;
+    while (true) {
+      int end = findRecordEnd(scan);
+      if (end >= 0) {
+        recordStart = start;
+        recordEnd = windowStart + end;
+        return true;
+      }
+      if (windowStart + window.limit() >= size) {
+        recordStart = start;
+        recordEnd = size;
+        return true;
+      }
+      // the record crosses the end of the window: map the file from the start of the record on, in a larger window if
+      // the record already fills this one
+      int resumeOffset = resume - (int) (start - windowStart);
+      map(start, windowStart + window.limit() - start);
+      scan = (int) (start - windowStart) + resumeOffset;
+    }
+  }
+
+  /**
+   * @return the start (in the window) of the first line with level 0 from the given position on, or -1 if the window
+   * ends first, in which case {@link #resume} is where to scan from in a window that extends further
+   */
+  private int findRecordEnd(int scan) {
+    MappedByteBuffer bytes = window;
+    int limit = bytes.limit();
+    for (int i = scan; i < limit; i++) {
+      byte b = bytes.get(i);
+      if (b == '\n' || b == '\r') {
+        int line = i + 1;
+        while (line < limit && isBlank(bytes.get(line))) {
+          line++;
+        }
+        if (line + 1 >= limit) {
+          resume = i;
+          return -1;
+        }
+        if (bytes.get(line) == '0' && (bytes.get(line + 1) == ' ' || bytes.get(line + 1) == '\t')) {
+          return line;
+        }
+        i = line - 1;
+      }
+    }
+    resume = limit;
+    return -1;
+  }
+
+  /**
+   * @return the tag and the identifier of the current record (e.g. <code>INDI I1</code>), or null if it has no identifier
+   */
+  String recordKey() throws IOException {
+    Line line = new Line();
+    line.read(window, (int) (recordStart - windowStart), (int) (recordEnd - windowStart));
+    if (line.level != 0 || line.idStart < 0 || line.tagEnd <= line.tagStart) {
+      return null;
+    }
+    return string(line.tagStart, line.tagEnd).toUpperCase() + ' ' + string(line.idStart, line.idEnd);
+  }
+
+  /**
+   * Adds the bytes of the current record to the given digest.
+   */
+  void digestRecord(MessageDigest digest) {
+    digest.update(record());
+  }
+
+  /**
+   * @return a reader of the decoded characters of the current record
+   */
+  Reader recordReader() throws IOException {
+    decode(record());
+    return new CharArrayReader(chars.array(), 0, chars.position());
+  }
+
+  /**
+   * Decodes the remaining bytes of the given buffer into {@link #chars}.
+   */
+  private void decode(ByteBuffer bytes) throws IOException {
+    chars.clear();
+    if (decoder == null) {
+      try (Reader reader = new AnselInputStreamReader(new ByteBufferInputStream(bytes))) {
+        int read;
+        while ((read = reader.read(chars.array(), chars.position(), chars.remaining())) >= 0) {
+          chars.position(chars.position() + read);
+          if (!chars.hasRemaining()) {
+            growChars();
+          }
+        }
+      }
+      return;
+    }
+
+    decoder.reset();
+    while (true) {
+      CoderResult result = bytes.hasRemaining() ? decoder.decode(bytes, chars, true) : CoderResult.UNDERFLOW;
+      if (result.isUnderflow()) {
+        result = decoder.flush(chars);
+      }
+      if (result.isUnderflow()) {
+        return;
+      }
+      if (result.isOverflow()) {
+        growChars();
+      }
+      else {
+        result.throwException();
+      }
+    }
+  }
+
+  private void growChars() {
+    CharBuffer grown = CharBuffer.allocate(chars.capacity() * 2);
+    chars.flip();
+    grown.put(chars);
+    chars = grown;
+  }
+
+  /**
+   * Scans the current record for the links of an individual to the families it is a child of (FAMC, with the PEDI of
+   * each), without decoding the rest of the record.
+   *
+   * @return the individual of the current record with only its links to its parent families, or null if the record
+   * isn't an individual
+   */
+  Person scanParentFamilyRefs() throws IOException {
+    int end = (int) (recordEnd - windowStart);
+    Line line = new Line();
+    int position = line.read(window, (int) (recordStart - windowStart), end);
+    if (line.level != 0 || line.idStart < 0 || !line.tagIs(window, "INDI")) {
+      return null;
+    }
+
+    Person person = new Person();
+    person.setId(string(line.idStart, line.idEnd));
+    ParentFamilyRef parentFamilyRef = null;
+    while (position < end) {
+      position = line.read(window, position, end);
+      if (line.level == 1) {
+        parentFamilyRef = null;
+        if (line.tagIs(window, "FAMC") && line.isPointer(window)) {
+          parentFamilyRef = new ParentFamilyRef();
+          parentFamilyRef.setRef(string(line.valueStart + 1, line.valueEnd - 1));
+          person.addParentFamilyRef(parentFamilyRef);
+        }
+      }
+      else if (line.level == 2 && parentFamilyRef != null && line.tagIs(window, "PEDI") && line.valueEnd > line.valueStart) {
+        parentFamilyRef.setRelationshipType(string(line.valueStart, line.valueEnd));
+      }
+    }
+    return person;
+  }
+
+  /**
+   * @return the decoded bytes between the given positions of the window
+   */
+  private String string(int start, int end) throws IOException {
+    int length = end - start;
+    if (token.length < length) {
+      token = new byte[Math.max(length, token.length * 2)];
+    }
+    boolean ascii = true;
+    for (int i = 0; i < length; i++) {
+      byte b = window.get(start + i);
+      token[i] = b;
+      ascii &= b >= 0;
+    }
+    if (ascii) {
+      return new String(token, 0, length, StandardCharsets.ISO_8859_1);
+    }
+    ByteBuffer bytes = window.duplicate();
+    bytes.limit(end).position(start);
+    decode(bytes);
+    return new String(chars.array(), 0, chars.position());
+  }
+
+  private ByteBuffer record() {
+    ByteBuffer record = window.duplicate();
+    record.limit((int) (recordEnd - windowStart)).position((int) (recordStart - windowStart));
+    return record;
+  }
+
+  private byte byteAt(long position) throws IOException {
+    if (position < windowStart || position >= windowStart + window.limit()) {
+      map(position, 0);
+    }
+    return window.get((int) (position - windowStart));
+  }
+
+  /**
+   * Maps a window of the file from the given position on, larger than the given length.
+   */
+  private void map(long position, long length) throws IOException {
+    long mapped = Math.min(size - position, Math.max(windowSize, length > 0 ? length * 2 : 0));
+    if (mapped > Integer.MAX_VALUE) {
+      if (length >= Integer.MAX_VALUE) {
+        throw new IOException("Record too large at offset " + position);
+      }
+      mapped = Integer.MAX_VALUE;
+    }
+    window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+    windowStart = position;
+  }
+
+  private static boolean isBlank(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * The positions of the fields of a line of a record in a window.
+   */
+  private static final class Line {
+    private int level;
+    private int idStart;
+    private int idEnd;
+    private int tagStart;
+    private int tagEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    /**
+     * @return the start of the next line
+     */
+    private int read(ByteBuffer bytes, int start, int end) {
+      int lineEnd = start;
+      while (lineEnd < end && bytes.get(lineEnd) != '\n' && bytes.get(lineEnd) != '\r') {
+        lineEnd++;
+      }
+      int next = lineEnd;
+      while (next < end && (bytes.get(next) == '\n' || bytes.get(next) == '\r')) {
+        next++;
+      }
+
+      int i = skipWhitespace(bytes, start, lineEnd);
+      level = -1;
+      if (i < lineEnd && bytes.get(i) >= '0' && bytes.get(i) <= '9') {
+        level = 0;
+        while (i < lineEnd && bytes.get(i) >= '0' && bytes.get(i) <= '9') {
+          level = level * 10 + (bytes.get(i++) - '0');
+        }
+      }
+      i = skipWhitespace(bytes, i, lineEnd);
+
+      idStart = idEnd = -1;
+      int token = tokenEnd(bytes, i, lineEnd);
+      if (token - i > 2 && bytes.get(i) == '@' && bytes.get(token - 1) == '@') {
+        idStart = i + 1;
+        idEnd = token - 1;
+        i = skipWhitespace(bytes, token, lineEnd);
+        token = tokenEnd(bytes, i, lineEnd);
+      }
+      tagStart = i;
+      tagEnd = token;
+
+      valueStart = token < lineEnd ? token + 1 : lineEnd;
+      valueEnd = lineEnd;
+      while (valueEnd > valueStart && (bytes.get(valueEnd - 1) == ' ' || bytes.get(valueEnd - 1) == '\t')) {
+        valueEnd--;
+      }
+      return next;
+    }
+
+    private boolean tagIs(ByteBuffer bytes, String tag) {
+      if (tagEnd - tagStart != tag.length()) {
+        return false;
+      }
+      for (int i = 0; i < tag.length(); i++) {
+        int b = bytes.get(tagStart + i);
+        if ((b >= 'a' && b <= 'z' ? b - ('a' - 'A') : b) != tag.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean isPointer(ByteBuffer bytes) {
+      return valueEnd - valueStart > 2 && bytes.get(valueStart) == '@' && bytes.get(valueEnd - 1) == '@';
+    }
+
+    private static int skipWhitespace(ByteBuffer bytes, int i, int end) {
+      while (i < end && (bytes.get(i) == ' ' || bytes.get(i) == '\t')) {
+        i++;
+      }
+      return i;
+    }
+
+    private static int tokenEnd(ByteBuffer bytes, int i, int end) {
+      while (i < end && bytes.get(i) != ' ' && bytes.get(i) != '\t') {
+        i++;
+      }
+      return i;
+    }
+  }
+
+  /**
+   * The remaining bytes of a buffer as a stream.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer bytes;
+
+    private ByteBufferInputStream(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int read() {
+      return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (!bytes.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(length, bytes.remaining());
+      bytes.get(buffer, offset, read);
+      return read;
+    }
+  }
+}
@@ -24,6 +24,8 @@ package org.gedcomx.conversion.gedcom.dq55;
 public class MappingConfig {
   private String inputFilename;
   private boolean includeFilenameInIds;
+  private int parallelism = 1;
+  private IdentifierGenerator identifierGenerator = RecordPathIdentifierGenerator.INSTANCE;
 
   public MappingConfig(String inputFilename, boolean includeFilenameInIds) {
     this.inputFilename = inputFilename;
@@ -38,6 +40,30 @@ public class MappingConfig {
     return includeFilenameInIds;
   }
 
+  /**
+   * The number of threads used to map the records of a single GEDCOM file. A value greater than one maps the persons,
+   * families, sources and repositories in parallel; the order of the output is the same either way.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * The generator of the ids of the objects that have no identifier in the GEDCOM 5.5 file (by default, a
+   * {@link RecordPathIdentifierGenerator}).
+   */
+  public IdentifierGenerator getIdentifierGenerator() {
+    return identifierGenerator;
+  }
+
+  public void setIdentifierGenerator(IdentifierGenerator identifierGenerator) {
+    this.identifierGenerator = identifierGenerator;
+  }
+
   public String createId(String id) {
     if (includeFilenameInIds) {
       return inputFilename + ":" + id;
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.List;
+
+import org.gedcomx.conclusion.NamePart;
+import org.gedcomx.types.NamePartType;
+
+
+/**
+ * Splits the value of a GEDCOM 5.5 <code>NAME</code> (e.g. <code>John /Smith/ Jr.</code>) in a single scan: the full
+ * text is the value without the slashes around the surname, and the surname is what is between the first two slashes.
+ */
+final class NameTokenizer {
+
+  private final String fullText;
+  private final String value;
+  private final int surnameStart;
+  private final int surnameEnd;
+
+  NameTokenizer(String value) {
+    this.value = value;
+
+    StringBuilder fullText = null;
+    int surnameStart = -1;
+    int surnameEnd = -1;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c != '/') {
+        if (fullText != null) {
+          fullText.append(c);
+        }
+        continue;
+      }
+
+      if (surnameStart < 0) {
+        surnameStart = i + 1;
+      }
+      else if (surnameEnd < 0) {
+        surnameEnd = i;
+      }
+      if (fullText == null) {
+        fullText = new StringBuilder(length).append(value, 0, i);
+      }
+      // if both characters around the slash are not a space, the slash is replaced with a space, otherwise it is removed
+      int last = fullText.length() - 1;
+      if (last >= 0 && i < length - 1 && fullText.charAt(last) != ' ' && value.charAt(i + 1) != ' ') {
+        fullText.append(' ');
+      }
+    }
+
+    this.fullText = (fullText == null ? value : fullText.toString()).trim();
+    this.surnameStart = surnameStart;
+    this.surnameEnd = surnameStart >= 0 && surnameEnd < 0 ? length : surnameEnd;
+  }
+
+  /**
+   * @return the value without the slashes around the surname
+   */
+  String getFullText() {
+    return fullText;
+  }
+
+  /**
+   * Adds the surname (what is between the first two slashes, or after the only one) to the given parts, as
+   * {@link #addNameParts(List, String, NamePartType)} would.
+   */
+  void addSurnameParts(List<NamePart> parts) {
+    if (surnameStart >= 0) {
+      addNameParts(parts, value, surnameStart, surnameEnd, NamePartType.Surname);
+    }
+  }
+
+  /**
+   * Adds a part of the given type for each of the comma-separated pieces of the given value that isn't blank.
+   */
+  static void addNameParts(List<NamePart> parts, String value, NamePartType type) {
+    if (value != null) {
+      addNameParts(parts, value, 0, value.length(), type);
+    }
+  }
+
+  private static void addNameParts(List<NamePart> parts, String value, int start, int end, NamePartType type) {
+    int pieceStart = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || value.charAt(i) == ',') {
+        addNamePart(parts, value, pieceStart, i, type);
+        pieceStart = i + 1;
+      }
+    }
+  }
+
+  private static void addNamePart(List<NamePart> parts, String value, int start, int end, NamePartType type) {
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    if (start < end) {
+      NamePart namePart = new NamePart();
+      namePart.setKnownType(type);
+      namePart.setValue(value.substring(start, end));
+      parts.add(namePart);
+    }
+  }
+}
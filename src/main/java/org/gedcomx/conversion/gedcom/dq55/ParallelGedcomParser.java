@@ -0,0 +1,213 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Media;
+import org.folg.gedcom.model.Note;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.Repository;
+import org.folg.gedcom.model.Source;
+import org.folg.gedcom.model.Submitter;
+import org.folg.gedcom.parser.ModelParser;
+import org.xml.sax.SAXParseException;
+
+
+/**
+ * Parses a GEDCOM 5.5 file on several threads. The file is split into chunks of whole records where the lines with level
+ * 0 start, each chunk is parsed by a parser of its own, and the records of the chunks are put together in the order of
+ * the file, so that the model is the same as the one a single parser builds.
+ *
+ * A file in a charset whose bytes can't be split (such as UTF-16 or Shift_JIS) is parsed on the calling thread.
+ */
+public class ParallelGedcomParser {
+
+  /**
+   * The fewest bytes in a chunk; smaller files are parsed in a single chunk.
+   */
+  private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+  /**
+   * The most bytes in a chunk (but for the record that crosses the limit), which bounds the memory used by the chunks
+   * that are parsed ahead of the one being handed over.
+   */
+  private static final int MAX_CHUNK_SIZE = 1 << 21;
+
+  private final int parallelism;
+  private final int minChunkSize;
+  private final int maxChunkSize;
+
+  /**
+   * @param parallelism the number of threads that parse the file
+   */
+  public ParallelGedcomParser(int parallelism) {
+    this(parallelism, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE);
+  }
+
+  ParallelGedcomParser(int parallelism, int minChunkSize, int maxChunkSize) {
+    this.parallelism = parallelism;
+    this.minChunkSize = minChunkSize;
+    this.maxChunkSize = maxChunkSize;
+  }
+
+  /**
+   * @return the model of the whole file; as with {@link ModelParser#parseGedcom(File)}, its indexes are yet to be created
+   * (see {@link Gedcom#createIndexes()})
+   */
+  public Gedcom parseGedcom(File file) throws IOException, SAXParseException {
+    if (parallelism > 1) {
+      Gedcom gedcom = new Gedcom();
+      if (parseChunks(file, chunk -> merge(chunk, gedcom))) {
+        return gedcom;
+      }
+    }
+    return new ModelParser().parseGedcom(file);
+  }
+
+  /**
+   * Parses the file in chunks and hands each chunk over as soon as it and the chunks before it are parsed, in the order
+   * of the file and on the calling thread. Only a bounded number of chunks are parsed ahead of the one being handed over.
+   *
+   * @return false if the file can't be split, in which case nothing has been handed over
+   */
+  boolean parseChunks(File file, ChunkHandler handler) throws IOException, SAXParseException {
+    MappedGedcomFile mappedFile = MappedGedcomFile.open(file);
+    if (mappedFile == null) {
+      return false;
+    }
+
+    long size = mappedFile.size();
+    long chunkSize = Math.max(minChunkSize, Math.min(maxChunkSize, size / (parallelism * 4L)));
+    int maxChunksInFlight = parallelism * 2;
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    Deque<Future<Gedcom>> inFlight = new ArrayDeque<Future<Gedcom>>(maxChunksInFlight);
+    try {
+      long start = mappedFile.recordBoundary(0);
+      while (start < size) {
+        long chunkStart = start;
+        long chunkEnd = mappedFile.recordBoundary(start + chunkSize);
+        inFlight.addLast(pool.submit(() -> new ModelParser().parseGedcom(mappedFile.rangeReader(chunkStart, chunkEnd))));
+        start = chunkEnd;
+
+        if (inFlight.size() >= maxChunksInFlight) {
+          handler.handle(awaitChunk(inFlight.removeFirst()));
+        }
+      }
+
+      while (!inFlight.isEmpty()) {
+        handler.handle(awaitChunk(inFlight.removeFirst()));
+      }
+    }
+    finally {
+      for (Future<Gedcom> future : inFlight) {
+        future.cancel(true);
+      }
+      pool.shutdown();
+      mappedFile.close();
+    }
+    return true;
+  }
+
+  /**
+   * Adds the records of a chunk after those of the chunks before it. The header and the submission are the first ones of
+   * the file; the records the model has no place for (see {@link ModelParser#MORE_TAGS_EXTENSION_KEY}) are added after
+   * those of the chunks before.
+   */
+  @SuppressWarnings("unchecked")
+  static void merge(Gedcom chunk, Gedcom gedcom) {
+    if (gedcom.getHeader() == null) {
+      gedcom.setHeader(chunk.getHeader());
+    }
+    if (gedcom.getSubmission() == null) {
+      gedcom.setSubmission(chunk.getSubmission());
+    }
+    for (Submitter submitter : chunk.getSubmitters()) {
+      gedcom.addSubmitter(submitter);
+    }
+    for (Person person : chunk.getPeople()) {
+      gedcom.addPerson(person);
+    }
+    for (Family family : chunk.getFamilies()) {
+      gedcom.addFamily(family);
+    }
+    for (Media media : chunk.getMedia()) {
+      gedcom.addMedia(media);
+    }
+    for (Note note : chunk.getNotes()) {
+      gedcom.addNote(note);
+    }
+    for (Source source : chunk.getSources()) {
+      gedcom.addSource(source);
+    }
+    for (Repository repository : chunk.getRepositories()) {
+      gedcom.addRepository(repository);
+    }
+    for (Map.Entry<String, Object> extension : chunk.getExtensions().entrySet()) {
+      Object merged = gedcom.getExtension(extension.getKey());
+      if (merged == null) {
+        gedcom.putExtension(extension.getKey(), extension.getValue());
+      }
+      else if (merged instanceof List && extension.getValue() instanceof List) {
+        ((List<Object>) merged).addAll((List<Object>) extension.getValue());
+      }
+    }
+  }
+
+  private static Gedcom awaitChunk(Future<Gedcom> future) throws IOException, SAXParseException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing in parallel.");
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SAXParseException) {
+        throw (SAXParseException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Takes the chunks of a file as they are parsed.
+   */
+  interface ChunkHandler {
+    void handle(Gedcom chunk) throws IOException;
+  }
+}
@@ -18,7 +18,6 @@ package org.gedcomx.conversion.gedcom.dq55;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import org.folg.gedcom.model.EventFact;
@@ -32,6 +31,7 @@ import org.gedcomx.conclusion.Name;
 import org.gedcomx.conclusion.NameForm;
 import org.gedcomx.conclusion.NamePart;
 import org.gedcomx.conclusion.Person;
+import org.gedcomx.conversion.ConversionDiagnostics.Category;
 import org.gedcomx.conversion.GedcomxConversionResult;
 import org.gedcomx.source.SourceReference;
 import org.gedcomx.types.GenderType;
@@ -39,7 +39,6 @@ import org.gedcomx.types.NamePartType;
 import org.gedcomx.types.NameType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
 import org.familysearch.platform.ordinances.Ordinance;
 
@@ -64,8 +63,7 @@ public class PersonMapper {
       return;
     }
 
-    Marker personContext = ConversionContext.getDetachedMarker(String.format("@%s@ INDI", dqPerson.getId()));
-    ConversionContext.addReference(personContext);
+    ConversionContext.pushRecord(dqPerson.getId(), "INDI");
     try {
       Person gedxPerson = new Person();
       gedxPerson.setId(mappingConfig.createId(dqPerson.getId()));
@@ -76,8 +74,7 @@ public class PersonMapper {
       int index = 0;
       List<Name> gedxNames = new ArrayList<Name>();
       for (org.folg.gedcom.model.Name dqName : dqPerson.getNames()) {
-        Marker nameContext = ConversionContext.getDetachedMarker("NAME." + (++index));
-        ConversionContext.addReference(nameContext);
+        ConversionContext.push("NAME", ++index);
         try {
           int cntNamesBeforeThisNameObj = gedxNames.size();
           gedxNames.addAll(toNameList(dqName, result));
@@ -86,7 +83,7 @@ public class PersonMapper {
             gedxNames.get(0).setPreferred(Boolean.TRUE);
           }
         } finally {
-          ConversionContext.removeReference(nameContext);
+          ConversionContext.pop();
         }
       }
 
@@ -121,67 +118,70 @@ public class PersonMapper {
       // Warn about all fields we are not processing
 
       if (dqPerson.getAssociations() != null && dqPerson.getAssociations().size() > 0) {
-        logger.warn(ConversionContext.getContext(), "Associations ignored.");
+        ConversionContext.warn(logger, Category.IGNORED, "ASSO", "Associations ignored.");
       }
       if (dqPerson.getRecordFileNumber() != null) {
-        logger.warn(ConversionContext.getContext(), "Record file number ignored: {}", dqPerson.getRecordFileNumber());
+        ConversionContext.warn(logger, Category.IGNORED, "RFN", "Record file number ignored: {}", dqPerson.getRecordFileNumber());
       }
       if (dqPerson.getReferenceNumbers() != null && dqPerson.getReferenceNumbers().size() > 0) {
         for (String each : dqPerson.getReferenceNumbers()) {
-          gedxPerson.addIdentifier(new Identifier().value(new URI(each)).type(new URI("USER_REFERENCE_NUMBER")));
+          gedxPerson.addIdentifier(new Identifier().value(new URI(each)).type(Vocabulary.USER_REFERENCE_NUMBER));
         }
       }
 
       if (dqPerson.getAncestorInterestSubmitterRef() != null) {
-        logger.warn(ConversionContext.getContext(), "Ancestor interest ignored: {}.", dqPerson.getAncestorInterestSubmitterRef());
+        ConversionContext.warn(logger, Category.IGNORED, "ANCI", "Ancestor interest ignored: {}.", dqPerson.getAncestorInterestSubmitterRef());
       }
 
       if (dqPerson.getDescendantInterestSubmitterRef() != null) {
-        logger.warn(ConversionContext.getContext(), "Descendant interest ignored: {}.", dqPerson.getDescendantInterestSubmitterRef());
+        ConversionContext.warn(logger, Category.IGNORED, "DESI", "Descendant interest ignored: {}.", dqPerson.getDescendantInterestSubmitterRef());
       }
 
       if (dqPerson.getAddress() != null) {
-        logger.warn(ConversionContext.getContext(), "Address was ignored: {}", dqPerson.getAddress().getDisplayValue());
+        ConversionContext.warn(logger, Category.IGNORED, "ADDR", "Address was ignored: {}", dqPerson.getAddress().getDisplayValue());
       }
 
       if (dqPerson.getEmail() != null) {
-        logger.warn(ConversionContext.getContext(), "e-mail ({}) was ignored.", dqPerson.getEmail());
+        ConversionContext.warn(logger, Category.IGNORED, "EMAIL", "e-mail ({}) was ignored.", dqPerson.getEmail());
       }
       if (dqPerson.getFax() != null) {
-        logger.warn(ConversionContext.getContext(), "fax ({}) was ignored.", dqPerson.getFax());
+        ConversionContext.warn(logger, Category.IGNORED, "FAX", "fax ({}) was ignored.", dqPerson.getFax());
       }
       if (dqPerson.getPhone() != null) {
-        logger.warn(ConversionContext.getContext(), "phone ({}) was ignored.", dqPerson.getPhone());
+        ConversionContext.warn(logger, Category.IGNORED, "PHON", "phone ({}) was ignored.", dqPerson.getPhone());
       }
       if (dqPerson.getWww() != null) {
-        logger.warn(ConversionContext.getContext(), "www ({}) was ignored.", dqPerson.getWww());
+        ConversionContext.warn(logger, Category.IGNORED, "WWW", "www ({}) was ignored.", dqPerson.getWww());
       }
 
       if (dqPerson.getUid() != null) {
-        Marker uidContext = ConversionContext.getDetachedMarker(dqPerson.getUidTag());
-        ConversionContext.addReference(uidContext);
-        logger.warn(ConversionContext.getContext(), "UID ({}) was ignored.", dqPerson.getUid());
-        ConversionContext.removeReference(uidContext);
+        ConversionContext.push(dqPerson.getUidTag());
+        ConversionContext.warn(logger, Category.IGNORED, dqPerson.getUidTag(), "UID ({}) was ignored.", dqPerson.getUid());
+        ConversionContext.pop();
       }
 
       if (dqPerson.getRin() != null) {
-        logger.warn(ConversionContext.getContext(), "RIN ({}) was ignored.", dqPerson.getRin());
+        ConversionContext.warn(logger, Category.IGNORED, "RIN", "RIN ({}) was ignored.", dqPerson.getRin());
       }
 
       int cntNotes = dqPerson.getNotes().size() + dqPerson.getNoteRefs().size();
       if (cntNotes > 0) {
-        logger.warn(ConversionContext.getContext(), "Did not process {} notes or references to notes.", cntNotes);
+        ConversionContext.warn(logger, Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", cntNotes);
       }
 
       int cntMedia = dqPerson.getMedia().size() + dqPerson.getMediaRefs().size();
       if (cntMedia > 0) {
-        logger.warn(ConversionContext.getContext(), "Did not process {} media items or references to media items.", cntMedia);
+        ConversionContext.warn(logger, Category.IGNORED, "OBJE", "Did not process {} media items or references to media items.", cntMedia);
       }
 
       if (dqPerson.getExtensions().size() > 0) {
+        gedxPerson.setLang(CommonMapper.toRecordLanguage(dqPerson));
         for (String extensionCategory : dqPerson.getExtensions().keySet()) {
           for (GedcomTag tag : ((List<GedcomTag>)dqPerson.getExtension(extensionCategory))) {
-            logger.warn(ConversionContext.getContext(), "Unsupported ({}): {}", extensionCategory, tag);
+            if (CommonMapper.isRecordLanguage(tag)) {
+              continue;
+            }
+            ConversionContext.warn(logger, Category.UNSUPPORTED, tag.getTag(), "Unsupported ({}): {}", extensionCategory, tag);
             // DATA tag (and subordinates) in GEDCOM 5.5. SOURCE_RECORD not being looked for or parsed by DallanQ code
           }
         }
@@ -193,7 +193,7 @@ public class PersonMapper {
 
       result.addPerson(gedxPerson);
     } finally {
-      ConversionContext.removeReference(personContext);
+      ConversionContext.pop();
     }
   }
 
@@ -204,8 +204,7 @@ public class PersonMapper {
 
     int index = 0;
     for(EventFact fact : facts) {
-      Marker factContext = ConversionContext.getDetachedMarker(fact.getTag() + '.' + (++index));
-      ConversionContext.addReference(factContext);
+      ConversionContext.push(fact.getTag(), ++index);
       try {
         Fact gedxFact = FactMapper.toFact(fact, result);
 
@@ -220,7 +219,7 @@ public class PersonMapper {
           gedxPerson.addFact(gedxFact);
         }
       } finally {
-        ConversionContext.removeReference(factContext);
+        ConversionContext.pop();
       }
     }
   }
@@ -232,19 +231,18 @@ public class PersonMapper {
 
     int index = 0;
     for(LdsOrdinance ordinance : ordinances) {
-      Marker ordinanceContext = ConversionContext.getDetachedMarker(ordinance.getTag() + '.' + (++index));
-      ConversionContext.addReference(ordinanceContext);
+      ConversionContext.push(ordinance.getTag(), ++index);
       try {
         gedxPerson.addFact(FactMapper.toOrdinance(ordinance));
       } finally {
-        ConversionContext.removeReference(ordinanceContext);
+        ConversionContext.pop();
       }
     }
   }
 
   private void processSex(Person gedxPerson, EventFact fact) {
     if(gedxPerson.getGender() != null) {
-      logger.warn(ConversionContext.getContext(), "Missing gender designation");
+      ConversionContext.warn(logger, Category.INVALID, "SEX", "Missing gender designation");
     }
 
     if(fact.getValue().equalsIgnoreCase("M")) {
@@ -257,7 +255,7 @@ public class PersonMapper {
       gedxPerson.setGender(new Gender(GenderType.Unknown));
     }
     else  {
-      logger.warn(ConversionContext.getContext(), "Unrecognized gender designation ({})", fact.getValue());
+      ConversionContext.warn(logger, Category.INVALID, "SEX", "Unrecognized gender designation ({})", fact.getValue());
     }
   }
 
@@ -273,8 +271,11 @@ public class PersonMapper {
 
     gedxName.setNameForms(new ArrayList<NameForm>());
     NameForm primaryForm = new NameForm();
-    primaryForm.setFullText(getNameValue(dqName));
-    List<NamePart> parts = getNameParts(dqName);
+    NameTokenizer tokenizer = dqName.getValue() == null ? null : new NameTokenizer(dqName.getValue());
+    if (tokenizer != null) {
+      primaryForm.setFullText(tokenizer.getFullText());
+    }
+    List<NamePart> parts = getNameParts(dqName, tokenizer);
     if (parts != null) {
       primaryForm.setParts(parts);
     }
@@ -327,29 +328,28 @@ public class PersonMapper {
     }
 
     if ((dqName.getType() != null) && (dqName.getType().trim().length() > 0)) {
-      Marker nameTypeContext = ConversionContext.getDetachedMarker((dqName.getTypeTag() == null)?"Undetermined":dqName.getTypeTag());
-      ConversionContext.addReference(nameTypeContext);
-      logger.warn(ConversionContext.getContext(), "Name type ({}) was ignored.", dqName.getType());
+      ConversionContext.push((dqName.getTypeTag() == null)?"Undetermined":dqName.getTypeTag());
+      ConversionContext.warn(logger, Category.IGNORED, "TYPE", "Name type ({}) was ignored.", dqName.getType());
       //gedxName.setKnownType();
       //gedxName.setType();
-      ConversionContext.removeReference(nameTypeContext);
+      ConversionContext.pop();
     }
 
     int cntNotes = dqName.getNotes().size() + dqName.getNoteRefs().size();
     if (cntNotes > 0) {
-      logger.warn(ConversionContext.getContext(), "Did not process {} notes or references to notes.", cntNotes);
+      ConversionContext.warn(logger, Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", cntNotes);
     }
 
     int cntMedia = dqName.getMedia().size() + dqName.getMediaRefs().size();
     if (cntMedia > 0) {
-      logger.warn(ConversionContext.getContext(), "Did not process {} media items or references to media items.", cntMedia);
+      ConversionContext.warn(logger, Category.IGNORED, "OBJE", "Did not process {} media items or references to media items.", cntMedia);
     }
 
 
     if (dqName.getExtensions().size() > 0) {
       for (String extensionCategory : dqName.getExtensions().keySet()) {
         for (GedcomTag tag : ((List<GedcomTag>)dqName.getExtension(extensionCategory))) {
-          logger.warn(ConversionContext.getContext(), "Unsupported ({}): {}", extensionCategory, tag);
+          ConversionContext.warn(logger, Category.UNSUPPORTED, tag.getTag(), "Unsupported ({}): {}", extensionCategory, tag);
         }
       }
     }
@@ -366,123 +366,19 @@ public class PersonMapper {
     return nameList;
   }
 
-  private String getNameValue(org.folg.gedcom.model.Name dqName) {
-    String value = dqName.getValue();
-    if (value == null) {
-      return null;
-    }
-
-    int indexOfSlash;
-    while ((indexOfSlash = value.indexOf('/')) >= 0){
-      // If both characters around the slash are not a space, replace the slash with a space, otherwise just remove it.
-      boolean replaceWithSpace = false;
-      if(indexOfSlash > 0 && indexOfSlash < value.length() - 1) {
-        char c = value.charAt(indexOfSlash - 1);
-        if(c != ' ') {
-          c = value.charAt(indexOfSlash + 1);
-          if(c != ' ') {
-            replaceWithSpace = true;
-          }
-        }
-      }
-      if(replaceWithSpace) {
-        value = replaceCharAt(value, indexOfSlash, ' ');
-      }
-      else {
-        value = deleteCharAt(value, indexOfSlash);
-      }
-    }
-    return value.trim();
-  }
-
-  private List<NamePart> getNameParts(org.folg.gedcom.model.Name dqName) {
+  private List<NamePart> getNameParts(org.folg.gedcom.model.Name dqName, NameTokenizer tokenizer) {
     List<NamePart> nameParts = new ArrayList<NamePart>(4);
 
-    nameParts.addAll(newNamePartInstances(dqName.getPrefix(), NamePartType.Prefix));
-    nameParts.addAll(newNamePartInstances(dqName.getGiven(), NamePartType.Given));
-    nameParts.addAll(newNamePartInstances(getSurname(dqName), NamePartType.Surname));
-    nameParts.addAll(newNamePartInstances(dqName.getSuffix(), NamePartType.Suffix));
-
-    return nameParts.size() > 0 ? nameParts : null;
-  }
-
-  private String getSurname(org.folg.gedcom.model.Name dqName) {
-    if ((dqName == null) || ((dqName.getValue() == null) && (dqName.getSurname() == null))) {
-      return null;
+    NameTokenizer.addNameParts(nameParts, dqName.getPrefix(), NamePartType.Prefix);
+    NameTokenizer.addNameParts(nameParts, dqName.getGiven(), NamePartType.Given);
+    if (dqName.getSurname() != null) {
+      NameTokenizer.addNameParts(nameParts, dqName.getSurname(), NamePartType.Surname);
     }
-
-    String value = dqName.getSurname();
-    if (value == null) {
-      value = dqName.getValue();
-
-      int slashIndex = value.indexOf('/');
-      if (slashIndex >= 0) {
-        StringBuilder builder = new StringBuilder(value);
-        builder.replace(0, slashIndex + 1, "");
-        value = builder.toString();
-        slashIndex = value.indexOf('/');
-        if (slashIndex >= 0) {
-          builder.replace(slashIndex, builder.length(), "");
-        }
-        value = builder.toString().trim();
-      } else {
-        value = null;
-      }
+    else if (tokenizer != null) {
+      tokenizer.addSurnameParts(nameParts);
     }
+    NameTokenizer.addNameParts(nameParts, dqName.getSuffix(), NamePartType.Suffix);
 
-    return value;
-  }
-
-  private List<NamePart> newNamePartInstances(String value, NamePartType type) {
-    if(value == null) {
-      return Collections.emptyList();
-    }
-
-    ArrayList<NamePart> nameParts = new ArrayList<NamePart>();
-
-    String[] pieces = value.split(",\\s*");
-    for (String piece : pieces){
-      piece = piece.trim();
-      if(!piece.equals("")) {
-        NamePart namePart = new NamePart();
-        namePart.setKnownType(type);
-        namePart.setValue(piece);
-        nameParts.add(namePart);
-      }
-    }
-
-    return nameParts;
-  }
-
-  private String deleteCharAt(String value, int index) {
-    if(value == null || index < 0 || index >= value.length()) {
-      return value;
-    }
-
-    if(index == value.length() - 1) {
-      return value.substring(0, index);
-    }
-    else if(index == 0) {
-      return value.substring(index + 1);
-    }
-    else {
-      return value.substring(0, index) + value.substring(index + 1);
-    }
-  }
-
-  private String replaceCharAt(String value, int index, char c) {
-    if(value == null || index < 0 || index >= value.length()) {
-      return value;
-    }
-
-    if(index == value.length() - 1) {
-      return value.substring(0, index) + c;
-    }
-    else if(index == 0) {
-      return c + value.substring(index + 1);
-    }
-    else {
-      return value.substring(0, index) + c + value.substring(index + 1);
-    }
+    return nameParts.size() > 0 ? nameParts : null;
   }
 }
\ No newline at end of file
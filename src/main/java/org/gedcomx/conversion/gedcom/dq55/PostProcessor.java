@@ -33,4 +33,12 @@ import org.folg.gedcom.model.Person;
  */
 public interface PostProcessor {
   void postProcessPerson(Person gedcomPerson, org.gedcomx.conclusion.Person gedxPerson);
+
+  /**
+   * @return the configuration of this PostProcessor that what it adds to the persons depends on, if any: the persons of
+   * a file that is converted incrementally (see RecordCache) are mapped again when it changes
+   */
+  default String getConfiguration() {
+    return "";
+  }
 }
@@ -0,0 +1,342 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.gedcomx.agent.Agent;
+import org.gedcomx.conclusion.Person;
+import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.conversion.GedcomxConversionResult;
+import org.gedcomx.conversion.SmileSerialization;
+import org.gedcomx.source.SourceDescription;
+
+
+/**
+ * What the records of a GEDCOM 5.5 file were mapped to the last time the file was converted, so that converting the
+ * file again (e.g. when a tree is uploaded again with a few edits) only parses and maps the records that changed (see
+ * {@link GedcomMapper#toGedcomx(File, GedcomxConversionResult, RecordCache)}). The INDI, FAM, SOUR and REPO records
+ * are known by their tag and identifier, and their content by a digest of their lines; the GEDCOM X objects each was
+ * mapped to are kept as Smile.
+ *
+ * The cache is a file with the objects of all the records, followed by an index of the records; only the index is read
+ * when the cache is opened. A conversion writes a new cache next to the old one, with the objects of the records that
+ * didn't change copied from the old one, and the new cache replaces the old one when it is committed; if it isn't (for
+ * instance because the conversion failed), the old cache is left as it was. A cache that was written by a mapping with
+ * another configuration is ignored.
+ *
+ * A cache is not thread-safe.
+ */
+public class RecordCache implements Closeable {
+
+  private static final int MAGIC = 0x47584331;
+
+  private static final byte PERSON = 'P';
+  private static final byte RELATIONSHIP = 'R';
+  private static final byte SOURCE_DESCRIPTION = 'S';
+  private static final byte ORGANIZATION = 'O';
+  private static final byte CONTRIBUTOR = 'C';
+  private static final byte LANGUAGE = 'L';
+
+  private static final ObjectMapper MAPPER = SmileSerialization.createObjectMapper(Ordinance.class);
+
+  private final File file;
+  private final File temporary;
+  private final Map<String, Entry> previous = new HashMap<String, Entry>();
+  private final Map<String, Entry> next = new LinkedHashMap<String, Entry>();
+  private RandomAccessFile previousData;
+  private String previousFingerprint;
+  private DataOutputStream out;
+  private long position;
+  private int reused = 0;
+  private int mapped = 0;
+  private boolean committed = false;
+
+  /**
+   * Opens the cache in the given file; a file that doesn't exist (or can't be read as a cache) is an empty cache.
+   */
+  public RecordCache(File file) throws IOException {
+    this.file = file;
+    this.temporary = new File(file.getPath() + ".tmp");
+    if (file.isFile()) {
+      try {
+        readIndex();
+      }
+      catch (IOException | RuntimeException e) {
+        previous.clear();
+        previousFingerprint = null;
+        if (previousData != null) {
+          previousData.close();
+          previousData = null;
+        }
+      }
+    }
+  }
+
+  private void readIndex() throws IOException {
+    previousData = new RandomAccessFile(file, "r");
+    if (previousData.readInt() != MAGIC) {
+      throw new IOException("Not a record cache: " + file);
+    }
+    previousFingerprint = previousData.readUTF();
+    previousData.seek(previousData.length() - 12);
+    long indexStart = previousData.readLong();
+    if (previousData.readInt() != MAGIC) {
+      throw new IOException("Incomplete record cache: " + file);
+    }
+
+    previousData.seek(indexStart);
+    DataInputStream index = new DataInputStream(new BufferedInputStream(Channels.newInputStream(previousData.getChannel()), 1 << 16));
+    int count = index.readInt();
+    for (int i = 0; i < count; i++) {
+      String key = index.readUTF();
+      byte[] digest = new byte[index.readUnsignedByte()];
+      index.readFully(digest);
+      previous.put(key, new Entry(digest, index.readLong(), index.readInt()));
+    }
+  }
+
+  /**
+   * Starts writing the new cache of a conversion.
+   *
+   * @param fingerprint the configuration of the mapping, which the records of the old cache must have been mapped with
+   */
+  void start(String fingerprint) throws IOException {
+    if (out != null) {
+      throw new IllegalStateException("The cache is already in use.");
+    }
+    if (!fingerprint.equals(previousFingerprint)) {
+      previous.clear();
+    }
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+    out.writeInt(MAGIC);
+    out.writeUTF(fingerprint);
+    position = out.size();
+  }
+
+  /**
+   * Adds what a record was mapped to the last time to the given result, if the record hasn't changed since.
+   *
+   * @return false if the record is not in the cache, or has changed
+   */
+  boolean replay(String key, byte[] digest, GedcomxConversionResult result) throws IOException {
+    Entry entry = previous.get(key);
+    if (entry == null || !Arrays.equals(entry.digest, digest)) {
+      return false;
+    }
+
+    byte[] objects = new byte[entry.length];
+    previousData.seek(entry.offset);
+    previousData.readFully(objects);
+    write(key, digest, objects);
+    reused++;
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(objects));
+    while (in.available() > 0) {
+      byte type = in.readByte();
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      ShardConversionResult.replay(fromCached(type, MAPPER.readValue(bytes, typeOf(type))), result);
+    }
+    return true;
+  }
+
+  /**
+   * Records what a record was mapped to.
+   *
+   * @param added the persons, relationships, source descriptions and organizations the record was mapped to (and the
+   *              dataset contributors and languages it set, see {@link ShardConversionResult#getAdded()})
+   */
+  void put(String key, byte[] digest, List<Object> added) throws IOException {
+    ByteArrayOutputStream objects = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(objects);
+    for (Object each : added) {
+      byte[] bytes = MAPPER.writeValueAsBytes(toCached(each));
+      data.writeByte(typeOf(each));
+      data.writeInt(bytes.length);
+      data.write(bytes);
+    }
+    write(key, digest, objects.toByteArray());
+    mapped++;
+  }
+
+  private void write(String key, byte[] digest, byte[] objects) throws IOException {
+    out.write(objects);
+    next.put(key, new Entry(digest, position, objects.length));
+    position += objects.length;
+  }
+
+  private static Object toCached(Object added) {
+    if (added instanceof ShardConversionResult.DatasetContributor) {
+      return ((ShardConversionResult.DatasetContributor) added).getContributor();
+    }
+    if (added instanceof ShardConversionResult.DatasetLanguage) {
+      return ((ShardConversionResult.DatasetLanguage) added).getLangCode();
+    }
+    return added;
+  }
+
+  private static Object fromCached(byte type, Object cached) {
+    switch (type) {
+      case CONTRIBUTOR:
+        return new ShardConversionResult.DatasetContributor((Agent) cached);
+      case LANGUAGE:
+        return new ShardConversionResult.DatasetLanguage((String) cached);
+      default:
+        return cached;
+    }
+  }
+
+  private static byte typeOf(Object added) {
+    if (added instanceof ShardConversionResult.DatasetContributor) {
+      return CONTRIBUTOR;
+    }
+    if (added instanceof ShardConversionResult.DatasetLanguage) {
+      return LANGUAGE;
+    }
+    if (added instanceof Person) {
+      return PERSON;
+    }
+    if (added instanceof Relationship) {
+      return RELATIONSHIP;
+    }
+    if (added instanceof SourceDescription) {
+      return SOURCE_DESCRIPTION;
+    }
+    return ORGANIZATION;
+  }
+
+  private Class<?> typeOf(byte type) throws IOException {
+    switch (type) {
+      case PERSON:
+        return Person.class;
+      case RELATIONSHIP:
+        return Relationship.class;
+      case SOURCE_DESCRIPTION:
+        return SourceDescription.class;
+      case ORGANIZATION:
+      case CONTRIBUTOR:
+        return Agent.class;
+      case LANGUAGE:
+        return String.class;
+      default:
+        throw new IOException("Corrupt record cache: " + file);
+    }
+  }
+
+  /**
+   * @return the number of records whose objects were taken from the cache
+   */
+  public int getReused() {
+    return reused;
+  }
+
+  /**
+   * @return the number of records that were mapped (because they were new or had changed)
+   */
+  public int getMapped() {
+    return mapped;
+  }
+
+  /**
+   * Replaces the old cache with the new one, which holds the records of the conversion (and only them).
+   */
+  public void commit() throws IOException {
+    if (out == null || committed) {
+      return;
+    }
+    long indexStart = position;
+    out.writeInt(next.size());
+    for (Map.Entry<String, Entry> each : next.entrySet()) {
+      Entry entry = each.getValue();
+      out.writeUTF(each.getKey());
+      out.writeByte(entry.digest.length);
+      out.write(entry.digest);
+      out.writeLong(entry.offset);
+      out.writeInt(entry.length);
+    }
+    out.writeLong(indexStart);
+    out.writeInt(MAGIC);
+    out.close();
+
+    if (previousData != null) {
+      previousData.close();
+      previousData = null;
+    }
+    try {
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    committed = true;
+  }
+
+  /**
+   * Closes the cache, leaving the old cache as it was if the new one hasn't been committed.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (out != null && !committed) {
+        out.close();
+        Files.deleteIfExists(temporary.toPath());
+      }
+    }
+    finally {
+      if (previousData != null) {
+        previousData.close();
+        previousData = null;
+      }
+    }
+  }
+
+  /**
+   * Where the objects of a record are in the cache, and the digest of the record they were mapped from.
+   */
+  private static final class Entry {
+    private final byte[] digest;
+    private final long offset;
+    private final int length;
+
+    private Entry(byte[] digest, long offset, int length) {
+      this.digest = digest;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
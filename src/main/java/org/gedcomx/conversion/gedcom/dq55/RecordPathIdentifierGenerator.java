@@ -0,0 +1,43 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+/**
+ * Derives ids from the record being mapped: the id is the prefix, the identifier of the current level-0 record and the
+ * number of ids already generated for that record (e.g. <code>S1-I1-2</code> for the second id generated while mapping
+ * <code>@I1@</code>). A record without an identifier is known by its tag and its position among the records of its
+ * kind (e.g. <code>S1-INDI.3-1</code>). As a record is always mapped by a single thread, the ids don't depend on how
+ * the records are scheduled, so conversions are reproducible and generating an id doesn't contend with other threads.
+ *
+ * The generator keeps no state of its own (the count is kept by the {@link ConversionContext} of the thread), so a
+ * single instance can be shared by any number of conversions.
+ */
+public class RecordPathIdentifierGenerator implements IdentifierGenerator {
+
+  public static final RecordPathIdentifierGenerator INSTANCE = new RecordPathIdentifierGenerator();
+
+  @Override
+  public String nextId(String prefix) {
+    String record = ConversionContext.getRecordKey();
+    int sequence = ConversionContext.nextSequenceInRecord();
+    StringBuilder id = new StringBuilder(prefix.length() + (record == null ? 0 : record.length()) + 8).append(prefix).append('-');
+    if (record != null) {
+      id.append(record).append('-');
+    }
+    return id.append(sequence).toString();
+  }
+
+}
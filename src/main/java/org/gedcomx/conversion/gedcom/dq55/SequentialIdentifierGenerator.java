@@ -18,6 +18,11 @@ package org.gedcomx.conversion.gedcom.dq55;
 import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * @deprecated a single sequence shared by every conversion in the JVM makes the ids depend on how conversions (and the
+ * records within them) are scheduled; ids are generated by the {@link IdentifierGenerator} of the {@link MappingConfig}.
+ */
+@Deprecated
 public class SequentialIdentifierGenerator {
 
   private static AtomicLong lastId = new AtomicLong(0);
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gedcomx.Gedcomx;
+import org.gedcomx.agent.Agent;
+import org.gedcomx.conclusion.Person;
+import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.conversion.ConversionDiagnostics;
+import org.gedcomx.conversion.GedcomxConversionResult;
+import org.gedcomx.source.SourceDescription;
+
+/**
+ * Collects what a mapping task adds to a conversion result, in the order it was added, so that the output of a shard
+ * of records mapped on another thread can be replayed into the real result in a deterministic order. The dataset
+ * contributor and languages are collected as well, and set on the real result when the shard is replayed.
+ */
+class ShardConversionResult implements GedcomxConversionResult {
+
+  private final List<Object> added = new ArrayList<Object>();
+  private Agent contributor;
+
+  @Override
+  public Gedcomx getDataset() {
+    return null;
+  }
+
+  /**
+   * @return the dataset contributor set on this result, if any
+   */
+  @Override
+  public Agent getDatasetContributor() {
+    return contributor;
+  }
+
+  @Override
+  public void setDatasetContributor(Agent person) throws IOException {
+    contributor = person;
+    added.add(new DatasetContributor(person));
+  }
+
+  @Override
+  public void addPerson(Person person) throws IOException {
+    added.add(person);
+  }
+
+  @Override
+  public void addRelationship(Relationship relationship) throws IOException {
+    added.add(relationship);
+  }
+
+  @Override
+  public void addSourceDescription(SourceDescription description) throws IOException {
+    added.add(description);
+  }
+
+  @Override
+  public void addOrganization(Agent organization) throws IOException {
+    added.add(organization);
+  }
+
+  @Override
+  public void addLanguage(String langCode) {
+    added.add(new DatasetLanguage(langCode));
+  }
+
+  /**
+   * @return null; the tasks record their issues directly in the diagnostics of the real result
+   */
+  @Override
+  public ConversionDiagnostics getDiagnostics() {
+    return null;
+  }
+
+  /**
+   * @return the persons, relationships, source descriptions and organizations that were added, and the dataset
+   * contributors and languages that were set, in order
+   */
+  List<Object> getAdded() {
+    return added;
+  }
+
+  void replay(GedcomxConversionResult result) throws IOException {
+    for (Object each : added) {
+      replay(each, result);
+    }
+  }
+
+  /**
+   * Adds a person, relationship, source description or organization to a result, or sets its dataset contributor or
+   * adds a language to it.
+   */
+  static void replay(Object added, GedcomxConversionResult result) throws IOException {
+    if (added instanceof DatasetContributor) {
+      result.setDatasetContributor(((DatasetContributor) added).getContributor());
+    }
+    else if (added instanceof DatasetLanguage) {
+      result.addLanguage(((DatasetLanguage) added).getLangCode());
+    }
+    else if (added instanceof Person) {
+      result.addPerson((Person) added);
+    }
+    else if (added instanceof Relationship) {
+      result.addRelationship((Relationship) added);
+    }
+    else if (added instanceof SourceDescription) {
+      result.addSourceDescription((SourceDescription) added);
+    }
+    else {
+      result.addOrganization((Agent) added);
+    }
+  }
+
+  /**
+   * The dataset contributor set on a shard.
+   */
+  static final class DatasetContributor {
+    private final Agent contributor;
+
+    DatasetContributor(Agent contributor) {
+      this.contributor = contributor;
+    }
+
+    Agent getContributor() {
+      return contributor;
+    }
+  }
+
+  /**
+   * A language added to a shard.
+   */
+  static final class DatasetLanguage {
+    private final String langCode;
+
+    DatasetLanguage(String langCode) {
+      this.langCode = langCode;
+    }
+
+    String getLangCode() {
+      return langCode;
+    }
+  }
+}
@@ -24,16 +24,14 @@ import org.folg.gedcom.model.Source;
 import org.gedcomx.common.ResourceReference;
 import org.gedcomx.common.TextValue;
 import org.gedcomx.common.URI;
+import org.gedcomx.conversion.ConversionDiagnostics.Category;
 import org.gedcomx.conversion.GedcomxConversionResult;
 import org.gedcomx.agent.Agent;
-import org.gedcomx.source.CitationField;
 import org.gedcomx.source.SourceDescription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -42,8 +40,7 @@ public class SourceDescriptionMapper {
   private static final Logger logger = LoggerFactory.getLogger(CommonMapper.class);
 
   public void toSourceDescription(Source dqSource, GedcomxConversionResult result) throws IOException {
-    Marker sourceContext = ConversionContext.getDetachedMarker(String.format("@%s@ SOUR", dqSource.getId()));
-    ConversionContext.addReference(sourceContext);
+    ConversionContext.pushRecord(dqSource.getId(), "SOUR");
     try {
       SourceDescription gedxSourceDescription = new SourceDescription();
       gedxSourceDescription.setId(dqSource.getId());
@@ -56,41 +53,18 @@ public class SourceDescriptionMapper {
       }
 
       org.gedcomx.source.SourceCitation citation = new org.gedcomx.source.SourceCitation();
-      citation.setCitationTemplate(new ResourceReference(URI.create("gedcom5:citation-template")));
-      citation.setFields(new ArrayList<CitationField>());
-      citation.setValue("");
-
-      if (dqSource.getAuthor() != null) {
-        CitationField field = new CitationField();
-        field.setName(URI.create("gedcom5:citation-template/author"));
-        field.setValue(dqSource.getAuthor());
-        citation.getFields().add(field);
-        citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqSource.getAuthor() : dqSource.getAuthor()));
-      }
-
-      if (dqSource.getTitle() != null) {
-        CitationField field = new CitationField();
-        field.setName(URI.create("gedcom5:citation-template/title"));
-        field.setValue(dqSource.getTitle());
-        citation.getFields().add(field);
-        citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqSource.getTitle() : dqSource.getTitle()));
-      }
-
-      if (dqSource.getPublicationFacts() != null) {
-        CitationField field = new CitationField();
-        field.setName(URI.create("gedcom5:citation-template/publication-facts"));
-        field.setValue(dqSource.getPublicationFacts());
-        citation.getFields().add(field);
-        citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqSource.getPublicationFacts() : dqSource.getPublicationFacts()));
-      }
+      citation.setCitationTemplate(Vocabulary.citationTemplate());
+      CitationBuilder citationBuilder = CitationBuilder.start()
+        .field(Vocabulary.CITATION_AUTHOR, dqSource.getAuthor())
+        .field(Vocabulary.CITATION_TITLE, dqSource.getTitle())
+        .field(Vocabulary.CITATION_PUBLICATION_FACTS, dqSource.getPublicationFacts());
 
       if (dqSource.getText() != null) {
-        logger.warn(ConversionContext.getContext(), "GEDCOM X does not currently support text extracted from a source.");
+        ConversionContext.warn(logger, Category.UNSUPPORTED, "TEXT", "GEDCOM X does not currently support text extracted from a source.");
       }
 
       if (dqSource.getRepositoryRef() != null) {
-        Marker repoContext = ConversionContext.getDetachedMarker("REPO");
-        ConversionContext.addReference(repoContext);
+        ConversionContext.push("REPO");
         try {
           RepositoryRef dqRepositoryRef = dqSource.getRepositoryRef();
           if (dqRepositoryRef.getRef() != null) {
@@ -107,35 +81,23 @@ public class SourceDescriptionMapper {
               gedxOrganization.addExtensionElement(gedxNote);
             }
             for (NoteRef dqNoteRef : dqRepositoryRef.getNoteRefs()) {
-              logger.warn(ConversionContext.getContext(), "Unable to associate a note ({}) with the inline-defined organization ({})", dqNoteRef.getRef(), inlineRepoId);
+              ConversionContext.warn(logger, Category.UNSUPPORTED, "NOTE", "Unable to associate a note ({}) with the inline-defined organization ({})", dqNoteRef.getRef(), inlineRepoId);
             }
             result.addOrganization(gedxOrganization);
             gedxSourceDescription.setMediator(new ResourceReference(URI.create(CommonMapper.getOrganizationReference(inlineRepoId))));
           }
 
-          if (dqRepositoryRef.getCallNumber() != null) {
-            CitationField field = new CitationField();
-            field.setName(URI.create("gedcom5:citation-template/call-number"));
-            field.setValue(dqRepositoryRef.getCallNumber());
-            citation.getFields().add(field);
-            citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqRepositoryRef.getCallNumber() : dqRepositoryRef.getCallNumber()));
-          }
+          citationBuilder.field(Vocabulary.CITATION_CALL_NUMBER, dqRepositoryRef.getCallNumber());
         }
         finally {
-          ConversionContext.removeReference(repoContext);
+          ConversionContext.pop();
         }
       }
 
-      if (dqSource.getCallNumber() != null) {
-        CitationField field = new CitationField();
-        field.setName(URI.create("gedcom5:citation-template/call-number"));
-        field.setValue(dqSource.getCallNumber());
-        citation.getFields().add(field);
-        citation.setValue(citation.getValue() + (citation.getValue().length() > 0 ? ", " + dqSource.getCallNumber() : dqSource.getCallNumber()));
-      }
+      citationBuilder.field(Vocabulary.CITATION_CALL_NUMBER, dqSource.getCallNumber());
 
+      citationBuilder.build(citation, ".");
       if (citation.getValue().length() > 0) {
-        citation.setValue(citation.getValue() + '.');
         gedxSourceDescription.setCitations(Arrays.asList(citation));
       }
 
@@ -143,50 +105,46 @@ public class SourceDescriptionMapper {
 
       int cntNotes = dqSource.getNotes().size() + dqSource.getNoteRefs().size();
       if (cntNotes > 0) {
-        logger.warn(ConversionContext.getContext(), "Did not process {} notes or references to notes.", cntNotes);
+        ConversionContext.warn(logger, Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", cntNotes);
       }
 
       int cntMedia = dqSource.getMedia().size() + dqSource.getMediaRefs().size();
       if (cntMedia > 0) {
-        logger.warn(ConversionContext.getContext(), "Did not process {} media items or references to media items.", cntMedia);
+        ConversionContext.warn(logger, Category.IGNORED, "OBJE", "Did not process {} media items or references to media items.", cntMedia);
       }
 
       if (dqSource.getType() != null) {
-        Marker nameTypeContext = ConversionContext.getDetachedMarker(dqSource.getTypeTag());
-        ConversionContext.addReference(nameTypeContext);
-        logger.warn(ConversionContext.getContext(), "Source type ({}) was ignored.", dqSource.getType());
-        ConversionContext.removeReference(nameTypeContext);
+        ConversionContext.push(dqSource.getTypeTag());
+        ConversionContext.warn(logger, Category.IGNORED, "TYPE", "Source type ({}) was ignored.", dqSource.getType());
+        ConversionContext.pop();
       }
 
       if (dqSource.getDate() != null) {
-        Marker dateContext = ConversionContext.getDetachedMarker("DATE");
-        ConversionContext.addReference(dateContext);
-        logger.warn(ConversionContext.getContext(), "Specificaton does not define the meaning of DATE in this context; value ({}) was ignored.", dqSource.getDate());
-        ConversionContext.removeReference(dateContext);
+        ConversionContext.push("DATE");
+        ConversionContext.warn(logger, Category.IGNORED, "DATE", "Specificaton does not define the meaning of DATE in this context; value ({}) was ignored.", dqSource.getDate());
+        ConversionContext.pop();
       }
 
       if (dqSource.getReferenceNumber() != null) {
-        Marker refnContext = ConversionContext.getDetachedMarker("REFN");
-        ConversionContext.addReference(refnContext);
-        logger.warn(ConversionContext.getContext(), "User reference number ({}) was ignored.", dqSource.getReferenceNumber());
-        ConversionContext.removeReference(refnContext);
+        ConversionContext.push("REFN");
+        ConversionContext.warn(logger, Category.IGNORED, "REFN", "User reference number ({}) was ignored.", dqSource.getReferenceNumber());
+        ConversionContext.pop();
       }
 
       if (dqSource.getRin() != null) {
-        logger.warn(ConversionContext.getContext(), "RIN ({}) was ignored.", dqSource.getRin());
+        ConversionContext.warn(logger, Category.IGNORED, "RIN", "RIN ({}) was ignored.", dqSource.getRin());
       }
 
       if (dqSource.getUid() != null) {
-        Marker uidContext = ConversionContext.getDetachedMarker(dqSource.getUidTag());
-        ConversionContext.addReference(uidContext);
-        logger.warn(ConversionContext.getContext(), "UID ({}) was ignored.", dqSource.getUid());
-        ConversionContext.removeReference(uidContext);
+        ConversionContext.push(dqSource.getUidTag());
+        ConversionContext.warn(logger, Category.IGNORED, dqSource.getUidTag(), "UID ({}) was ignored.", dqSource.getUid());
+        ConversionContext.pop();
       }
 
       if (dqSource.getExtensions().size() > 0) {
         for (String extensionCategory : dqSource.getExtensions().keySet()) {
           for (GedcomTag tag : ((List<GedcomTag>) dqSource.getExtension(extensionCategory))) {
-            logger.warn(ConversionContext.getContext(), "Unsupported ({}): {}", extensionCategory, tag);
+            ConversionContext.warn(logger, Category.UNSUPPORTED, tag.getTag(), "Unsupported ({}): {}", extensionCategory, tag);
             // DATA tag (and subordinates) in GEDCOM 5.5. SOURCE_RECORD not being looked for or parsed by DallanQ code
           }
         }
@@ -198,13 +156,12 @@ public class SourceDescriptionMapper {
       result.addSourceDescription(gedxSourceDescription);
     }
     finally {
-      ConversionContext.removeReference(sourceContext);
+      ConversionContext.pop();
     }
   }
 
   public void toOrganization(Repository dqRepository, GedcomxConversionResult result) throws IOException {
-    Marker repositoryContext = ConversionContext.getDetachedMarker(String.format("@%s@ REPO", dqRepository.getId()));
-    ConversionContext.addReference(repositoryContext);
+    ConversionContext.pushRecord(dqRepository.getId(), "REPO");
     try {
       Agent gedxOrganization = new Agent();
 
@@ -220,21 +177,21 @@ public class SourceDescriptionMapper {
 
       int cntNotes = dqRepository.getNotes().size() + dqRepository.getNoteRefs().size();
       if (cntNotes > 0) {
-        logger.warn(ConversionContext.getContext(), "Did not process {} notes or references to notes.", cntNotes);
+        ConversionContext.warn(logger, Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", cntNotes);
       }
 
       if (dqRepository.getRin() != null) {
-        logger.warn(ConversionContext.getContext(), "RIN ({}) was ignored.", dqRepository.getRin());
+        ConversionContext.warn(logger, Category.IGNORED, "RIN", "RIN ({}) was ignored.", dqRepository.getRin());
       }
 
       if (dqRepository.getValue() != null) {
-        logger.warn(ConversionContext.getContext(), "Unexpected repository value ({}) was ignored.", dqRepository.getValue());
+        ConversionContext.warn(logger, Category.IGNORED, "REPO", "Unexpected repository value ({}) was ignored.", dqRepository.getValue());
       }
 
       if (dqRepository.getExtensions().size() > 0) {
         for (String extensionCategory : dqRepository.getExtensions().keySet()) {
           for (GedcomTag tag : ((List<GedcomTag>) dqRepository.getExtension(extensionCategory))) {
-            logger.warn(ConversionContext.getContext(), "Unsupported ({}): {}", extensionCategory, tag);
+            ConversionContext.warn(logger, Category.UNSUPPORTED, tag.getTag(), "Unsupported ({}): {}", extensionCategory, tag);
           }
         }
       }
@@ -244,7 +201,7 @@ public class SourceDescriptionMapper {
       result.addOrganization(gedxOrganization);
     }
     finally {
-      ConversionContext.removeReference(repositoryContext);
+      ConversionContext.pop();
     }
   }
 }
\ No newline at end of file
@@ -18,10 +18,10 @@ package org.gedcomx.conversion.gedcom.dq55;
 import org.folg.gedcom.model.GedcomTag;
 import org.folg.gedcom.model.Submitter;
 import org.gedcomx.agent.Agent;
+import org.gedcomx.conversion.ConversionDiagnostics.Category;
 import org.gedcomx.conversion.GedcomxConversionResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
 import java.io.IOException;
 import java.util.List;
@@ -35,8 +35,7 @@ public class SubmitterMapper {
       return;
     }
 
-    Marker submitterContext = ConversionContext.getDetachedMarker(String.format("@%s@ SUBM", dqSubmitter.getId()));
-    ConversionContext.addReference(submitterContext);
+    ConversionContext.pushRecord(dqSubmitter.getId(), "SUBM");
 
     Agent gedxContributor = new Agent();
 
@@ -51,21 +50,21 @@ public class SubmitterMapper {
       );
 
     if (dqSubmitter.getLanguage() != null) {
-      logger.warn(ConversionContext.getContext(), "LANG ({}) was ignored.", dqSubmitter.getRin());
+      ConversionContext.warn(logger, Category.IGNORED, "LANG", "LANG ({}) was ignored.", dqSubmitter.getRin());
     }
 
     if (dqSubmitter.getRin() != null) {
-      logger.warn(ConversionContext.getContext(), "RIN ({}) was ignored.", dqSubmitter.getRin());
+      ConversionContext.warn(logger, Category.IGNORED, "RIN", "RIN ({}) was ignored.", dqSubmitter.getRin());
     }
 
     if (dqSubmitter.getValue() != null) {
-      logger.warn(ConversionContext.getContext(), "Unexpected submitter value ({}) was ignored.", dqSubmitter.getValue());
+      ConversionContext.warn(logger, Category.IGNORED, "SUBM", "Unexpected submitter value ({}) was ignored.", dqSubmitter.getValue());
     }
 
     if (dqSubmitter.getExtensions().size() > 0) {
       for (String extensionCategory : dqSubmitter.getExtensions().keySet()) {
         for (GedcomTag tag : ((List<GedcomTag>)dqSubmitter.getExtension(extensionCategory))) {
-          logger.warn(ConversionContext.getContext(), "Unsupported ({}): {}", extensionCategory, tag);
+          ConversionContext.warn(logger, Category.UNSUPPORTED, tag.getTag(), "Unsupported ({}): {}", extensionCategory, tag);
           // DATA tag (and subordinates) in GEDCOM 5.5. SOURCE_RECORD not being looked for or parsed by DallanQ code
         }
       }
@@ -73,6 +72,6 @@ public class SubmitterMapper {
 
     result.setDatasetContributor(gedxContributor);
 
-    ConversionContext.removeReference(submitterContext);
+    ConversionContext.pop();
   }
 }
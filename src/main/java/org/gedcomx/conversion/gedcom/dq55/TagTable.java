@@ -0,0 +1,191 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+
+/**
+ * An immutable table of GEDCOM tags. Tags are looked up case-insensitively and ignoring surrounding whitespace, directly
+ * on the character sequence that is given, so a lookup doesn't allocate.
+ *
+ * The table is an open-addressing hash table over the upper-case tags, sized to at most half full so that probe
+ * sequences stay short.
+ *
+ * @param <V> the type of the values the tags map to
+ */
+final class TagTable<V> {
+
+  private final String[] tags;
+  private final Object[] values;
+  private final int mask;
+  private final int size;
+
+  TagTable(Map<String, V> entries) {
+    int capacity = Integer.highestOneBit(Math.max(4, entries.size() * 2 - 1)) << 1;
+    this.tags = new String[capacity];
+    this.values = new Object[capacity];
+    this.mask = capacity - 1;
+
+    int count = 0;
+    for (Map.Entry<String, V> entry : entries.entrySet()) {
+      String tag = normalize(entry.getKey());
+      int slot = hash(tag, 0, tag.length()) & mask;
+      while (tags[slot] != null && !tags[slot].equals(tag)) {
+        slot = (slot + 1) & mask;
+      }
+      if (tags[slot] == null) {
+        count++;
+      }
+      tags[slot] = tag;
+      values[slot] = entry.getValue();
+    }
+    this.size = count;
+  }
+
+  /**
+   * Loads a table from the properties resource bundled next to this class, followed by the properties resources with
+   * the given custom name found on the classpath, if any. A custom mapping of a tag replaces the bundled one.
+   *
+   * @param resource the name of the bundled resource, relative to this class
+   * @param customResource the name of the custom resources, relative to the root of the classpath
+   * @param valueOf converts the property values to the values of the table
+   */
+  static <V> TagTable<V> load(String resource, String customResource, Function<String, V> valueOf) {
+    Map<String, V> entries = new LinkedHashMap<String, V>();
+    try {
+      URL bundled = TagTable.class.getResource(resource);
+      if (bundled == null) {
+        throw new IllegalStateException("Missing resource " + resource);
+      }
+      read(bundled, valueOf, entries);
+
+      ClassLoader classLoader = TagTable.class.getClassLoader();
+      Enumeration<URL> custom = classLoader == null ? ClassLoader.getSystemResources(customResource) : classLoader.getResources(customResource);
+      while (custom.hasMoreElements()) {
+        read(custom.nextElement(), valueOf, entries);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new TagTable<V>(entries);
+  }
+
+  private static <V> void read(URL url, Function<String, V> valueOf, Map<String, V> entries) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = url.openStream()) {
+      properties.load(in);
+    }
+    for (String tag : properties.stringPropertyNames()) {
+      String value = properties.getProperty(tag).trim();
+      try {
+        entries.put(normalize(tag), valueOf.apply(value));
+      }
+      catch (IllegalArgumentException e) {
+        throw new IllegalStateException("Invalid mapping of " + tag + " (" + value + ") in " + url, e);
+      }
+    }
+  }
+
+  /**
+   * @param tag the tag, in any case and possibly surrounded with whitespace
+   * @return the value the tag maps to, or null if it isn't in the table
+   */
+  @SuppressWarnings("unchecked")
+  V get(CharSequence tag) {
+    if (tag == null) {
+      return null;
+    }
+
+    int start = 0;
+    int end = tag.length();
+    while (start < end && Character.isWhitespace(tag.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(tag.charAt(end - 1))) {
+      end--;
+    }
+
+    int slot = hash(tag, start, end) & mask;
+    String candidate;
+    while ((candidate = tags[slot]) != null) {
+      if (matches(candidate, tag, start, end)) {
+        return (V) values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of tags in the table
+   */
+  int size() {
+    return size;
+  }
+
+  private static boolean matches(String candidate, CharSequence tag, int start, int end) {
+    if (candidate.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (candidate.charAt(i - start) != toUpperCase(tag.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(CharSequence tag, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + toUpperCase(tag.charAt(i));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static String normalize(String tag) {
+    int start = 0;
+    int end = tag.length();
+    while (start < end && Character.isWhitespace(tag.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(tag.charAt(end - 1))) {
+      end--;
+    }
+    StringBuilder normalized = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      normalized.append(toUpperCase(tag.charAt(i)));
+    }
+    return normalized.toString();
+  }
+
+  private static char toUpperCase(char c) {
+    if (c < 0x80) {
+      return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+    return Character.toUpperCase(c);
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.regex.Pattern;
+
+import org.gedcomx.common.ResourceReference;
+import org.gedcomx.common.URI;
+
+
+/**
+ * The constants the mappers use for every record: the URIs of the GEDCOM 5.5 citation template and its fields, and the
+ * patterns the values are checked against. URIs are immutable and are shared by all the objects that are mapped;
+ * {@link ResourceReference}s are not, so each object gets its own (see {@link #citationTemplate()}).
+ */
+final class Vocabulary {
+
+  static final URI CITATION_TEMPLATE = URI.create("gedcom5:citation-template");
+  static final URI CITATION_AUTHOR = URI.create("gedcom5:citation-template/author");
+  static final URI CITATION_CALL_NUMBER = URI.create("gedcom5:citation-template/call-number");
+  static final URI CITATION_DATE = URI.create("gedcom5:citation-template/date");
+  static final URI CITATION_PAGE = URI.create("gedcom5:citation-template/page");
+  static final URI CITATION_PUBLICATION_FACTS = URI.create("gedcom5:citation-template/publication-facts");
+  static final URI CITATION_TITLE = URI.create("gedcom5:citation-template/title");
+
+  static final URI TEMPLE = URI.create("gedcom:TEMP");
+  static final URI USER_REFERENCE_NUMBER = URI.create("USER_REFERENCE_NUMBER");
+
+  /**
+   * A telephone number in the canonical global format (e.g. <code>+1 (801) 555-1234</code>).
+   */
+  static final Pattern GLOBAL_TELEPHONE_NUMBER = Pattern.compile("^\\+[\\d \\.\\(\\)\\-/]+");
+
+  private Vocabulary() {
+  }
+
+  /**
+   * @return a new reference to the GEDCOM 5.5 citation template
+   */
+  static ResourceReference citationTemplate() {
+    return new ResourceReference(CITATION_TEMPLATE);
+  }
+}
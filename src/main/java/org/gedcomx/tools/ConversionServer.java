@@ -0,0 +1,195 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps a converter running so that files can be converted without starting a JVM for each of them: for small files,
+ * most of the time of a conversion is otherwise spent starting the JVM, loading the classes, introspecting the model for
+ * the serializers and compiling the code. The server listens on a port of the local host only, and converts the files
+ * with the options it was started with, on a pool of threads shared by all the clients; each thread keeps its own
+ * serializers from one file to the next.
+ *
+ * A client sends the path of each file to convert on a line of its own, optionally followed by a tab and the path of
+ * the output file (by default, the input file with a <code>.gedx</code> extension; GEDCOM X input files must be given
+ * one). Files with a <code>.gedx</code> extension are re-packaged as with <code>-ix</code>. For each line, the server
+ * answers with a line as soon as the file has been converted, in the order in which the conversions end:
+ * <code>OK &lt;input&gt; (&lt;milliseconds&gt; ms)</code> or <code>FAILED &lt;input&gt;: &lt;error&gt;</code>. The
+ * server closes a connection once the client has closed its side and all of its files have been converted.
+ *
+ * Any local process can connect to the port, so the server only reads and writes files under the root directory it was
+ * started with: relative paths are resolved against it, and a path that leads out of it (through <code>..</code> or a
+ * symbolic link) is refused.
+ */
+class ConversionServer {
+
+  private final Gedcom2Gedcomx converter;
+  private final int port;
+  private final int threads;
+  private final File root;
+
+  /**
+   * @param root the directory the files to convert and the output files must be in
+   */
+  ConversionServer(Gedcom2Gedcomx converter, int port, int threads, File root) throws IOException {
+    this.converter = converter;
+    this.port = port;
+    this.threads = Math.max(1, threads);
+    this.root = root.getCanonicalFile();
+  }
+
+  /**
+   * Accepts connections until the process is stopped.
+   */
+  void run() throws IOException {
+    try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      System.out.println(String.format("Listening on port %d with %d threads.", server.getLocalPort(), threads));
+      serve(server);
+    }
+  }
+
+  /**
+   * Accepts connections until the given server socket is closed.
+   */
+  void serve(ServerSocket server) throws IOException {
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    try {
+      while (true) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketException e) {
+          if (server.isClosed()) {
+            return;
+          }
+          throw e;
+        }
+        Thread client = new Thread(() -> handle(socket, workers), "gedcom2gedcomx-client-" + socket.getPort());
+        client.setDaemon(true);
+        client.start();
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  private void handle(Socket socket, ExecutorService workers) {
+    try (Socket client = socket;
+         BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+         Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)) {
+      PrintWriter out = new PrintWriter(writer);
+      List<Future<?>> pending = new ArrayList<>();
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        String request = line;
+        pending.add(workers.submit(() -> reply(out, convert(request))));
+      }
+      for (Future<?> job : pending) {
+        job.get();
+      }
+    } catch (IOException e) {
+      // the client went away; the files it sent are still converted
+    } catch (ExecutionException e) {
+      System.err.println("Failed to answer a client: " + e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the answer to a request
+   */
+  private String convert(String request) {
+    int tab = request.indexOf('\t');
+    String input = tab < 0 ? request.trim() : request.substring(0, tab).trim();
+    File inFile = resolve(input);
+    if (inFile == null) {
+      return String.format("FAILED %s: outside of the root directory of the server.", input);
+    }
+    String name = inFile.getName();
+    boolean gedxIn = name.toLowerCase().endsWith(".gedx");
+
+    File gedxOut;
+    if (tab >= 0) {
+      gedxOut = resolve(request.substring(tab + 1).trim());
+      if (gedxOut == null) {
+        return String.format("FAILED %s: the output file is outside of the root directory of the server.", input);
+      }
+    } else if (gedxIn) {
+      return String.format("FAILED %s: the output file of a GEDCOM X file must be given.", input);
+    } else {
+      int dot = name.lastIndexOf('.');
+      gedxOut = new File(inFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".gedx");
+    }
+    if (!inFile.isFile()) {
+      return String.format("FAILED %s: no such file.", input);
+    }
+
+    Gedcom2Gedcomx.ConversionJob job = new Gedcom2Gedcomx.ConversionJob(inFile, gedxOut);
+    converter.runJob(job, gedxIn);
+    if (job.failure != null) {
+      return String.format("FAILED %s: %s", input, job.failure);
+    }
+    return String.format("OK %s (%d ms)", input, TimeUnit.NANOSECONDS.toMillis(job.elapsedNanos));
+  }
+
+  /**
+   * @return the canonical file of the given path (relative to the root directory), or null if it isn't under the root
+   * directory
+   */
+  private File resolve(String path) {
+    File file = new File(path);
+    if (!file.isAbsolute()) {
+      file = new File(root, path);
+    }
+    try {
+      file = file.getCanonicalFile();
+    } catch (IOException e) {
+      return null;
+    }
+    return file.toPath().startsWith(root.toPath()) && !file.equals(root) ? file : null;
+  }
+
+  private static void reply(PrintWriter out, String answer) {
+    synchronized (out) {
+      out.println(answer);
+      out.flush();
+    }
+  }
+}
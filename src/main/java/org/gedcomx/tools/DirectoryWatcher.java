@@ -0,0 +1,300 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Watches a spool directory and converts the GEDCOM 5.5 files that are added to it or changed, until it is stopped.
+ * A file is converted once it has stopped changing for a while (so that a file that is still being copied isn't picked
+ * up), on a bounded pool of threads: when the pool is busy the watching thread converts the file itself, so that files
+ * are not queued up faster than they are converted. Each conversion is written to a temporary file that is then moved
+ * into place, so that a reader never sees a partial <code>.gedx</code> file.
+ *
+ * The size and modification time of each file that has been converted are recorded in a state file in the output
+ * directory, so that the files that haven't changed are not converted again when the watcher is restarted.
+ */
+class DirectoryWatcher {
+
+  static final String STATE_FILE_NAME = ".gedcom2gedcomx-state";
+
+  private final Gedcom2Gedcomx converter;
+  private final Path inputDirectory;
+  private final Path outputDirectory;
+  private final int threads;
+  private final long settleMillis;
+  private final Path stateFile;
+
+  // the size and modification time of the converted files (by name), as they were when their conversion started
+  private final Map<String, String> converted = new HashMap<>();
+  // the files that were seen to change but haven't settled yet, and how they were the last time they were checked
+  private final Map<String, Pending> pending = new HashMap<>();
+  // the files being converted
+  private final Set<String> converting = ConcurrentHashMap.newKeySet();
+  // the files whose conversion failed, and how they were then, so that they are not retried until they change
+  private final Map<String, String> failed = new ConcurrentHashMap<>();
+  private final AtomicInteger conversions = new AtomicInteger();
+  private volatile WatchService watchService;
+  private Writer state;
+
+  DirectoryWatcher(Gedcom2Gedcomx converter, File inputDirectory, File outputDirectory, int threads) {
+    this(converter, inputDirectory, outputDirectory, threads, 1000);
+  }
+
+  /**
+   * @param settleMillis how long a file must stay the same before it is converted
+   */
+  DirectoryWatcher(Gedcom2Gedcomx converter, File inputDirectory, File outputDirectory, int threads, long settleMillis) {
+    this.converter = converter;
+    this.inputDirectory = inputDirectory.toPath().toAbsolutePath();
+    this.outputDirectory = outputDirectory == null ? this.inputDirectory : outputDirectory.toPath().toAbsolutePath();
+    this.threads = Math.max(1, threads);
+    this.settleMillis = settleMillis;
+    this.stateFile = this.outputDirectory.resolve(STATE_FILE_NAME);
+  }
+
+  /**
+   * Converts the files that have been added or changed since the last run, then the files that are added or changed
+   * until {@link #stop()} is called.
+   */
+  void watch() throws IOException {
+    readState();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+    try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+      this.watchService = watcher;
+      inputDirectory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+      System.out.println("Watching " + inputDirectory + " for GEDCOM files.");
+      scan();
+
+      while (true) {
+        WatchKey key;
+        try {
+          key = watcher.poll(settleMillis / 2 + 1, TimeUnit.MILLISECONDS);
+        } catch (ClosedWatchServiceException e) {
+          return;
+        }
+        if (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              // events were lost: look at the whole directory again
+              scan();
+            } else {
+              Path name = (Path) event.context();
+              if (isGedcomFile(name)) {
+                pending.putIfAbsent(name.toString(), new Pending());
+              }
+            }
+          }
+          key.reset();
+        }
+        submitSettled(executor);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      synchronized (this) {
+        if (state != null) {
+          state.close();
+          state = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops watching once the conversions in progress are done.
+   */
+  void stop() throws IOException {
+    WatchService watcher = this.watchService;
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+
+  /**
+   * @return the number of conversions that have been run, whether they succeeded or not
+   */
+  int getConversions() {
+    return conversions.get();
+  }
+
+  private static boolean isGedcomFile(Path name) {
+    return name.toString().toLowerCase().endsWith(".ged");
+  }
+
+  private void scan() throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDirectory)) {
+      for (Path file : files) {
+        if (isGedcomFile(file.getFileName())) {
+          pending.putIfAbsent(file.getFileName().toString(), new Pending());
+        }
+      }
+    }
+  }
+
+  /**
+   * Submits the pending files that haven't changed since they were last checked (at least the settle time ago), and
+   * haven't been converted as they are now.
+   */
+  private void submitSettled(ThreadPoolExecutor executor) {
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<String, Pending>> entries = pending.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Pending> entry = entries.next();
+      String name = entry.getKey();
+      Pending file = entry.getValue();
+      if (now - file.checked < settleMillis || converting.contains(name)) {
+        continue;
+      }
+
+      String version = version(inputDirectory.resolve(name));
+      if (version == null) {
+        // the file is gone
+        entries.remove();
+      } else if (!version.equals(file.version)) {
+        file.version = version;
+        file.checked = now;
+      } else {
+        entries.remove();
+        if (!version.equals(getConverted(name)) && !version.equals(failed.get(name))) {
+          converting.add(name);
+          executor.execute(() -> convert(name, version));
+        }
+      }
+    }
+  }
+
+  private void convert(String name, String version) {
+    String baseName = name.substring(0, name.length() - ".ged".length());
+    Path gedxOut = outputDirectory.resolve(baseName + ".gedx");
+    Path temporary = outputDirectory.resolve("." + baseName + ".gedx.tmp");
+    try {
+      Gedcom2Gedcomx.ConversionJob job = new Gedcom2Gedcomx.ConversionJob(inputDirectory.resolve(name).toFile(), temporary.toFile());
+      converter.runJob(job, false);
+      conversions.incrementAndGet();
+      if (job.failure != null) {
+        Files.deleteIfExists(temporary);
+        failed.put(name, version);
+        System.out.println(String.format("FAILED %s: %s", name, job.failure));
+        return;
+      }
+
+      try {
+        Files.move(temporary, gedxOut, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, gedxOut, StandardCopyOption.REPLACE_EXISTING);
+      }
+      failed.remove(name);
+      setConverted(name, version);
+      System.out.println(String.format("OK     %s (%d ms)", name, TimeUnit.NANOSECONDS.toMillis(job.elapsedNanos)));
+    } catch (IOException e) {
+      failed.put(name, version);
+      System.out.println(String.format("FAILED %s: %s", name, e));
+    } finally {
+      converting.remove(name);
+    }
+  }
+
+  /**
+   * @return the size and modification time of a file, or null if it doesn't exist
+   */
+  private static String version(Path file) {
+    try {
+      return Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private synchronized String getConverted(String name) {
+    return converted.get(name);
+  }
+
+  private synchronized void setConverted(String name, String version) throws IOException {
+    converted.put(name, version);
+    state.write(name + "\t" + version + "\n");
+    state.flush();
+  }
+
+  /**
+   * Reads the state file, and writes it again without the lines that later ones replace, for the conversions of this
+   * run to be appended to.
+   */
+  private synchronized void readState() throws IOException {
+    if (Files.exists(stateFile)) {
+      try (BufferedReader in = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = in.readLine()) != null) {
+          int tab = line.indexOf('\t');
+          if (tab > 0) {
+            converted.put(line.substring(0, tab), line.substring(tab + 1));
+          }
+        }
+      }
+    }
+
+    Path temporary = outputDirectory.resolve(STATE_FILE_NAME + ".tmp");
+    try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, String> entry : converted.entrySet()) {
+        out.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+      }
+    }
+    Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING);
+    state = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * A file that changed, as it was when it was last checked.
+   */
+  private static final class Pending {
+    private String version;
+    private long checked = 0;
+  }
+}
@@ -15,23 +15,42 @@
  */
 package org.gedcomx.tools;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
 import java.util.jar.JarFile;
+import java.util.zip.Deflater;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.familysearch.platform.ordinances.Ordinance;
 import org.folg.gedcom.model.Gedcom;
-import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.conversion.ChunkedGedcomxConversionResult;
+import org.gedcomx.conversion.ConversionDiagnostics;
+import org.gedcomx.conversion.DefaultGedcomxConversionResult;
 import org.gedcomx.conversion.GedcomxConversionResult;
+import org.gedcomx.conversion.ParallelGedcomxOutputStream;
+import org.gedcomx.conversion.SmileSerialization;
+import org.gedcomx.conversion.StreamingGedcomxConversionResult;
 import org.gedcomx.conversion.gedcom.dq55.GedcomMapper;
 import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.gedcomx.conversion.gedcom.dq55.ParallelGedcomParser;
+import org.gedcomx.conversion.gedcom.dq55.RecordCache;
 import org.gedcomx.fileformat.GedcomxEntrySerializer;
 import org.gedcomx.fileformat.GedcomxFile;
 import org.gedcomx.fileformat.GedcomxFileEntry;
@@ -50,6 +69,8 @@ import org.xml.sax.SAXParseException;
  */
 public class Gedcom2Gedcomx {
 
+  private static final String DIAGNOSTICS_ENTRY_NAME = "diagnostics.json";
+
   @Option(name = "-i", aliases = {"--input"}, usage = "GEDCOM 5.5 input file")
   private File gedcomIn;
 
@@ -59,18 +80,68 @@ public class Gedcom2Gedcomx {
   @Option(name = "-o", aliases = {"--output"}, usage = "GEDCOM X output file")
   private File gedxOut;
 
+  @Option(name = "-cs", aliases = {"--chunk-size"}, usage = "Number of records in each entry of the chunks layout (default 1000).")
+  private int chunkSize = 1000;
+
+  @Option(name = "-cl", aliases = {"--compression-level"}, usage = "Compression level of the GEDCOM X output file, from 0 (entries stored, not compressed) to 9 (default: the standard level).")
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+  @Option(name = "-ct", aliases = {"--compression-threads"}, usage = "Number of threads used to compress the entries of each GEDCOM X output file (default 1).")
+  private int compressionThreads = 1;
+
+  @Option(name = "-d", aliases = {"--diagnostics"}, usage = "Add a " + DIAGNOSTICS_ENTRY_NAME + " entry summarizing the issues encountered during the conversion to the GEDCOM X output file.")
+  private boolean diagnostics;
+
+  @Option(name = "-f", aliases = {"--format"}, usage = "Format of the converted dataset: json (default), smile (binary JSON) or xml; xml can't be streamed into a single entry.")
+  private OutputFormat format = OutputFormat.JSON;
+
   @Option(name = "-fi", aliases = {"--filename-in-ids"}, usage = "Include the input filename in the person and relationship ids in the generated gedcomx")
   private boolean includeFilenameInIds;
 
+  @Option(name = "-ic", aliases = {"--incremental"}, usage = "Keep what each record was mapped to in a cache next to the output file (<output>.cache), and only map the records that changed the next time the file is converted; implies --streaming-input.")
+  private boolean incremental;
+
+  @Option(name = "-l", aliases = {"--layout"}, usage = "Layout of the converted dataset in the GEDCOM X file: single (one entry, default), records (an entry per record) or chunks (an entry per --chunk-size records of a kind).")
+  private OutputLayout layout = OutputLayout.SINGLE;
+
+  @Option(name = "-mt", aliases = {"--mapping-threads"}, usage = "Number of threads used to parse and map the records of each GEDCOM file (default 1).")
+  private int mappingThreads = 1;
+
   @Option(name = "-P", aliases = {"--pause"}, usage = "Pause before starting the conversion process (experimental, used for profiling)")
   private boolean pause;
 
+  @Option(name = "-rc", aliases = {"--raw-copy"}, usage = "Copy the entries of a GEDCOM X input file (-ix) as they are instead of reading and writing them again; with --format smile, JSON entries are transcoded to Smile.")
+  private boolean rawCopy = false;
+
+  @Option(name = "-S", aliases = {"--server"}, metaVar = "PORT", usage = "Keep running and convert the files whose paths are sent, one per line, to the given port of the local host (see ConversionServer).")
+  private int serverPort = -1;
+
+  @Option(name = "-SR", aliases = {"--server-root"}, metaVar = "DIR", usage = "Directory the files sent to the server (--server) must be in; relative paths are resolved against it (default: the current directory).")
+  private File serverRoot = new File(".");
+
+  @Option(name = "-s", aliases = {"--streaming"}, usage = "Write the converted records to the output as they are mapped instead of building the whole GEDCOM X document in memory.")
+  private boolean streaming;
+
+  @Option(name = "-si", aliases = {"--streaming-input"}, usage = "Read and map the GEDCOM 5.5 file one record at a time instead of parsing the whole file before mapping it.")
+  private boolean streamingInput;
+
+  @Option(name = "-t", aliases = {"--threads"}, usage = "Number of files to convert concurrently when the input is a directory (default 1).")
+  private int threads = 1;
+
   @Option(name = "-v", aliases = {"--verbose"}, usage = "Output all the warnings that are generated during the conversion.")
   private boolean verbose;
 
   @Option(name = "-vv", aliases = {"--very-verbose"}, usage = "Output all the warnings and informational messages that are generated during the conversion.")
   private boolean vverbose;
 
+  @Option(name = "-w", aliases = {"--watch"}, usage = "Keep watching the input directory and convert the GEDCOM 5.5 files that are added to it or changed, into the output directory if one is given.")
+  private boolean watch;
+
+  // serializers are expensive to create (they introspect the whole model) and not all of them are thread-safe, so each
+  // thread creates its own once and keeps it for all the files it converts
+  private final ThreadLocal<GedcomxEntrySerializer> serializers = ThreadLocal.withInitial(() -> format.newSerializer(Ordinance.class));
+  private final ThreadLocal<ObjectMapper> streamingMappers = ThreadLocal.withInitial(() -> format.newStreamingMapper(Ordinance.class));
+
   public Gedcom2Gedcomx() {
   }
 
@@ -90,6 +161,12 @@ public class Gedcom2Gedcomx {
 
     List<File> fileList = new ArrayList<>();
 
+    if (serverPort >= 0 && (gedcomIn != null || gedcomxIn != null)) {
+      System.err.println("The files to convert are sent to the server (--server), not given with -i or -ix.");
+      parser.printUsage(System.err);
+      return;
+    }
+
     final boolean gedxIn;
     final String scanPattern;
     if (gedcomxIn != null) {
@@ -99,12 +176,54 @@ public class Gedcom2Gedcomx {
     } else if (gedcomIn != null) {
       gedxIn = false;
       scanPattern = "(?i).*\\.ged$";
+    } else if (serverPort >= 0) {
+      // the files are sent to the server
+      gedxIn = false;
+      scanPattern = null;
     } else {
       System.err.println("Input file(s) must be specified.");
       parser.printUsage(System.err);
       return;
     }
 
+    if (streaming && format == OutputFormat.XML && layout == OutputLayout.SINGLE) {
+      System.err.println("The " + format + " format can't be streamed into a single entry.");
+      parser.printUsage(System.err);
+      return;
+    }
+
+    if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+      System.err.println("The compression level must be between 0 and 9.");
+      parser.printUsage(System.err);
+      return;
+    }
+
+    if (layout == OutputLayout.CHUNKS && chunkSize < 1) {
+      System.err.println("The chunk size must be positive.");
+      parser.printUsage(System.err);
+      return;
+    }
+
+    if (serverPort >= 0) {
+      if (!serverRoot.isDirectory()) {
+        System.err.println("The root directory of the server must be a directory: " + serverRoot);
+        parser.printUsage(System.err);
+        return;
+      }
+      new ConversionServer(this, serverPort, threads, serverRoot).run();
+      return;
+    }
+
+    if (watch) {
+      if (gedxIn || !gedcomIn.isDirectory()) {
+        System.err.println("Only a directory of GEDCOM 5.5 files (-i) can be watched.");
+        parser.printUsage(System.err);
+        return;
+      }
+      new DirectoryWatcher(this, gedcomIn, gedxOut != null && gedxOut.isDirectory() ? gedxOut : null, threads).watch();
+      return;
+    }
+
     boolean gedcomInIsDirectory;
     if (gedcomIn.isDirectory() && gedcomIn.canRead() && gedcomIn.canWrite() && gedcomIn.canExecute()) {
       fileList.addAll(Arrays.asList(gedcomIn.listFiles(pathname -> pathname.getAbsolutePath().matches(scanPattern))));
@@ -119,6 +238,7 @@ public class Gedcom2Gedcomx {
       gedxOutIsDirectory = true;
     }
 
+    List<ConversionJob> jobs = new ArrayList<>(fileList.size());
     for (File inFile : fileList) {
       String name = inFile.getName();
       int nameLength = name.length();
@@ -142,26 +262,108 @@ public class Gedcom2Gedcomx {
         derivedGedxOut = gedxOut;
       }
 
+      jobs.add(new ConversionJob(inFile, derivedGedxOut));
+    }
+
+    if (threads > 1) {
+      convertInParallel(jobs, gedxIn);
+      return;
+    }
+
+    for (ConversionJob job : jobs) {
       OutputStream outputStream;
       try {
-        outputStream = new FileOutputStream(derivedGedxOut);
+        outputStream = new FileOutputStream(job.gedxOut);
       } catch (IOException ex) {
         outputStream = null;
-        System.err.println("Failed to create the output file: " + derivedGedxOut);
+        System.err.println("Failed to create the output file: " + job.gedxOut);
       }
 
       if (gedxIn) {
-        convertXFile(inFile, outputStream);
+        convertXFile(job.inFile, outputStream);
       } else {
-        MappingConfig mappingConfig = new MappingConfig(inFile.getName(), includeFilenameInIds);
-        convert55File(inFile, outputStream, mappingConfig);
+        MappingConfig mappingConfig = new MappingConfig(job.inFile.getName(), includeFilenameInIds);
+        mappingConfig.setParallelism(mappingThreads);
+        convert55File(job.inFile, outputStream, mappingConfig, incremental ? new File(job.gedxOut.getPath() + ".cache") : null);
+      }
+    }
+  }
+
+  /**
+   * Converts the given files on a bounded pool of worker threads. Each file gets its own mapping configuration,
+   * mapper and output stream. A failure converting one file does not stop the conversion of the others; a summary
+   * of the per-file outcome and the overall throughput is printed once all the files have been processed.
+   */
+  private void convertInParallel(List<ConversionJob> jobs, boolean gedxIn) {
+    // the queue is bounded so that a large directory doesn't queue up every job at once; when the queue is full the
+    // submitting thread runs the job itself, which throttles submission to the rate at which the workers keep up
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    long start = System.nanoTime();
+    for (ConversionJob job : jobs) {
+      executor.execute(() -> runJob(job, gedxIn));
+    }
+
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // keep waiting; the jobs have no time limit
       }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
     }
+    long elapsedNanos = System.nanoTime() - start;
+
+    printSummary(jobs, elapsedNanos);
+  }
+
+  void runJob(ConversionJob job, boolean gedxIn) {
+    long start = System.nanoTime();
+    try (OutputStream outputStream = new FileOutputStream(job.gedxOut)) {
+      if (gedxIn) {
+        convertXFile(job.inFile, outputStream);
+      } else {
+        MappingConfig mappingConfig = new MappingConfig(job.inFile.getName(), includeFilenameInIds);
+        mappingConfig.setParallelism(mappingThreads);
+        convert55File(job.inFile, outputStream, mappingConfig, incremental ? new File(job.gedxOut.getPath() + ".cache") : null);
+      }
+    } catch (Throwable e) {
+      // record anything that goes wrong (including errors such as running out of memory on one huge file) so that
+      // it is reported against that file instead of silently killing the worker thread
+      job.failure = e;
+    } finally {
+      job.elapsedNanos = System.nanoTime() - start;
+    }
+  }
+
+  private void printSummary(List<ConversionJob> jobs, long elapsedNanos) {
+    int failed = 0;
+    long bytesIn = 0;
+    for (ConversionJob job : jobs) {
+      bytesIn += job.inFile.length();
+      if (job.failure == null) {
+        System.out.println(String.format("OK     %s (%d ms)", job.inFile.getName(), TimeUnit.NANOSECONDS.toMillis(job.elapsedNanos)));
+      } else {
+        failed++;
+        System.out.println(String.format("FAILED %s: %s", job.inFile.getName(), job.failure));
+      }
+    }
+
+    double seconds = elapsedNanos / 1e9;
+    System.out.println(String.format("Converted %d of %d file(s) (%d failed) in %.2f s with %d threads: %.1f files/s, %.2f MB/s.",
+      jobs.size() - failed, jobs.size(), failed, seconds, threads, jobs.size() / seconds, bytesIn / 1048576.0 / seconds));
   }
 
   private void convertXFile(File inFile, OutputStream outputStream) throws IOException {
+    if (rawCopy) {
+      copyXFile(inFile, outputStream);
+      return;
+    }
+
     GedcomxFile gxFile = new GedcomxFile(new JarFile(inFile));
-    GedcomxOutputStream out = new GedcomxOutputStream(outputStream);
+    GedcomxOutputStream out = newOutputStream(outputStream, new JacksonJsonSerialization());
     Map<String, String> attributes = gxFile.getAttributes();
     for (Map.Entry<String, String> attribute : attributes.entrySet()) {
       out.addAttribute(attribute.getKey(), attribute.getValue());
@@ -181,29 +383,162 @@ public class Gedcom2Gedcomx {
     out.close();
   }
 
-  private void convert55File(File inFile, OutputStream outputStream, MappingConfig mappingConfig) throws SAXParseException, IOException {
-    ModelParser modelParser = new ModelParser();
-    Gedcom gedcom = modelParser.parseGedcom(inFile);
-    gedcom.createIndexes();
+  /**
+   * Re-packages a GEDCOM X file: the bytes of its entries are streamed to the new file untouched (JSON entries are
+   * transcoded token by token if the output format is Smile), and only the manifest is written again.
+   */
+  private void copyXFile(File inFile, OutputStream outputStream) throws IOException {
+    boolean toSmile = format == OutputFormat.SMILE;
+    GedcomxFile gxFile = new GedcomxFile(new JarFile(inFile));
+    try {
+      GedcomxOutputStream out = newOutputStream(outputStream, format.newSerializer());
+      Map<String, String> renamed = new HashMap<String, String>();
+      for (GedcomxFileEntry entry : gxFile.getEntries()) {
+        String name = entry.getJarEntry().getName();
+        if (toSmile && GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE.equals(entry.getContentType()) && name.endsWith(".json")) {
+          renamed.put(name, name.substring(0, name.length() - ".json".length()) + ".smile");
+        }
+      }
+
+      for (Map.Entry<String, String> attribute : gxFile.getAttributes().entrySet()) {
+        String value = attribute.getValue();
+        int fragment = value.indexOf('#');
+        if (fragment > 0 && renamed.containsKey(value.substring(0, fragment))) {
+          value = renamed.get(value.substring(0, fragment)) + value.substring(fragment);
+        }
+        out.addAttribute(attribute.getKey(), value);
+      }
+
+      for (GedcomxFileEntry entry : gxFile.getEntries()) {
+        String name = entry.getJarEntry().getName();
+        if (entry.getJarEntry().isDirectory() || name.endsWith("MANIFEST.MF")) {
+          continue;
+        }
+        String contentType = entry.getContentType();
+        if (contentType == null) {
+          contentType = GedcomxConstants.GEDCOMX_XML_MEDIA_TYPE;
+        }
+        Map<String, String> attributes = entry.getAttributes();
+        try (InputStream in = gxFile.getResourceStream(entry)) {
+          if (renamed.containsKey(name)) {
+            attributes.remove(Attributes.Name.CONTENT_TYPE.toString());
+            try (JsonParser parser = new JsonFactory().createParser(in)) {
+              out.addResource(SmileSerialization.SMILE_MEDIA_TYPE, renamed.get(name), parser, null, attributes);
+            }
+          } else {
+            out.addResource(contentType, name, in, null, attributes);
+          }
+        }
+      }
+
+      out.close();
+    } finally {
+      gxFile.close();
+    }
+  }
+
+  // package-private for the benchmarks
+  void convert55File(File inFile, OutputStream outputStream, MappingConfig mappingConfig) throws SAXParseException, IOException {
+    convert55File(inFile, outputStream, mappingConfig, null);
+  }
+
+  /**
+   * @param cacheFile the record cache to convert the file incrementally with (see {@link RecordCache}), if any
+   */
+  void convert55File(File inFile, OutputStream outputStream, MappingConfig mappingConfig, File cacheFile) throws SAXParseException, IOException {
+    Gedcom gedcom = null;
+    if (!streamingInput && cacheFile == null) {
+      ParallelGedcomParser parser = new ParallelGedcomParser(mappingConfig.getParallelism());
+      gedcom = parser.parseGedcom(inFile);
+      gedcom.createIndexes();
+    }
 
     if (outputStream != null) {
-      GedcomMapper mapper = new GedcomMapper(mappingConfig);
-      GedcomxEntrySerializer serializer;
-
-      String outputFileName = "tree.json";
-      serializer = new JacksonJsonSerialization(Ordinance.class);
-      GedcomxConversionResult result = mapper.toGedcomx(gedcom);
-      GedcomxOutputStream output = new GedcomxOutputStream(outputStream, serializer);
-
-      output.addAttribute("User-Agent", "Gedcom To Gedcomx Java Conversion Utility/1.0");
-      output.addAttribute("X-DC-conformsTo", "http://gedcomx.org/file/v1");
-      output.addAttribute("X-DC-created", GedcomxTimeStampUtil.formatAsXmlUTC(new Date()));
-      if (result.getDatasetContributor() != null && result.getDatasetContributor().getId() != null) {
-        output.addAttribute("X-DC-creator", outputFileName + "#" + result.getDatasetContributor().getId());
+      try (RecordCache cache = cacheFile != null ? new RecordCache(cacheFile) : null) {
+        write(inFile, outputStream, mappingConfig, gedcom, cache);
+        if (cache != null) {
+          // only once the output is complete, so that a failed conversion doesn't lose the records of the last one
+          cache.commit();
+        }
       }
+    }
+  }
+
+  private void write(File inFile, OutputStream outputStream, MappingConfig mappingConfig, Gedcom gedcom, RecordCache cache) throws SAXParseException, IOException {
+    GedcomMapper mapper = new GedcomMapper(mappingConfig);
+    GedcomxEntrySerializer serializer;
+
+    String outputFileName = format.getEntryName();
+    serializer = serializers.get();
+    GedcomxOutputStream output = newOutputStream(outputStream, serializer);
+    GedcomxConversionResult result;
+    if (layout != OutputLayout.SINGLE) {
+      int size = layout == OutputLayout.RECORDS ? 1 : chunkSize;
+      try (ChunkedGedcomxConversionResult chunkedResult = new ChunkedGedcomxConversionResult(output, format.getContentType(), outputFileName, size)) {
+        result = map(mapper, inFile, gedcom, cache, chunkedResult);
+      }
+    } else if (streaming) {
+      ObjectMapper objectMapper = streamingMappers.get();
+      try (StreamingGedcomxConversionResult streamingResult = new StreamingGedcomxConversionResult(output, outputFileName, format.getContentType(), objectMapper, null)) {
+        result = map(mapper, inFile, gedcom, cache, streamingResult);
+      }
+    } else {
+      result = map(mapper, inFile, gedcom, cache, new DefaultGedcomxConversionResult());
+    }
+
+    output.addAttribute("User-Agent", "Gedcom To Gedcomx Java Conversion Utility/1.0");
+    output.addAttribute("X-DC-conformsTo", "http://gedcomx.org/file/v1");
+    output.addAttribute("X-DC-created", GedcomxTimeStampUtil.formatAsXmlUTC(new Date()));
+    if (result.getDatasetContributor() != null && result.getDatasetContributor().getId() != null) {
+      output.addAttribute("X-DC-creator", outputFileName + "#" + result.getDatasetContributor().getId());
+    }
+
+    if (result.getDataset() != null) {
+      output.addResource(format.getContentType(), outputFileName, result.getDataset(), null);
+    }
+    if (diagnostics && result.getDiagnostics() != null) {
+      addDiagnostics(output, result.getDiagnostics());
+    }
+    output.close();
+  }
+
+  /**
+   * @return the stock output stream, or one that compresses on several threads or at another level if asked to
+   */
+  private GedcomxOutputStream newOutputStream(OutputStream outputStream, GedcomxEntrySerializer serializer) throws IOException {
+    if (compressionThreads <= 1 && compressionLevel == Deflater.DEFAULT_COMPRESSION) {
+      return new GedcomxOutputStream(outputStream, serializer);
+    }
+    return new ParallelGedcomxOutputStream(outputStream, serializer, compressionThreads, compressionLevel);
+  }
+
+  /**
+   * Maps the parsed file, or the file one record at a time if it hasn't been parsed (with the record cache, if any).
+   */
+  private static GedcomxConversionResult map(GedcomMapper mapper, File inFile, Gedcom gedcom, RecordCache cache, GedcomxConversionResult result) throws SAXParseException, IOException {
+    if (gedcom != null) {
+      return mapper.toGedcomx(gedcom, result);
+    }
+    return cache != null ? mapper.toGedcomx(inFile, result, cache) : mapper.toGedcomx(inFile, result);
+  }
+
+  private static void addDiagnostics(GedcomxOutputStream output, ConversionDiagnostics diagnostics) throws IOException {
+    byte[] json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsBytes(diagnostics);
+    output.addResource("application/json", DIAGNOSTICS_ENTRY_NAME, new ByteArrayInputStream(json), new Date(), null);
+  }
 
-      output.addResource(outputFileName, result.getDataset(), null);
-      output.close();
+  /**
+   * A single input file, where its conversion is written, and how the conversion went.
+   */
+  static final class ConversionJob {
+    final File inFile;
+    final File gedxOut;
+    volatile Throwable failure;
+    volatile long elapsedNanos;
+
+    ConversionJob(File inFile, File gedxOut) {
+      this.inFile = inFile;
+      this.gedxOut = gedxOut;
     }
   }
 
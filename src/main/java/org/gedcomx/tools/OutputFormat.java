@@ -0,0 +1,83 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.gedcomx.conversion.SmileSerialization;
+import org.gedcomx.fileformat.GedcomxEntrySerializer;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.fileformat.JaxbXmlSerialization;
+import org.gedcomx.rt.GedcomxConstants;
+
+
+/**
+ * The formats the converted dataset can be written in.
+ */
+public enum OutputFormat {
+
+  JSON("tree.json", GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE),
+
+  /**
+   * Smile, the binary encoding of JSON (see {@link SmileSerialization}).
+   */
+  SMILE("tree.smile", SmileSerialization.SMILE_MEDIA_TYPE),
+
+  XML("tree.xml", GedcomxConstants.GEDCOMX_XML_MEDIA_TYPE);
+
+  private final String entryName;
+  private final String contentType;
+
+  OutputFormat(String entryName, String contentType) {
+    this.entryName = entryName;
+    this.contentType = contentType;
+  }
+
+  /**
+   * @return the name of the entry of the dataset in the GEDCOM X file
+   */
+  public String getEntryName() {
+    return entryName;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  GedcomxEntrySerializer newSerializer(Class<?>... extensionClasses) {
+    switch (this) {
+      case SMILE:
+        return new SmileSerialization(extensionClasses);
+      case XML:
+        return new JaxbXmlSerialization(extensionClasses);
+      default:
+        return new JacksonJsonSerialization(extensionClasses);
+    }
+  }
+
+  /**
+   * @return the object mapper that writes the objects of a streamed dataset, or null if the format can't be streamed
+   */
+  ObjectMapper newStreamingMapper(Class<?>... extensionClasses) {
+    switch (this) {
+      case SMILE:
+        return SmileSerialization.createObjectMapper(extensionClasses);
+      case XML:
+        return null;
+      default:
+        return JacksonJsonSerialization.createObjectMapper(false, extensionClasses);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.tools;
+
+
+/**
+ * How the converted dataset is laid out in the entries of the GEDCOM X file.
+ */
+public enum OutputLayout {
+
+  /**
+   * The whole dataset in a single entry.
+   */
+  SINGLE,
+
+  /**
+   * An entry for each person, relationship, source description and agent (see
+   * {@link org.gedcomx.conversion.ChunkedGedcomxConversionResult}).
+   */
+  RECORDS,
+
+  /**
+   * An entry for each chunk of a fixed number of persons, relationships, source descriptions or agents (see
+   * {@link org.gedcomx.conversion.ChunkedGedcomxConversionResult}).
+   */
+  CHUNKS
+}
@@ -0,0 +1,625 @@
+/**
+ * Copyright 2012 Intellectual Reserve, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gedcomx.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+
+/**
+ * Generates a synthetic GEDCOM 5.5 file of any size for load and scale testing.
+ *
+ * The output is determined by the seed and the settings: the same seed and settings always produce the same file. The
+ * persons form a family tree over several generations: children of earlier families marry into later ones, take the
+ * surname of their father and are born after their parents, between 1650 and the year the file is dated (nobody is
+ * born or has an event after it, and persons born too late to have children before it stay unmarried). The ratios of facts, citations (referencing a source record
+ * or inline), notes (inline or referencing a note record), extension tags and bad data (unparseable dates, unknown tags,
+ * dangling references, ...) can be tuned.
+ *
+ * The structure of the tree is planned in a few arrays indexed by person (about 12 bytes per person) and the records are
+ * written as they are generated.
+ */
+public class SyntheticGedcomGenerator {
+
+  private static final String[] MALE_NAMES = {
+    "John", "William", "James", "George", "Charles", "Thomas", "Joseph", "Henry", "Samuel", "David", "Peter", "Johannes",
+    "Pierre", "Jan", "Hans", "Carl", "Giovanni", "José", "Lars", "Ole"
+  };
+  private static final String[] FEMALE_NAMES = {
+    "Mary", "Elizabeth", "Sarah", "Margaret", "Anna", "Catherine", "Jane", "Ann", "Emma", "Alice", "Maria", "Johanna",
+    "Marie", "Grietje", "Karin", "Ingrid", "Giulia", "Carmen", "Kirsten", "Zoë"
+  };
+  private static final String[] SURNAMES = {
+    "Smith", "Johnson", "Brown", "Taylor", "Miller", "Wilson", "Moore", "Anderson", "Thomas", "Jackson", "White", "Harris",
+    "Martin", "Thompson", "Young", "Allen", "King", "Wright", "Scott", "Green", "Baker", "Adams", "Nelson", "Hill", "Campbell",
+    "Mitchell", "Roberts", "Carter", "Phillips", "Evans", "Turner", "Torres", "Parker", "Collins", "Edwards", "Stewart",
+    "Müller", "Schmidt", "Schneider", "Fischer", "de Vries", "van den Berg", "Jansen", "Dubois", "Lefèvre", "Rossi",
+    "Bianchi", "García", "Fernández", "Hansen", "Johansson", "Nielsen", "O'Brien", "MacDonald"
+  };
+  private static final String[] PLACES = {
+    "Boston, Suffolk, Massachusetts, United States", "Salt Lake City, Salt Lake, Utah, United States",
+    "Philadelphia, Philadelphia, Pennsylvania, United States", "Richmond, Virginia, United States",
+    "London, Middlesex, England", "Manchester, Lancashire, England", "Edinburgh, Midlothian, Scotland",
+    "Dublin, Ireland", "Amsterdam, Noord-Holland, Netherlands", "Antwerpen, Belgium", "Paris, Seine, France",
+    "Hamburg, Germany", "München, Bayern, Germany", "Oslo, Norway", "Stockholm, Sweden", "København, Denmark",
+    "Roma, Lazio, Italy", "Sevilla, Andalucía, Spain", "Toronto, Ontario, Canada", "Sydney, New South Wales, Australia"
+  };
+  private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+  private static final String[] OCCUPATIONS = {"Farmer", "Laborer", "Carpenter", "Blacksmith", "Merchant", "Teacher", "Miner", "Weaver", "Clerk", "Sailor"};
+  private static final String[] INDIVIDUAL_EVENTS = {"CHR", "BAPM", "RESI", "OCCU", "EDUC", "CENS", "IMMI", "EMIG", "NATU", "RELI", "GRAD", "RETI", "PROB", "WILL"};
+  private static final String[] DATE_QUALIFIERS = {"", "", "", "ABT ", "BEF ", "AFT ", "EST "};
+  private static final String[] PEDIGREES = {"adopted", "foster", "sealing"};
+
+  /**
+   * The year before the one the file is dated; nothing happens after it.
+   */
+  private static final int LAST_YEAR = 2019;
+  private static final int FIRST_BIRTH_YEAR = 1650;
+  private static final int MIN_PARENT_AGE = 18;
+
+  @Option(name = "-o", aliases = {"--output"}, usage = "The GEDCOM 5.5 file to write (default: standard output).")
+  private File output;
+
+  @Option(name = "-seed", aliases = {"--seed"}, usage = "The seed of the generator (default 1).")
+  private long seed = 1;
+
+  @Option(name = "-n", aliases = {"--persons"}, usage = "The number of persons (default 1000).")
+  private int persons = 1000;
+
+  @Option(name = "--children-per-family", usage = "The average number of children per family (default 2.5).")
+  private double childrenPerFamily = 2.5;
+
+  @Option(name = "--marriage-rate", usage = "The probability that a spouse is a child of an earlier family rather than a new person (default 0.8).")
+  private double marriageRate = 0.8;
+
+  @Option(name = "--facts-per-person", usage = "The average number of events and attributes per person besides birth and death (default 3).")
+  private double factsPerPerson = 3;
+
+  @Option(name = "--citations-per-fact", usage = "The average number of source citations per fact (default 0.5).")
+  private double citationsPerFact = 0.5;
+
+  @Option(name = "--inline-citations", usage = "The fraction of the source citations that are inline rather than referencing a source record (default 0.2).")
+  private double inlineCitations = 0.2;
+
+  @Option(name = "--sources", usage = "The number of source records (default: one per 50 persons).")
+  private int sources = -1;
+
+  @Option(name = "--notes", usage = "The probability that a record has a note (default 0.1).")
+  private double notes = 0.1;
+
+  @Option(name = "--referenced-notes", usage = "The fraction of the notes that reference a note record rather than being inline (default 0.5).")
+  private double referencedNotes = 0.5;
+
+  @Option(name = "--extensions", usage = "The probability that a record has an extension tag (default 0.05).")
+  private double extensions = 0.05;
+
+  @Option(name = "--bad-data", usage = "The probability that a record has bad data, such as an unparseable date or a dangling reference (default 0.01).")
+  private double badData = 0.01;
+
+  public SyntheticGedcomGenerator() {
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public void setPersons(int persons) {
+    this.persons = persons;
+  }
+
+  public void setChildrenPerFamily(double childrenPerFamily) {
+    this.childrenPerFamily = childrenPerFamily;
+  }
+
+  public void setMarriageRate(double marriageRate) {
+    this.marriageRate = marriageRate;
+  }
+
+  public void setFactsPerPerson(double factsPerPerson) {
+    this.factsPerPerson = factsPerPerson;
+  }
+
+  public void setCitationsPerFact(double citationsPerFact) {
+    this.citationsPerFact = citationsPerFact;
+  }
+
+  public void setInlineCitations(double inlineCitations) {
+    this.inlineCitations = inlineCitations;
+  }
+
+  /**
+   * @param sources the number of source records, or a negative number for one per 50 persons
+   */
+  public void setSources(int sources) {
+    this.sources = sources;
+  }
+
+  public void setNotes(double notes) {
+    this.notes = notes;
+  }
+
+  public void setReferencedNotes(double referencedNotes) {
+    this.referencedNotes = referencedNotes;
+  }
+
+  public void setExtensions(double extensions) {
+    this.extensions = extensions;
+  }
+
+  public void setBadData(double badData) {
+    this.badData = badData;
+  }
+
+  /**
+   * Writes the file to the given file.
+   */
+  public void write(File file) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      write(out);
+    }
+  }
+
+  /**
+   * Writes the file, encoded in UTF-8, to the given stream. The stream is flushed but not closed.
+   *
+   * @throws IllegalArgumentException if the settings are not valid
+   */
+  public void write(OutputStream out) throws IOException {
+    String error = checkSettings();
+    if (error != null) {
+      throw new IllegalArgumentException(error);
+    }
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    new Generation().write(writer);
+    writer.flush();
+  }
+
+  /**
+   * @return why the settings are not valid, or null if they are
+   */
+  String checkSettings() {
+    if (persons < 0) {
+      return "The number of persons can't be negative.";
+    }
+    if (!(childrenPerFamily >= 0) || !(factsPerPerson >= 0) || !(citationsPerFact >= 0)) {
+      return "The averages of children, facts and citations can't be negative.";
+    }
+    for (double probability : new double[]{marriageRate, inlineCitations, notes, referencedNotes, extensions, badData}) {
+      if (!(probability >= 0 && probability <= 1)) {
+        return "The rates, fractions and probabilities must be between 0 and 1.";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The state of a single run of the generator.
+   */
+  private final class Generation {
+    private final Random plan = new Random(seed);
+    private final Random content = new Random(seed * 0x5DEECE66DL + 11);
+
+    // the tree, indexed by person (famc/fams are -1 if there is no such family)
+    private final int[] famc = new int[persons];
+    private final int[] fams = new int[persons];
+    private final short[] surname = new short[persons];
+    private final short[] birthYear = new short[persons];
+    private final boolean[] male = new boolean[persons];
+    private int personCount = 0;
+
+    // the families, indexed by family; the children of a family are consecutive persons
+    private int[] husbands = new int[Math.max(16, persons / 2)];
+    private int[] wives = new int[husbands.length];
+    private int[] firstChild = new int[husbands.length];
+    private int[] childCount = new int[husbands.length];
+    private int familyCount = 0;
+
+    private final int sourceCount = sources >= 0 ? sources : persons / 50 + 1;
+    private final int repositoryCount = sourceCount / 20 + 1;
+    private int noteCount = 0;
+
+    private void write(Writer writer) throws IOException {
+      planTree();
+
+      Lines out = new Lines(writer);
+      out.line(0, null, "HEAD", null);
+      out.line(1, null, "SOUR", "SYNTHETIC");
+      out.line(2, null, "NAME", "Synthetic GEDCOM generator");
+      out.line(1, null, "DATE", "1 JAN " + (LAST_YEAR + 1));
+      out.line(1, null, "SUBM", "@SUB1@");
+      out.line(1, null, "GEDC", null);
+      out.line(2, null, "VERS", "5.5");
+      out.line(2, null, "FORM", "LINEAGE-LINKED");
+      out.line(1, null, "CHAR", "UTF-8");
+      out.line(1, null, "LANG", "English");
+
+      out.line(0, "@SUB1@", "SUBM", null);
+      out.line(1, null, "NAME", "Synthetic Submitter");
+
+      for (int person = 0; person < personCount; person++) {
+        writePerson(out, person);
+      }
+      for (int family = 0; family < familyCount; family++) {
+        writeFamily(out, family);
+      }
+      for (int source = 0; source < sourceCount; source++) {
+        writeSource(out, source);
+      }
+      for (int repository = 0; repository < repositoryCount; repository++) {
+        out.line(0, "@R" + (repository + 1) + "@", "REPO", null);
+        out.line(1, null, "NAME", pick(PLACES).split(",")[0] + " Archives");
+        out.line(1, null, "ADDR", pick(PLACES));
+      }
+      for (int note = 0; note < noteCount; note++) {
+        out.line(0, "@N" + (note + 1) + "@", "NOTE", "Research note " + (note + 1) + ": " + sentence());
+      }
+      out.line(0, null, "TRLR", null);
+    }
+
+    /**
+     * Creates the families one after the other, marrying the children of earlier families where possible, until there
+     * are as many persons as requested.
+     */
+    private void planTree() {
+      IntQueue unmarriedMen = new IntQueue(persons);
+      IntQueue unmarriedWomen = new IntQueue(persons);
+      while (personCount < persons) {
+        int family = newFamily();
+        int husband = spouse(unmarriedMen, true);
+        int wife = spouse(unmarriedWomen, false);
+        husbands[family] = husband;
+        wives[family] = wife;
+        if (husband >= 0) {
+          fams[husband] = family;
+        }
+        if (wife >= 0) {
+          fams[wife] = family;
+        }
+
+        int parentYear = Math.max(husband >= 0 ? birthYear[husband] : 0, wife >= 0 ? birthYear[wife] : 0);
+        short familySurname = husband >= 0 ? surname[husband] : (short) plan.nextInt(SURNAMES.length);
+        int children = Math.min(persons - personCount, (int) Math.round(plan.nextDouble() * 2 * childrenPerFamily));
+        firstChild[family] = personCount;
+        childCount[family] = children;
+        for (int i = 0; i < children; i++) {
+          int child = newPerson(plan.nextBoolean(), familySurname, Math.min(LAST_YEAR, parentYear + MIN_PARENT_AGE + plan.nextInt(25)));
+          famc[child] = family;
+          (male[child] ? unmarriedMen : unmarriedWomen).add(child);
+        }
+      }
+    }
+
+    private int spouse(IntQueue unmarried, boolean isMale) {
+      // the persons born too late to have children stay unmarried
+      while (!unmarried.isEmpty() && birthYear[unmarried.peek()] > LAST_YEAR - MIN_PARENT_AGE) {
+        unmarried.remove();
+      }
+      if (!unmarried.isEmpty() && plan.nextDouble() < marriageRate) {
+        return unmarried.remove();
+      }
+      if (personCount >= persons) {
+        return -1;
+      }
+      return newPerson(isMale, (short) plan.nextInt(SURNAMES.length), FIRST_BIRTH_YEAR + plan.nextInt(300));
+    }
+
+    private int newPerson(boolean isMale, short surnameIndex, int year) {
+      int person = personCount++;
+      male[person] = isMale;
+      surname[person] = surnameIndex;
+      birthYear[person] = (short) year;
+      famc[person] = -1;
+      fams[person] = -1;
+      return person;
+    }
+
+    private int newFamily() {
+      if (familyCount == husbands.length) {
+        int capacity = familyCount * 2;
+        husbands = Arrays.copyOf(husbands, capacity);
+        wives = Arrays.copyOf(wives, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+      }
+      return familyCount++;
+    }
+
+    private void writePerson(Lines out, int person) throws IOException {
+      out.line(0, "@I" + (person + 1) + "@", "INDI", null);
+      String given = male[person] ? pick(MALE_NAMES) : pick(FEMALE_NAMES);
+      String surnameValue = SURNAMES[surname[person]];
+      out.line(1, null, "NAME", given + " /" + surnameValue + "/");
+      out.line(2, null, "GIVN", given);
+      out.line(2, null, "SURN", surnameValue);
+      boolean bad = chance(badData);
+      out.line(1, null, "SEX", bad && content.nextBoolean() ? "X" : male[person] ? "M" : "F");
+
+      int year = birthYear[person];
+      writeEvent(out, "BIRT", year);
+      int facts = count(factsPerPerson);
+      for (int i = 0; i < facts; i++) {
+        String tag = pick(INDIVIDUAL_EVENTS);
+        if (tag.equals("OCCU")) {
+          out.line(1, null, tag, pick(OCCUPATIONS));
+          out.line(2, null, "DATE", date(Math.min(LAST_YEAR, year + 20 + content.nextInt(30))));
+          writeCitations(out, 2);
+        }
+        else {
+          writeEvent(out, tag, year + content.nextInt(60));
+        }
+      }
+      int deathYear = year + 30 + content.nextInt(60);
+      if (deathYear < 2000) {
+        writeEvent(out, "DEAT", deathYear);
+        if (content.nextBoolean()) {
+          writeEvent(out, "BURI", deathYear);
+        }
+      }
+
+      if (famc[person] >= 0) {
+        out.line(1, null, "FAMC", "@F" + (famc[person] + 1) + "@");
+        if (chance(0.02)) {
+          out.line(2, null, "PEDI", pick(PEDIGREES));
+        }
+      }
+      if (fams[person] >= 0) {
+        out.line(1, null, "FAMS", "@F" + (fams[person] + 1) + "@");
+      }
+      if (bad) {
+        writeBadData(out, false);
+      }
+      writeCommon(out);
+    }
+
+    private void writeFamily(Lines out, int family) throws IOException {
+      out.line(0, "@F" + (family + 1) + "@", "FAM", null);
+      if (husbands[family] >= 0) {
+        out.line(1, null, "HUSB", "@I" + (husbands[family] + 1) + "@");
+      }
+      if (wives[family] >= 0) {
+        out.line(1, null, "WIFE", "@I" + (wives[family] + 1) + "@");
+      }
+      for (int i = 0; i < childCount[family]; i++) {
+        out.line(1, null, "CHIL", "@I" + (firstChild[family] + i + 1) + "@");
+      }
+
+      int parentYear = Math.max(husbands[family] >= 0 ? birthYear[husbands[family]] : 1700, wives[family] >= 0 ? birthYear[wives[family]] : 1700);
+      if (husbands[family] >= 0 && wives[family] >= 0) {
+        writeEvent(out, "MARR", parentYear + 18 + content.nextInt(10));
+        if (chance(0.05)) {
+          writeEvent(out, "DIV", parentYear + 30 + content.nextInt(20));
+        }
+      }
+      if (chance(badData)) {
+        writeBadData(out, true);
+      }
+      writeCommon(out);
+    }
+
+    private void writeSource(Lines out, int source) throws IOException {
+      out.line(0, "@S" + (source + 1) + "@", "SOUR", null);
+      String place = pick(PLACES);
+      out.line(1, null, "TITL", place.split(",")[0] + " Parish Registers, " + (1650 + content.nextInt(300)) + "-" + (1850 + content.nextInt(150)));
+      out.line(1, null, "AUTH", place.split(",")[0] + " Parish");
+      out.line(1, null, "PUBL", "Microfilm " + (100000 + content.nextInt(900000)));
+      out.line(1, null, "REPO", "@R" + (content.nextInt(repositoryCount) + 1) + "@");
+      if (chance(extensions)) {
+        out.line(1, null, "_TYPE", "Church record");
+      }
+      writeChange(out);
+    }
+
+    /**
+     * Writes an event, unless it would be after the date of the file.
+     */
+    private void writeEvent(Lines out, String tag, int year) throws IOException {
+      if (year > LAST_YEAR) {
+        return;
+      }
+      out.line(1, null, tag, null);
+      out.line(2, null, "DATE", pick(DATE_QUALIFIERS) + date(year));
+      out.line(2, null, "PLAC", pick(PLACES));
+      writeCitations(out, 2);
+    }
+
+    private void writeCitations(Lines out, int level) throws IOException {
+      int citations = count(citationsPerFact);
+      for (int i = 0; i < citations; i++) {
+        if (sourceCount == 0 || chance(inlineCitations)) {
+          out.line(level, null, "SOUR", "Entry " + (1 + content.nextInt(500)) + " in a family bible, transcribed " + date(1950 + content.nextInt(60)));
+        }
+        else {
+          out.line(level, null, "SOUR", "@S" + (content.nextInt(sourceCount) + 1) + "@");
+          out.line(level + 1, null, "PAGE", "Page " + (1 + content.nextInt(400)) + ", entry " + (1 + content.nextInt(40)));
+          if (content.nextBoolean()) {
+            out.line(level + 1, null, "QUAY", String.valueOf(content.nextInt(4)));
+          }
+        }
+      }
+    }
+
+    private void writeCommon(Lines out) throws IOException {
+      if (chance(notes)) {
+        if (chance(referencedNotes)) {
+          out.line(1, null, "NOTE", "@N" + (++noteCount) + "@");
+        }
+        else {
+          out.line(1, null, "NOTE", sentence());
+        }
+      }
+      if (chance(extensions)) {
+        out.line(1, null, "_UID", Long.toHexString(content.nextLong()).toUpperCase());
+      }
+      if (chance(extensions)) {
+        out.line(1, null, "_MILT", null);
+        out.line(2, null, "DATE", date(1860 + content.nextInt(100)));
+      }
+      writeChange(out);
+    }
+
+    private void writeChange(Lines out) throws IOException {
+      out.line(1, null, "CHAN", null);
+      out.line(2, null, "DATE", date(2000 + content.nextInt(20)));
+      out.line(3, null, "TIME", twoDigits(content.nextInt(24)) + ':' + twoDigits(content.nextInt(60)) + ':' + twoDigits(content.nextInt(60)));
+    }
+
+    private void writeBadData(Lines out, boolean family) throws IOException {
+      switch (content.nextInt(5)) {
+        case 0:
+          out.line(1, null, "BIRT", null);
+          out.line(2, null, "DATE", "sometime in the spring");
+          break;
+        case 1:
+          out.line(1, null, "XYZZ", "an unknown tag");
+          break;
+        case 2:
+          if (family) {
+            out.line(1, null, "CHIL", "@I" + (personCount + 1 + content.nextInt(1000)) + "@");
+          }
+          else {
+            out.line(1, null, "FAMC", "@F" + (familyCount + 1 + content.nextInt(1000)) + "@");
+          }
+          break;
+        case 3:
+          out.line(1, null, "CHAN", null);
+          out.line(2, null, "DATE", "not a date");
+          break;
+        default:
+          out.line(1, null, "EMAIL", "not an email address");
+          break;
+      }
+    }
+
+    private String date(int year) {
+      return (1 + content.nextInt(28)) + " " + MONTHS[content.nextInt(12)] + " " + year;
+    }
+
+    private String twoDigits(int value) {
+      return value < 10 ? "0" + value : Integer.toString(value);
+    }
+
+    private String sentence() {
+      return "The " + pick(OCCUPATIONS).toLowerCase() + " of " + pick(PLACES) + " is mentioned in " + pick(SURNAMES) + " family papers.";
+    }
+
+    private String pick(String[] values) {
+      return values[content.nextInt(values.length)];
+    }
+
+    private boolean chance(double probability) {
+      return probability > 0 && content.nextDouble() < probability;
+    }
+
+    /**
+     * @return a count with the given average, spread uniformly between zero and twice the average
+     */
+    private int count(double average) {
+      return average <= 0 ? 0 : (int) Math.round(content.nextDouble() * 2 * average);
+    }
+  }
+
+  /**
+   * Writes GEDCOM lines.
+   */
+  private static final class Lines {
+    private final Writer writer;
+
+    private Lines(Writer writer) {
+      this.writer = writer;
+    }
+
+    private void line(int level, String xref, String tag, String value) throws IOException {
+      writer.write(Integer.toString(level));
+      writer.write(' ');
+      if (xref != null) {
+        writer.write(xref);
+        writer.write(' ');
+      }
+      writer.write(tag);
+      if (value != null) {
+        writer.write(' ');
+        writer.write(value);
+      }
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * A first-in, first-out queue of persons.
+   */
+  private static final class IntQueue {
+    private final int[] elements;
+    private int head = 0;
+    private int tail = 0;
+
+    private IntQueue(int capacity) {
+      this.elements = new int[capacity];
+    }
+
+    private boolean isEmpty() {
+      return head == tail;
+    }
+
+    private int peek() {
+      return elements[head];
+    }
+
+    private void add(int element) {
+      elements[tail++] = element;
+    }
+
+    private int remove() {
+      return elements[head++];
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    CmdLineParser parser = new CmdLineParser(generator);
+    try {
+      parser.parseArgument(args);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      parser.printUsage(System.err);
+      return;
+    }
+
+    String error = generator.checkSettings();
+    if (error != null) {
+      System.err.println(error);
+      parser.printUsage(System.err);
+      return;
+    }
+
+    if (generator.output != null) {
+      generator.write(generator.output);
+    } else {
+      generator.write(System.out);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package org.gedcomx.conversion;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.Gedcomx;
+import org.gedcomx.conversion.gedcom.dq55.GedcomMapper;
+import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.gedcomx.fileformat.GedcomxFile;
+import org.gedcomx.fileformat.GedcomxFileEntry;
+import org.gedcomx.fileformat.GedcomxOutputStream;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.rt.GedcomxConstants;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class ChunkedGedcomxConversionResultTest {
+
+  @Test
+  public void testChunksMakeUpTheInMemoryDataset() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Fam001.ged");
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    ObjectMapper objectMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+
+    GedcomxConversionResult inMemory = new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom);
+    JsonNode expected = objectMapper.valueToTree(inMemory.getDataset());
+
+    File gedx = File.createTempFile("chunked-", ".gedx");
+    try {
+      GedcomxOutputStream output = new GedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(Ordinance.class));
+      ChunkedGedcomxConversionResult chunked = new ChunkedGedcomxConversionResult(output, GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE, "tree.json", 7);
+      new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom, chunked);
+      assertNull(chunked.getDataset());
+      chunked.close();
+      output.close();
+
+      // put the chunks of each collection back together, in the order they were written
+      ObjectNode actual = objectMapper.createObjectNode();
+      GedcomxFile gedxFile = new GedcomxFile(new JarFile(gedx));
+      int chunks = 0;
+      for (GedcomxFileEntry entry : gedxFile.getEntries()) {
+        String collection = entry.getAttribute(ChunkedGedcomxConversionResult.COLLECTION_ATTRIBUTE);
+        if (collection == null) {
+          continue;
+        }
+        chunks++;
+        assertTrue(entry.getJarEntry().getName().startsWith(collection + "/"));
+        try (InputStream in = gedxFile.getResourceStream(entry)) {
+          JsonNode objects = objectMapper.readTree(in).get(collection);
+          assertTrue(objects.size() <= 7);
+          assertEquals(entry.getAttribute(ChunkedGedcomxConversionResult.COUNT_ATTRIBUTE), String.valueOf(objects.size()));
+          if (!actual.has(collection)) {
+            actual.putArray(collection);
+          }
+          ((ArrayNode) actual.get(collection)).addAll((ArrayNode) objects);
+        }
+      }
+      gedxFile.close();
+
+      assertTrue(chunks > 4);
+      for (String collection : new String[]{"persons", "relationships", "sourceDescriptions", "agents"}) {
+        assertEquals(actual.get(collection), expected.get(collection), collection);
+      }
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+  @Test
+  public void testEntryPerRecord() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case009-Family.ged");
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+
+    File gedx = File.createTempFile("chunked-", ".gedx");
+    try {
+      GedcomxOutputStream output = new GedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(Ordinance.class));
+      try (ChunkedGedcomxConversionResult chunked = new ChunkedGedcomxConversionResult(output, GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE, "tree.json", 1)) {
+        new GedcomMapper(new MappingConfig("Case009-Family.ged", false)).toGedcomx(gedcom, chunked);
+      }
+      output.close();
+
+      GedcomxFile gedxFile = new GedcomxFile(new JarFile(gedx));
+      int persons = 0;
+      for (GedcomxFileEntry entry : gedxFile.getEntries()) {
+        if ("persons".equals(entry.getAttribute(ChunkedGedcomxConversionResult.COLLECTION_ATTRIBUTE))) {
+          String id = entry.getAttribute(ChunkedGedcomxConversionResult.ID_ATTRIBUTE);
+          assertNotNull(id);
+          assertEquals(((Gedcomx) gedxFile.readResource(entry)).getPersons().get(0).getId(), id);
+          persons++;
+        }
+      }
+      gedxFile.close();
+      assertEquals(persons, gedcom.getPeople().size());
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.gedcomx.conversion;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gedcomx.conversion.ConversionDiagnostics.Category;
+import org.gedcomx.conversion.ConversionDiagnostics.Issue;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+public class ConversionDiagnosticsTest {
+
+  @Test
+  public void testCountsAndSamples() {
+    ConversionDiagnostics diagnostics = new ConversionDiagnostics(2);
+    AtomicInteger locationsBuilt = new AtomicInteger();
+    for (int i = 1; i <= 5; i++) {
+      String location = "@I" + i + "@ INDI";
+      diagnostics.record(Category.IGNORED, "RIN", "RIN ({}) was ignored.", () -> {
+        locationsBuilt.incrementAndGet();
+        return location;
+      });
+    }
+    // once an issue has all its samples, the location isn't built anymore
+    assertEquals(locationsBuilt.get(), 2);
+
+    diagnostics.record(Category.INVALID, "DATE", "Could not parse DATE {}", () -> "@S1@ SOUR, CHAN, DATE");
+    diagnostics.record(Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", () -> "@I1@ INDI");
+    diagnostics.record(Category.IGNORED, "NOTE", "Did not process {} notes or references to notes.", () -> "@I2@ INDI");
+
+    assertEquals(diagnostics.getTotal(), 8);
+
+    Issue rin = diagnostics.getIssue(Category.IGNORED, "RIN");
+    assertEquals(rin.getCount(), 5);
+    assertEquals(rin.getMessage(), "RIN ({}) was ignored.");
+    assertEquals(rin.getSamples().size(), 2);
+    assertEquals(rin.getSamples().get(0), "@I1@ INDI");
+    assertEquals(rin.getSamples().get(1), "@I2@ INDI");
+    assertNull(diagnostics.getIssue(Category.INVALID, "RIN"));
+
+    List<Issue> issues = diagnostics.getIssues();
+    assertEquals(issues.size(), 3);
+    assertEquals(issues.get(0).getTag(), "RIN");
+    assertEquals(issues.get(1).getTag(), "NOTE");
+    assertEquals(issues.get(2).getCategory(), Category.INVALID);
+  }
+
+  @Test
+  public void testNullTag() {
+    ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+    diagnostics.record(Category.INVALID, null, "Empty tag encountered", () -> "@I1@ INDI");
+    assertEquals(diagnostics.getIssue(Category.INVALID, null).getCount(), 1);
+    assertEquals(diagnostics.getIssue(Category.INVALID, "").getCount(), 1);
+  }
+}
@@ -0,0 +1,236 @@
+package org.gedcomx.conversion;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.Gedcomx;
+import org.gedcomx.conversion.gedcom.dq55.GedcomMapper;
+import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.gedcomx.fileformat.GedcomxFile;
+import org.gedcomx.fileformat.GedcomxFileEntry;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.rt.GedcomxConstants;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class ParallelGedcomxOutputStreamTest {
+
+  @Test
+  public void testDeflatedInParallel() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Fam001.ged");
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    Gedcomx dataset = new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom).getDataset();
+    ObjectMapper objectMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+    JsonNode expected = objectMapper.valueToTree(dataset);
+
+    // data that spans many blocks, some of which repeat the ones before
+    byte[] large = new byte[3_000_000];
+    Random random = new Random(42);
+    for (int i = 0; i < large.length; i += 4096) {
+      if (i > 200_000 && random.nextBoolean()) {
+        System.arraycopy(large, i - 100_000, large, i, Math.min(4096, large.length - i));
+      }
+      else {
+        for (int j = i; j < Math.min(i + 4096, large.length); j++) {
+          large[j] = (byte) ('a' + random.nextInt(8));
+        }
+      }
+    }
+
+    File gedx = File.createTempFile("parallel-", ".gedx");
+    try {
+      ParallelGedcomxOutputStream output = new ParallelGedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(Ordinance.class), 4, Deflater.DEFAULT_COMPRESSION);
+      output.addAttribute("X-DC-conformsTo", "http://gedcomx.org/file/v1");
+      output.addResource(GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE, "tree.json", dataset, new Date(), null);
+      Map<String, String> attributes = new HashMap<String, String>();
+      attributes.put("X-Test", "large");
+      output.addResource("application/octet-stream", "/data\\large.bin", new ByteArrayInputStream(large), null, attributes);
+      output.addResource(GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE, "empty.json", new ByteArrayInputStream(new byte[0]), null, null);
+      output.close();
+      assertTrue(gedx.length() < large.length / 2);
+
+      GedcomxFile gedxFile = new GedcomxFile(new JarFile(gedx));
+      assertEquals(gedxFile.getAttributes().get("X-DC-conformsTo"), "http://gedcomx.org/file/v1");
+      int entries = 0;
+      for (GedcomxFileEntry entry : gedxFile.getEntries()) {
+        String name = entry.getJarEntry().getName();
+        if (name.equals("tree.json")) {
+          assertEquals(entry.getContentType(), GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE);
+          assertNotNull(entry.getAttribute("X-DC-modified"));
+          JsonNode actual = objectMapper.valueToTree(gedxFile.readResource(entry));
+          assertEquals(actual, expected);
+        }
+        else if (name.equals("data/large.bin")) {
+          assertEquals(entry.getAttribute("X-Test"), "large");
+          try (InputStream in = gedxFile.getResourceStream(entry)) {
+            assertEquals(readAll(in), large);
+          }
+        }
+        else if (name.equals("empty.json")) {
+          assertEquals(entry.getJarEntry().getSize(), 0);
+        }
+        entries++;
+      }
+      gedxFile.close();
+      assertEquals(entries, 3);
+
+      // the archive can be read front to back as well
+      try (ZipInputStream in = new ZipInputStream(new FileInputStream(gedx))) {
+        assertEquals(in.getNextEntry().getName(), "tree.json");
+        assertEquals(in.getNextEntry().getName(), "data/large.bin");
+        assertEquals(readAll(in), large);
+      }
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+  @Test
+  public void testStoredEntries() throws Exception {
+    byte[] data = "0 HEAD\n1 CHAR UTF-8\n0 TRLR\n".getBytes(StandardCharsets.UTF_8);
+    File gedx = File.createTempFile("stored-", ".gedx");
+    try {
+      ParallelGedcomxOutputStream output = new ParallelGedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(), 2, Deflater.NO_COMPRESSION);
+      output.addResource("text/plain", "head.ged", new ByteArrayInputStream(data), null, null);
+      output.addResource("text/plain", "empty.ged", new ByteArrayInputStream(new byte[0]), null, null);
+      output.close();
+
+      // the sizes and checksum are in the local header, not in a data descriptor
+      try (ZipInputStream in = new ZipInputStream(new FileInputStream(gedx))) {
+        ZipEntry entry = in.getNextEntry();
+        assertEquals(entry.getName(), "head.ged");
+        assertEquals(entry.getMethod(), ZipEntry.STORED);
+        assertEquals(entry.getSize(), data.length);
+        assertEquals(readAll(in), data);
+        assertEquals(in.getNextEntry().getName(), "empty.ged");
+        assertEquals(readAll(in).length, 0);
+        assertEquals(in.getNextEntry().getName(), JarFile.MANIFEST_NAME);
+        assertNull(in.getNextEntry());
+      }
+
+      try (ZipFile zip = new ZipFile(gedx)) {
+        ZipEntry entry = zip.getEntry("head.ged");
+        assertEquals(entry.getMethod(), ZipEntry.STORED);
+        assertEquals(entry.getCompressedSize(), data.length);
+        try (InputStream in = zip.getInputStream(entry)) {
+          assertEquals(readAll(in), data);
+        }
+        assertNotNull(zip.getEntry(JarFile.MANIFEST_NAME));
+      }
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+  @Test
+  public void testZip64Entries() throws Exception {
+    byte[] data = new byte[1_000_000];
+    new Random(7).nextBytes(data);
+    File gedx = File.createTempFile("zip64-", ".gedx");
+    try {
+      // an entry that passes the threshold is written as if it were too large for the sizes of the original format
+      ParallelGedcomxOutputStream output = new ParallelGedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(), 2, Deflater.BEST_SPEED, 500_000);
+      output.addResource("application/octet-stream", "large.bin", new ByteArrayInputStream(data), null, null);
+      output.close();
+
+      long compressedSize;
+      try (ZipFile zip = new ZipFile(gedx)) {
+        ZipEntry entry = zip.getEntry("large.bin");
+        compressedSize = entry.getCompressedSize();
+        try (InputStream in = zip.getInputStream(entry)) {
+          assertEquals(readAll(in), data);
+        }
+      }
+
+      ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(gedx.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals(file.getInt(0), 0x04034b50);
+      assertEquals(file.getShort(4), 45);
+      assertEquals(file.getShort(6) & 0x08, 0x08);
+      assertEquals(file.getInt(18), -1);
+      assertEquals(file.getInt(22), -1);
+      int nameLength = file.getShort(26);
+      assertEquals(file.getShort(28), 20);
+      int extra = 30 + nameLength;
+      assertEquals(file.getShort(extra), 0x0001);
+      assertEquals(file.getShort(extra + 2), 16);
+
+      int descriptor = (int) (extra + 20 + compressedSize);
+      assertEquals(file.getInt(descriptor), 0x08074b50);
+      assertEquals(file.getLong(descriptor + 8), compressedSize);
+      assertEquals(file.getLong(descriptor + 16), data.length);
+      assertEquals(file.getInt(descriptor + 24), 0x04034b50);
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+  @Test
+  public void testMoreEntriesThanTheZipFormatCounts() throws Exception {
+    File gedx = File.createTempFile("zip64-", ".gedx");
+    try {
+      ParallelGedcomxOutputStream output = new ParallelGedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(), 2, Deflater.BEST_SPEED);
+      for (int i = 0; i < 70000; i++) {
+        output.addResource("text/plain", "records/" + i, new ByteArrayInputStream(String.valueOf(i).getBytes(StandardCharsets.UTF_8)), null, null);
+      }
+      output.close();
+
+      try (ZipFile zip = new ZipFile(gedx)) {
+        assertEquals(zip.size(), 70001);
+        int entries = 0;
+        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); e.nextElement()) {
+          entries++;
+        }
+        assertEquals(entries, 70001);
+        try (InputStream in = zip.getInputStream(zip.getEntry("records/69999"))) {
+          assertEquals(new String(readAll(in), StandardCharsets.UTF_8), "69999");
+        }
+      }
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+}
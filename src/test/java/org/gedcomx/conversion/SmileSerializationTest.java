@@ -0,0 +1,70 @@
+package org.gedcomx.conversion;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.Gedcomx;
+import org.gedcomx.conversion.gedcom.dq55.GedcomMapper;
+import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SmileSerializationTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case010-PersonOrdinances.ged");
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    Gedcomx dataset = new GedcomMapper(new MappingConfig("Case010-PersonOrdinances.ged", false)).toGedcomx(gedcom).getDataset();
+
+    SmileSerialization serialization = new SmileSerialization(Ordinance.class);
+    ByteArrayOutputStream smile = new ByteArrayOutputStream();
+    serialization.serialize(dataset, smile);
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    new JacksonJsonSerialization(false, Ordinance.class).serialize(dataset, json);
+    assertTrue(smile.size() < json.size());
+
+    Object read = serialization.deserialize(new ByteArrayInputStream(smile.toByteArray()), SmileSerialization.SMILE_MEDIA_TYPE);
+    ObjectMapper jsonMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+    JsonNode expected = jsonMapper.valueToTree(dataset);
+    assertEquals(jsonMapper.valueToTree(read), expected);
+  }
+
+  @Test
+  public void testTranscodeJson() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case010-PersonOrdinances.ged");
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    Gedcomx dataset = new GedcomMapper(new MappingConfig("Case010-PersonOrdinances.ged", false)).toGedcomx(gedcom).getDataset();
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    new JacksonJsonSerialization(false, Ordinance.class).serialize(dataset, json);
+
+    SmileSerialization serialization = new SmileSerialization(Ordinance.class);
+    ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+    try (JsonParser parser = new JsonFactory().createParser(json.toByteArray())) {
+      serialization.serialize(parser, transcoded);
+    }
+    ByteArrayOutputStream smile = new ByteArrayOutputStream();
+    serialization.serialize(dataset, smile);
+
+    Object read = serialization.deserialize(new ByteArrayInputStream(transcoded.toByteArray()), SmileSerialization.SMILE_MEDIA_TYPE);
+    ObjectMapper jsonMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+    JsonNode expected = jsonMapper.valueToTree(dataset);
+    assertEquals(jsonMapper.valueToTree(read), expected);
+    assertEquals(transcoded.toByteArray(), smile.toByteArray());
+  }
+}
@@ -0,0 +1,100 @@
+package org.gedcomx.conversion;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.conversion.gedcom.dq55.GedcomMapper;
+import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.gedcomx.fileformat.GedcomxFile;
+import org.gedcomx.fileformat.GedcomxFileEntry;
+import org.gedcomx.fileformat.GedcomxOutputStream;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.rt.GedcomxConstants;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+public class StreamingGedcomxConversionResultTest {
+
+  @DataProvider
+  public Object[][] gedcomFiles() {
+    return new Object[][]{{"Case007-SourceCitations.ged"}, {"Case009-Family.ged"}, {"Fam001.ged"}};
+  }
+
+  @Test(dataProvider = "gedcomFiles")
+  public void testStreamedEntryMatchesInMemoryDataset(String resource) throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource(resource);
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    ObjectMapper objectMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+
+    GedcomxConversionResult inMemory = new GedcomMapper(new MappingConfig(resource, false)).toGedcomx(gedcom);
+    JsonNode expected = objectMapper.valueToTree(inMemory.getDataset());
+
+    File gedx = File.createTempFile("streaming-", ".gedx");
+    try {
+      GedcomxOutputStream output = new GedcomxOutputStream(new FileOutputStream(gedx), new JacksonJsonSerialization(Ordinance.class));
+      StreamingGedcomxConversionResult streaming = new StreamingGedcomxConversionResult(output, "tree.json", Ordinance.class);
+      new GedcomMapper(new MappingConfig(resource, false)).toGedcomx(gedcom, streaming);
+      assertNull(streaming.getDataset());
+      streaming.close();
+      output.close();
+
+      GedcomxFile gedxFile = new GedcomxFile(new JarFile(gedx));
+      GedcomxFileEntry entry = gedxFile.getEntries().iterator().next();
+      assertEquals(entry.getJarEntry().getName(), "tree.json");
+      assertEquals(entry.getContentType(), GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE);
+      try (InputStream in = gedxFile.getResourceStream(entry)) {
+        assertEquals(objectMapper.readTree(in), expected);
+      }
+      gedxFile.close();
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+  @Test(dataProvider = "gedcomFiles")
+  public void testStreamedSmileEntryMatchesInMemoryDataset(String resource) throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource(resource);
+    Gedcom gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    ObjectMapper smileMapper = SmileSerialization.createObjectMapper(Ordinance.class);
+
+    GedcomxConversionResult inMemory = new GedcomMapper(new MappingConfig(resource, false)).toGedcomx(gedcom);
+    JsonNode expected = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class).valueToTree(inMemory.getDataset());
+
+    File gedx = File.createTempFile("streaming-", ".gedx");
+    try {
+      GedcomxOutputStream output = new GedcomxOutputStream(new FileOutputStream(gedx), new SmileSerialization(Ordinance.class));
+      StreamingGedcomxConversionResult streaming = new StreamingGedcomxConversionResult(output, "tree.smile", SmileSerialization.SMILE_MEDIA_TYPE, smileMapper, null);
+      new GedcomMapper(new MappingConfig(resource, false)).toGedcomx(gedcom, streaming);
+      streaming.close();
+      output.close();
+
+      GedcomxFile gedxFile = new GedcomxFile(new JarFile(gedx));
+      GedcomxFileEntry entry = gedxFile.getEntries().iterator().next();
+      assertEquals(entry.getJarEntry().getName(), "tree.smile");
+      assertEquals(entry.getContentType(), SmileSerialization.SMILE_MEDIA_TYPE);
+      try (InputStream in = gedxFile.getResourceStream(entry)) {
+        assertEquals(smileMapper.readTree(in), expected);
+      }
+      gedxFile.close();
+    }
+    finally {
+      gedx.delete();
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+public class ChangeDateParserTest {
+
+  @DataProvider
+  public Object[][] validValues() {
+    return new Object[][]{
+      {"10 MAY 2012", null},
+      {"31 Dec 1969", null},
+      {"1 jan 2000", null},
+      {"4 July 1976", null},
+      {"10 MAY 12", null},
+      {"10 MAY 95", null},
+      {"32 JAN 2012", null},
+      {"10 MAY 2012", "01:00"},
+      {"10 MAY 2012", "01:00:00"},
+      {"10 MAY 2012", "01:00:00.12"},
+      {"11 NOV 2011", "11:11:11.111"},
+      {"11 NOV 2011", "23:59:59.1999"},
+      {"11 NOV 2011", "25:61"},
+      {"10 MAY 2012", "01:00:"},
+      {"10 MAY 2012", "01:00:00."},
+      {"10 MAY 2012 trailing", null},
+    };
+  }
+
+  @Test(dataProvider = "validValues")
+  public void testMatchesSimpleDateFormat(String date, String time) throws Exception {
+    assertEquals(ChangeDateParser.parse(date, time), parseWithSimpleDateFormat(date, time));
+  }
+
+  @Test
+  public void testExtraWhitespace() throws Exception {
+    assertEquals(ChangeDateParser.parse("11  NOV\t2011", " 11:11"), parseWithSimpleDateFormat("11 NOV 2011", "11:11"));
+  }
+
+  @Test
+  public void testInvalidValues() {
+    assertNull(ChangeDateParser.parse(null, null));
+    assertNull(ChangeDateParser.parse("", null));
+    assertNull(ChangeDateParser.parse("2012-05-10", null));
+    assertNull(ChangeDateParser.parse("10 MAYO 2012", null));
+    assertNull(ChangeDateParser.parse("10 MA 2012", null));
+    assertNull(ChangeDateParser.parse("MAY 2012", null));
+    assertNull(ChangeDateParser.parse("10 MAY", null));
+    assertNull(ChangeDateParser.parse("10 MAY 2012", "01"));
+    assertNull(ChangeDateParser.parse("10 MAY 2012", "noon"));
+    assertNull(ChangeDateParser.parse("99999999999 MAY 2012", null));
+  }
+
+  @Test
+  public void testValuesPastTheRangeOfADate() {
+    assertNull(ChangeDateParser.parse("31 DEC 999999999", null));
+    assertNull(ChangeDateParser.parse("1 JAN 999999999", "23:59"));
+    assertNull(ChangeDateParser.parse("1 JAN 300000000", null));
+  }
+
+  /**
+   * How CHAN dates used to be parsed: the first of these patterns that matches wins.
+   */
+  private static Date parseWithSimpleDateFormat(String date, String time) throws ParseException {
+    String[] patterns = time == null ? new String[]{"d MMM yy"} : new String[]{"d MMM yy HH:mm:ss.SSS", "d MMM yy HH:mm:ss", "d MMM yy HH:mm"};
+    String value = time == null ? date : date + ' ' + time;
+    ParseException failure = null;
+    for (String pattern : patterns) {
+      try {
+        return new SimpleDateFormat(pattern, Locale.ENGLISH).parse(value);
+      }
+      catch (ParseException e) {
+        failure = e;
+      }
+    }
+    throw failure;
+  }
+}
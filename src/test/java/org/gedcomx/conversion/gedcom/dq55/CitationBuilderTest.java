@@ -0,0 +1,45 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import org.gedcomx.source.SourceCitation;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class CitationBuilderTest {
+
+  @Test
+  public void testBuild() {
+    SourceCitation citation = new SourceCitation();
+    CitationBuilder.start()
+      .field(Vocabulary.CITATION_AUTHOR, "Smith")
+      .field(Vocabulary.CITATION_TITLE, null)
+      .field(Vocabulary.CITATION_PUBLICATION_FACTS, "")
+      .field(Vocabulary.CITATION_CALL_NUMBER, "123")
+      .build(citation, ".");
+
+    // like the values that were concatenated field by field, an empty value is still separated by a comma
+    assertEquals(citation.getValue(), "Smith, , 123.");
+    assertEquals(citation.getFields().size(), 3);
+    assertSame(citation.getFields().get(0).getName(), Vocabulary.CITATION_AUTHOR);
+    assertEquals(citation.getFields().get(0).getValue(), "Smith");
+    assertEquals(citation.getFields().get(1).getValue(), "");
+    assertEquals(citation.getFields().get(2).getValue(), "123");
+  }
+
+  @Test
+  public void testBuildersAreReset() {
+    SourceCitation first = new SourceCitation();
+    CitationBuilder.start().field(Vocabulary.CITATION_PAGE, "p. 1").text("extra").build(first, null);
+    assertEquals(first.getValue(), "p. 1, extra");
+    assertEquals(first.getFields().size(), 1);
+
+    // an empty citation isn't terminated, and doesn't see the fields of the previous one
+    SourceCitation second = new SourceCitation();
+    CitationBuilder.start().build(second, ".");
+    assertEquals(second.getValue(), "");
+    assertTrue(second.getFields().isEmpty());
+  }
+}
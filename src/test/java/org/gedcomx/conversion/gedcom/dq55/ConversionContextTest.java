@@ -0,0 +1,57 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import org.slf4j.Marker;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class ConversionContextTest {
+
+  @Test
+  public void testPath() {
+    ConversionContext.pushRecord("I1", "INDI");
+    ConversionContext.push("BIRT", 2);
+    ConversionContext.push("SOUR", 1);
+    assertEquals(ConversionContext.getPath(), "@I1@ INDI, BIRT.2, SOUR.1");
+
+    ConversionContext.pop();
+    ConversionContext.push("CHAN");
+    assertEquals(ConversionContext.getPath(), "@I1@ INDI, BIRT.2, CHAN");
+
+    Marker context = ConversionContext.getContext();
+    assertEquals(context.getName(), "");
+    assertTrue(context.contains("@I1@ INDI"));
+    assertTrue(context.contains("BIRT.2"));
+    assertTrue(context.contains("CHAN"));
+
+    ConversionContext.pop();
+    ConversionContext.pop();
+    ConversionContext.pop();
+    ConversionContext.pop(); // popping past the root is harmless
+    assertEquals(ConversionContext.getPath(), "");
+  }
+
+  @Test
+  public void testNewRecordDiscardsLeftoverStructure() {
+    ConversionContext.pushRecord("F1", "FAM");
+    ConversionContext.push("MARR", 1);
+    // a failed mapping may leave its structure behind; the next record starts from the root regardless
+    ConversionContext.pushRecord("F2", "FAM");
+    assertEquals(ConversionContext.getPath(), "@F2@ FAM");
+    ConversionContext.pop();
+  }
+
+  @Test
+  public void testDeepPaths() {
+    ConversionContext.pushRecord("I1", "INDI");
+    for (int i = 1; i <= 20; i++) {
+      ConversionContext.push("NOTE", i);
+    }
+    assertTrue(ConversionContext.getPath().endsWith("NOTE.19, NOTE.20"));
+    ConversionContext.pushRecord("I2", "INDI");
+    assertEquals(ConversionContext.getPath(), "@I2@ INDI");
+    ConversionContext.pop();
+  }
+}
@@ -162,6 +162,24 @@ public class FamilyMapperTest {
     assertNotNull(rel);
   }
 
+  @Test
+  public void testFamilyF20_filenameInIds() throws Exception {
+    // the children are found by their GEDCOM 5.5 identifiers, whatever the GEDCOM X identifiers are
+    FamilyMapper mapper = new FamilyMapper(new MappingConfig("Case009-Family.ged", true));
+    Family dqFamily = gedcom.getFamilies().get(3);
+
+    mapper.toRelationship(dqFamily, gedcom, result);
+    assertEquals(result.getRelationships().size(), 9);
+
+    Relationship rel = result.getRelationships().get(1);
+    assertEquals(rel.getPerson2().getResource().toString(), "#Case009-Family.ged:I1002");
+    assertEquals(rel.getFacts().size(), 1);
+    testFactExistance(rel, FactType.AdoptiveParent);
+    testFactExistance(result.getRelationships().get(4), FactType.FosterParent);
+    testFactExistance(result.getRelationships().get(6), FactType.BiologicalParent);
+    assertNull(result.getRelationships().get(8).getFacts());
+  }
+
   @Test
   public void testFamilyF25() throws Exception {
     // Test couple facts
@@ -0,0 +1,323 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.Gedcomx;
+import org.gedcomx.agent.Agent;
+import org.gedcomx.conclusion.Person;
+import org.gedcomx.conversion.ConversionDiagnostics;
+import org.gedcomx.conversion.DefaultGedcomxConversionResult;
+import org.gedcomx.conversion.GedcomxConversionResult;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.links.HypermediaEnabledData;
+import org.gedcomx.source.SourceDescription;
+import org.gedcomx.tools.SyntheticGedcomGenerator;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class GedcomMapperTest {
+  private final ObjectMapper objectMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+  private Gedcom gedcom;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Fam001.ged");
+    gedcom = new ModelParser().parseGedcom(new File(gedcomUrl.toURI()));
+    gedcom.createIndexes();
+    assertNotNull(gedcom);
+  }
+
+  @Test
+  public void testParallelMappingKeepsRecordOrder() throws Exception {
+    Gedcomx sequential = new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom).getDataset();
+
+    MappingConfig parallelConfig = new MappingConfig("Fam001.ged", false);
+    parallelConfig.setParallelism(4);
+    Gedcomx parallel = new GedcomMapper(parallelConfig).toGedcomx(gedcom).getDataset();
+
+    // the generated ids don't depend on how the records are scheduled, so the output is the same
+    assertEquals(objectMapper.writeValueAsString(parallel), objectMapper.writeValueAsString(sequential));
+  }
+
+  @Test
+  public void testConversionsAreReproducible() throws Exception {
+    Gedcomx first = new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom).getDataset();
+    Gedcomx second = new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom).getDataset();
+    assertEquals(objectMapper.writeValueAsString(second), objectMapper.writeValueAsString(first));
+  }
+
+  @Test
+  public void testCustomIdentifierGenerator() throws Exception {
+    MappingConfig config = new MappingConfig("Fam001.ged", false);
+    config.setIdentifierGenerator(prefix -> prefix + "-custom");
+    Gedcomx gedcomx = new GedcomMapper(config).toGedcomx(gedcom).getDataset();
+    for (SourceDescription description : gedcomx.getSourceDescriptions()) {
+      if (description.getComponentOf() != null) {
+        assertTrue(description.getId().endsWith("-custom"), description.getId());
+      }
+    }
+  }
+
+  @Test
+  public void testTheContextOfTheCallerIsRestored() throws Exception {
+    IdentifierGenerator generator = prefix -> prefix + "-caller";
+    ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+    ConversionContext.setIdentifierGenerator(generator);
+    ConversionContext.setDiagnostics(diagnostics);
+    try {
+      new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom);
+      assertSame(ConversionContext.getIdentifierGenerator(), generator);
+      assertSame(ConversionContext.getDiagnostics(), diagnostics);
+
+      File file = new File(this.getClass().getClassLoader().getResource("Fam001.ged").toURI());
+      new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(file, new DefaultGedcomxConversionResult());
+      assertSame(ConversionContext.getIdentifierGenerator(), generator);
+      assertSame(ConversionContext.getDiagnostics(), diagnostics);
+    }
+    finally {
+      ConversionContext.setIdentifierGenerator(null);
+      ConversionContext.setDiagnostics(null);
+    }
+  }
+
+  @Test
+  public void testDiagnosticsAreRecordedFromAllThreads() throws Exception {
+    ConversionDiagnostics sequential = new GedcomMapper(new MappingConfig("Fam001.ged", false)).toGedcomx(gedcom).getDiagnostics();
+
+    MappingConfig parallelConfig = new MappingConfig("Fam001.ged", false);
+    parallelConfig.setParallelism(4);
+    GedcomxConversionResult parallelResult = new GedcomMapper(parallelConfig).toGedcomx(gedcom);
+    ConversionDiagnostics parallel = parallelResult.getDiagnostics();
+
+    assertTrue(sequential.getTotal() > 0);
+    assertEquals(parallel.getTotal(), sequential.getTotal());
+    assertEquals(parallel.getIssues().size(), sequential.getIssues().size());
+    for (ConversionDiagnostics.Issue expected : sequential.getIssues()) {
+      ConversionDiagnostics.Issue actual = parallel.getIssue(expected.getCategory(), expected.getTag());
+      assertNotNull(actual, expected.getTag());
+      assertEquals(actual.getCount(), expected.getCount(), expected.getTag());
+    }
+
+    ConversionDiagnostics.Issue uid = sequential.getIssue(ConversionDiagnostics.Category.IGNORED, "_UID");
+    assertEquals(uid.getSamples().get(0), "@I1@ INDI, _UID");
+  }
+
+  @Test
+  public void testRecordsWithoutIdentifiersGetDistinctIds() throws Exception {
+    File file = File.createTempFile("no-xrefs", ".ged");
+    file.deleteOnExit();
+    String gedcom = "0 HEAD\n1 CHAR UTF-8\n0 @S1@ SOUR\n1 TITL A book\n"
+      + "0 INDI\n1 NAME John /Smith/\n1 SOUR @S1@\n2 PAGE 12\n"
+      + "0 INDI\n1 NAME Mary /Jones/\n1 SOUR @S1@\n2 PAGE 34\n0 TRLR\n";
+    Files.write(file.toPath(), gedcom.getBytes(StandardCharsets.UTF_8));
+
+    Gedcom parsed = new ModelParser().parseGedcom(file);
+    parsed.createIndexes();
+    GedcomxConversionResult sequential = new GedcomMapper(new MappingConfig("no-xrefs.ged", false)).toGedcomx(parsed);
+    Map<String, String> descriptions = serialized(sequential.getDataset().getSourceDescriptions());
+    // the source and a description of each citation
+    assertEquals(descriptions.size(), 3, descriptions.keySet().toString());
+    assertEquals(sequential.getDataset().getSourceDescriptions().size(), 3);
+
+    MappingConfig parallelConfig = new MappingConfig("no-xrefs.ged", false);
+    parallelConfig.setParallelism(4);
+    GedcomxConversionResult parallel = new GedcomMapper(parallelConfig).toGedcomx(parsed);
+    assertEquals(serialized(parallel.getDataset().getSourceDescriptions()), descriptions);
+
+    GedcomxConversionResult streamed = new GedcomMapper(new MappingConfig("no-xrefs.ged", false)).toGedcomx(file, new DefaultGedcomxConversionResult());
+    assertEquals(serialized(streamed.getDataset().getSourceDescriptions()), descriptions);
+  }
+
+  @Test
+  public void testShardReplaysDatasetContributorAndLanguage() throws Exception {
+    Agent contributor = new Agent();
+    contributor.setId("SUBM1");
+    Person person = new Person();
+    person.setId("I1");
+
+    ShardConversionResult shard = new ShardConversionResult();
+    shard.addPerson(person);
+    shard.setDatasetContributor(contributor);
+    shard.addLanguage("en");
+    assertEquals(shard.getDatasetContributor(), contributor);
+
+    DefaultGedcomxConversionResult result = new DefaultGedcomxConversionResult();
+    shard.replay(result);
+    assertEquals(result.getDataset().getPersons().size(), 1);
+    assertEquals(result.getDatasetContributor(), contributor);
+    assertEquals(result.getDataset().getLang(), "en");
+  }
+
+  @Test
+  public void testStreamingInputMapsLikeTheParsedFile() throws Exception {
+    String[] files = {"Fam001.ged", "Case003-PersonsName.ged", "Case006-PersonsFacts.ged", "Case007-SourceCitations.ged",
+      "Case008-SubmitterRecord.ged", "Case009-Family.ged", "Case010-PersonOrdinances.ged"};
+    for (String name : files) {
+      File file = new File(this.getClass().getClassLoader().getResource(name).toURI());
+      Gedcom parsed = new ModelParser().parseGedcom(file);
+      parsed.createIndexes();
+      GedcomxConversionResult expected = new GedcomMapper(new MappingConfig(name, false)).toGedcomx(parsed);
+
+      GedcomxConversionResult streamed = new GedcomMapper(new MappingConfig(name, false)).toGedcomx(file, new DefaultGedcomxConversionResult());
+      assertEquals(objectMapper.writeValueAsString(streamed.getDataset()), objectMapper.writeValueAsString(expected.getDataset()), name);
+      assertEquals(streamed.getDiagnostics().getTotal(), expected.getDiagnostics().getTotal(), name);
+    }
+  }
+
+  @Test
+  public void testStreamingInputParsedInParallel() throws Exception {
+    File file = File.createTempFile("synthetic", ".ged");
+    file.deleteOnExit();
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    generator.setSeed(17);
+    generator.setPersons(3000);
+    generator.write(file);
+
+    Gedcom parsed = new ModelParser().parseGedcom(file);
+    parsed.createIndexes();
+    GedcomxConversionResult expected = new GedcomMapper(new MappingConfig("synthetic.ged", false)).toGedcomx(parsed);
+
+    MappingConfig parallelConfig = new MappingConfig("synthetic.ged", false);
+    parallelConfig.setParallelism(4);
+    GedcomxConversionResult streamed = new GedcomMapper(parallelConfig).toGedcomx(file, new DefaultGedcomxConversionResult());
+    // the records of each chunk are mapped by kind, so only the order of the records of different kinds differs
+    assertEquals(serialized(streamed.getDataset().getPersons()), serialized(expected.getDataset().getPersons()));
+    assertEquals(serialized(streamed.getDataset().getRelationships()), serialized(expected.getDataset().getRelationships()));
+    assertEquals(serialized(streamed.getDataset().getSourceDescriptions()), serialized(expected.getDataset().getSourceDescriptions()));
+    assertEquals(serialized(streamed.getDataset().getAgents()), serialized(expected.getDataset().getAgents()));
+    assertEquals(streamed.getDiagnostics().getTotal(), expected.getDiagnostics().getTotal());
+  }
+
+  @Test
+  public void testIncrementalConversionMapsOnlyChangedRecords() throws Exception {
+    File file = File.createTempFile("synthetic", ".ged");
+    File cacheFile = new File(file.getPath() + ".cache");
+    file.deleteOnExit();
+    cacheFile.deleteOnExit();
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    generator.setSeed(17);
+    generator.setPersons(200);
+    generator.write(file);
+
+    int records;
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      assertIncrementalMapsLikeTheFile(file, cache);
+      assertEquals(cache.getReused(), 0);
+      records = cache.getMapped();
+      cache.commit();
+    }
+    assertTrue(records > 200);
+
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      assertIncrementalMapsLikeTheFile(file, cache);
+      assertEquals(cache.getReused(), records);
+      assertEquals(cache.getMapped(), 0);
+      cache.commit();
+    }
+
+    // only the edited individual is mapped again
+    String gedcom = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    int edited = gedcom.indexOf("1 NAME William /Jansen/\n");
+    assertTrue(edited > 0);
+    gedcom = gedcom.substring(0, edited) + "1 NAME Willem" + gedcom.substring(edited + "1 NAME William".length());
+    Files.write(file.toPath(), gedcom.getBytes(StandardCharsets.UTF_8));
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      assertIncrementalMapsLikeTheFile(file, cache);
+      assertEquals(cache.getReused(), records - 1);
+      assertEquals(cache.getMapped(), 1);
+    }
+
+    // a cache written with another configuration is not used
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      new GedcomMapper(new MappingConfig("synthetic.ged", true)).toGedcomx(file, new DefaultGedcomxConversionResult(), cache);
+      assertEquals(cache.getReused(), 0);
+    }
+  }
+
+  @Test
+  public void testIncrementalConversionDependsOnTheCharsetAndThePostProcessor() throws Exception {
+    File file = File.createTempFile("synthetic", ".ged");
+    File cacheFile = new File(file.getPath() + ".cache");
+    file.deleteOnExit();
+    cacheFile.deleteOnExit();
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    generator.setSeed(17);
+    generator.setPersons(20);
+    generator.write(file);
+
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      new GedcomMapper(new MappingConfig("synthetic.ged", false), new ConfiguredPostProcessor("a")).toGedcomx(file, new DefaultGedcomxConversionResult(), cache);
+      cache.commit();
+    }
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      new GedcomMapper(new MappingConfig("synthetic.ged", false), new ConfiguredPostProcessor("a")).toGedcomx(file, new DefaultGedcomxConversionResult(), cache);
+      assertEquals(cache.getMapped(), 0);
+    }
+
+    // the same post processor with another configuration
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      new GedcomMapper(new MappingConfig("synthetic.ged", false), new ConfiguredPostProcessor("b")).toGedcomx(file, new DefaultGedcomxConversionResult(), cache);
+      assertEquals(cache.getReused(), 0);
+    }
+
+    // the same bytes in another charset
+    String gedcom = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    assertTrue(gedcom.contains("1 CHAR UTF-8\n"));
+    Files.write(file.toPath(), gedcom.replace("1 CHAR UTF-8\n", "1 CHAR ANSI\n").getBytes(StandardCharsets.UTF_8));
+    try (RecordCache cache = new RecordCache(cacheFile)) {
+      new GedcomMapper(new MappingConfig("synthetic.ged", false), new ConfiguredPostProcessor("a")).toGedcomx(file, new DefaultGedcomxConversionResult(), cache);
+      assertEquals(cache.getReused(), 0);
+    }
+  }
+
+  private static final class ConfiguredPostProcessor implements PostProcessor {
+    private final String configuration;
+
+    private ConfiguredPostProcessor(String configuration) {
+      this.configuration = configuration;
+    }
+
+    @Override
+    public void postProcessPerson(org.folg.gedcom.model.Person gedcomPerson, Person gedxPerson) {
+    }
+
+    @Override
+    public String getConfiguration() {
+      return configuration;
+    }
+  }
+
+  private void assertIncrementalMapsLikeTheFile(File file, RecordCache cache) throws Exception {
+    GedcomxConversionResult expected = new GedcomMapper(new MappingConfig("synthetic.ged", false)).toGedcomx(file, new DefaultGedcomxConversionResult());
+    GedcomxConversionResult incremental = new GedcomMapper(new MappingConfig("synthetic.ged", false)).toGedcomx(file, new DefaultGedcomxConversionResult(), cache);
+    assertEquals(objectMapper.writeValueAsString(incremental.getDataset()), objectMapper.writeValueAsString(expected.getDataset()));
+  }
+
+  /**
+   * @return the JSON of each of the given objects, by identifier
+   */
+  private Map<String, String> serialized(List<? extends HypermediaEnabledData> data) throws Exception {
+    Map<String, String> serialized = new TreeMap<String, String>();
+    for (HypermediaEnabledData item : data) {
+      assertNull(serialized.put(item.getId(), objectMapper.writeValueAsString(item)), item.getId());
+    }
+    return serialized;
+  }
+}
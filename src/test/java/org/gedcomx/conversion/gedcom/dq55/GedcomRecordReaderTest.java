@@ -0,0 +1,114 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.ParentFamilyRef;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class GedcomRecordReaderTest {
+
+  @Test
+  public void testReadsTheRecordsOfTheFile() throws Exception {
+    File file = new File(getClass().getClassLoader().getResource("Fam001.ged").toURI());
+    Gedcom whole = new ModelParser().parseGedcom(file);
+
+    List<String> people = new ArrayList<String>();
+    List<String> families = new ArrayList<String>();
+    List<String> sources = new ArrayList<String>();
+    int headers = 0;
+    try (GedcomRecordReader reader = new GedcomRecordReader(file)) {
+      Gedcom record;
+      while ((record = reader.nextRecord()) != null) {
+        headers += record.getHeader() != null ? 1 : 0;
+        for (Person person : record.getPeople()) {
+          people.add(person.getId());
+        }
+        record.getFamilies().forEach(family -> families.add(family.getId()));
+        record.getSources().forEach(source -> sources.add(source.getId()));
+      }
+    }
+
+    assertEquals(headers, 1);
+    assertEquals(people.size(), whole.getPeople().size());
+    for (int i = 0; i < people.size(); i++) {
+      assertEquals(people.get(i), whole.getPeople().get(i).getId());
+    }
+    assertEquals(families.size(), whole.getFamilies().size());
+    assertEquals(sources.size(), whole.getSources().size());
+  }
+
+  @Test
+  public void testRecordsSpanningReads() throws Exception {
+    String file = "0 HEAD\r\n1 CHAR UTF-8\r\n\r\n0 @I1@ INDI\r\n1 NAME John /Doe/\r\n  2 GIVN John\r\n1 NOTE first\r\n2 CONT second\r\n"
+      + "0 @I2@ INDI\n1 NAME Jane /Doe/\n0 @F1@ FAM\n1 WIFE @I2@\n0 TRLR";
+    // hand the characters over one at a time so that every record (and line break) spans reads
+    GedcomRecordReader reader = new GedcomRecordReader(new FilterReader(new StringReader(file)) {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        return super.read(buffer, offset, Math.min(1, length));
+      }
+    });
+
+    assertNotNull(reader.nextRecord().getHeader());
+    Person john = reader.nextRecord().getPeople().get(0);
+    assertEquals(john.getId(), "I1");
+    assertEquals(john.getNames().get(0).getGiven(), "John");
+    assertEquals(john.getNotes().get(0).getValue(), "first\nsecond");
+    assertEquals(reader.nextRecord().getPeople().get(0).getId(), "I2");
+    assertEquals(reader.nextRecord().getFamilies().get(0).getWifeRefs().get(0).getRef(), "I2");
+    assertTrue(reader.nextRecord().getPeople().isEmpty()); // TRLR
+    assertNull(reader.nextRecord());
+    assertNull(reader.nextRecord());
+  }
+
+  @Test
+  public void testScanParentFamilyRefs() throws Exception {
+    String file = "0 HEAD\n0 @I1@ INDI\n1 FAMC @F1@\n2 PEDI adopted \n1 FAMC @F2@\n1 BIRT\n2 PEDI birth\n0 @F1@ FAM\n1 CHIL @I1@\n";
+    GedcomRecordReader reader = new GedcomRecordReader(new StringReader(file));
+
+    assertTrue(reader.skipRecord());
+    assertNull(reader.scanParentFamilyRefs());
+
+    assertTrue(reader.skipRecord());
+    Person person = reader.scanParentFamilyRefs();
+    assertEquals(person.getId(), "I1");
+    List<ParentFamilyRef> refs = person.getParentFamilyRefs();
+    assertEquals(refs.size(), 2);
+    assertEquals(refs.get(0).getRef(), "F1");
+    assertEquals(refs.get(0).getRelationshipType(), "adopted");
+    assertEquals(refs.get(1).getRef(), "F2");
+    assertNull(refs.get(1).getRelationshipType());
+
+    assertTrue(reader.skipRecord());
+    assertNull(reader.scanParentFamilyRefs());
+    assertFalse(reader.skipRecord());
+  }
+
+  @Test
+  public void testCharsetDetection() throws Exception {
+    assertEquals(detect("0 HEAD\n1 SOUR PAF\n1 CHAR UTF-8\n"), "UTF-8");
+    assertEquals(detect("\uFEFF0 HEAD\n1 CHAR ANSEL\n"), "UTF-8");
+    assertEquals(detect("0 HEAD\n1 SOUR GeneWeb\n1 CHAR ASCII\n"), "Cp1252");
+    assertEquals(detect("0 HEAD\n1 SOUR X\n"), GedcomCharsets.ANSEL);
+  }
+
+  private static String detect(String head) throws IOException {
+    byte[] bytes = head.getBytes("UTF-8");
+    return GedcomCharsets.detect(bytes, bytes.length);
+  }
+}
@@ -1,10 +1,13 @@
 package org.gedcomx.conversion.gedcom.dq55;
 
 import java.io.File;
+import java.io.StringReader;
 import java.net.URL;
 
 import org.folg.gedcom.model.Gedcom;
 import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.conversion.ConversionDiagnostics;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
@@ -69,4 +72,37 @@ public class LanguageMappingTest {
     assertNull(result.getLang());
   }
 
+  @Test
+  public void testFromString() throws Exception {
+    assertEquals(LanguageMapping.fromString("English"), LanguageMapping.English);
+    assertEquals(LanguageMapping.fromString("ENGLISH "), LanguageMapping.English);
+    assertEquals(LanguageMapping.fromString("Anglo-Saxon"), LanguageMapping.Anglo_Saxon);
+    assertEquals(LanguageMapping.fromString("anglo_saxon"), LanguageMapping.Anglo_Saxon);
+    assertNull(LanguageMapping.fromString("Klingon"));
+    assertNull(LanguageMapping.fromString(null));
+  }
+
+  @Test
+  public void testRecordLanguage() throws Exception {
+    String file = "0 HEAD\n1 LANG English\n"
+      + "0 @I1@ INDI\n1 NAME Jean /Dupont/\n1 LANG French\n1 FAMS @F1@\n"
+      + "0 @I2@ INDI\n1 NAME Marie /Curie/\n1 FAMS @F1@\n"
+      + "0 @I3@ INDI\n1 NAME Pierre /Dupont/\n1 LANG Klingon\n"
+      + "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 LANG French\n0 TRLR\n";
+    gedcom = new ModelParser().parseGedcom(new StringReader(file));
+    gedcom.createIndexes();
+
+    TestConversionResult result = new TestConversionResult();
+    new GedcomMapper(mappingConfig).toGedcomx(gedcom, result);
+
+    assertEquals(result.getLang(), "en");
+    assertEquals(result.getPersons().get(0).getLang(), "fr");
+    assertNull(result.getPersons().get(1).getLang());
+    assertNull(result.getPersons().get(2).getLang());
+    for (Relationship relationship : result.getRelationships()) {
+      assertEquals(relationship.getLang(), "fr");
+    }
+    assertEquals(result.getDiagnostics().getIssue(ConversionDiagnostics.Category.INVALID, "LANG").getCount(), 1);
+    assertNull(result.getDiagnostics().getIssue(ConversionDiagnostics.Category.UNSUPPORTED, "LANG"));
+  }
 }
@@ -0,0 +1,148 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class MappedGedcomFileTest {
+
+  private static final String[] FILES = {
+    "Case002-Repositories.ged", "Case003-PersonsName.ged", "Case006-PersonsFacts.ged", "Case007-SourceCitations.ged",
+    "Case009-Family.ged", "Fam001.ged"
+  };
+
+  @Test
+  public void testRecordsAreTheDecodedFile() throws Exception {
+    for (String name : FILES) {
+      File file = new File(getClass().getClassLoader().getResource(name).toURI());
+      String decoded = readAll(GedcomCharsets.newReader(new FileInputStream(file)));
+      assertEquals(readRecords(MappedGedcomFile.open(file)), decoded, name);
+      // a window smaller than most records has every record remapped
+      assertEquals(readRecords(MappedGedcomFile.open(file, 64)), decoded, name);
+    }
+  }
+
+  @Test
+  public void testScanParentFamilyRefs() throws Exception {
+    File file = new File(getClass().getClassLoader().getResource("Case009-Family.ged").toURI());
+    try (MappedGedcomFile mapped = MappedGedcomFile.open(file, 64);
+         GedcomRecordReader reader = new GedcomRecordReader(GedcomCharsets.newReader(new FileInputStream(file)))) {
+      while (reader.skipRecord()) {
+        mapped.nextRecord();
+        Person expected = reader.scanParentFamilyRefs();
+        Person actual = mapped.scanParentFamilyRefs();
+        if (expected == null) {
+          assertNull(actual);
+          continue;
+        }
+        assertEquals(actual.getId(), expected.getId());
+        assertEquals(actual.getParentFamilyRefs().size(), expected.getParentFamilyRefs().size());
+        for (int i = 0; i < expected.getParentFamilyRefs().size(); i++) {
+          assertEquals(actual.getParentFamilyRefs().get(i).getRef(), expected.getParentFamilyRefs().get(i).getRef());
+          assertEquals(actual.getParentFamilyRefs().get(i).getRelationshipType(), expected.getParentFamilyRefs().get(i).getRelationshipType());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAnselRecordsAreDecoded() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write("0 HEAD\r\n1 CHAR ANSEL\r\n".getBytes("US-ASCII"));
+    for (int i = 1; i <= 20; i++) {
+      bytes.write(("0 @I" + i + "@ INDI\r\n1 NAME Jos").getBytes("US-ASCII"));
+      bytes.write(0xE2); // combining acute accent, before the letter it is on
+      bytes.write(("e /Garc").getBytes("US-ASCII"));
+      bytes.write(0xE2);
+      bytes.write(("ia/\r\n").getBytes("US-ASCII"));
+    }
+    bytes.write("0 TRLR\r\n".getBytes("US-ASCII"));
+    File file = File.createTempFile("ansel", ".ged");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      bytes.writeTo(out);
+    }
+
+    Gedcom whole = new ModelParser().parseGedcom(file);
+    MappedGedcomFile mapped = MappedGedcomFile.open(file, 64);
+    assertNotNull(mapped);
+    assertEquals(mapped.getCharsetName(), GedcomCharsets.ANSEL);
+    try (GedcomRecordReader reader = new GedcomRecordReader(mapped)) {
+      reader.nextRecord();
+      for (Person person : whole.getPeople()) {
+        Person record = reader.nextRecord().getPeople().get(0);
+        assertEquals(record.getId(), person.getId());
+        assertEquals(record.getNames().get(0).getValue(), person.getNames().get(0).getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testOnlyCharsetsWithTheBytesOfAsciiAreScanned() {
+    assertTrue(GedcomCharsets.isAsciiCompatible(GedcomCharsets.ANSEL));
+    assertTrue(GedcomCharsets.isAsciiCompatible("UTF-8"));
+    assertTrue(GedcomCharsets.isAsciiCompatible("ISO-8859-1"));
+    assertTrue(GedcomCharsets.isAsciiCompatible("windows-1252"));
+    assertTrue(GedcomCharsets.isAsciiCompatible("US-ASCII"));
+    // the second byte of a character can be an ASCII letter, or a character is more than one byte
+    assertFalse(GedcomCharsets.isAsciiCompatible("Shift_JIS"));
+    assertFalse(GedcomCharsets.isAsciiCompatible("Big5"));
+    assertFalse(GedcomCharsets.isAsciiCompatible("GB18030"));
+    assertFalse(GedcomCharsets.isAsciiCompatible("UTF-16LE"));
+    // EBCDIC
+    assertFalse(GedcomCharsets.isAsciiCompatible("IBM037"));
+  }
+
+  @Test
+  public void testUtf16FilesAreDecodedAsRead() throws Exception {
+    File file = File.createTempFile("utf16", ".ged");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("\uFEFF0 HEAD\n1 CHAR UNICODE\n0 @I1@ INDI\n1 NAME John /Doe/\n0 TRLR\n".getBytes("UTF-16LE"));
+    }
+    assertNull(MappedGedcomFile.open(file));
+
+    try (GedcomRecordReader reader = new GedcomRecordReader(file)) {
+      assertNotNull(reader.nextRecord().getHeader());
+      assertEquals(reader.nextRecord().getPeople().get(0).getId(), "I1");
+    }
+  }
+
+  private static String readRecords(MappedGedcomFile mapped) throws IOException {
+    StringBuilder records = new StringBuilder();
+    try {
+      while (mapped.nextRecord()) {
+        records.append(readAll(mapped.recordReader()));
+      }
+    }
+    finally {
+      mapped.close();
+    }
+    return records.toString();
+  }
+
+  private static String readAll(Reader reader) throws IOException {
+    StringBuilder text = new StringBuilder();
+    char[] buffer = new char[4096];
+    int read;
+    while ((read = reader.read(buffer)) > 0) {
+      text.append(buffer, 0, read);
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,60 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gedcomx.conclusion.NamePart;
+import org.gedcomx.types.NamePartType;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class NameTokenizerTest {
+
+  @Test
+  public void testFullText() {
+    assertEquals(new NameTokenizer("John /Smith/").getFullText(), "John Smith");
+    assertEquals(new NameTokenizer("John /Smith/ Jr.").getFullText(), "John Smith Jr.");
+    assertEquals(new NameTokenizer("/Smith/ John").getFullText(), "Smith John");
+    assertEquals(new NameTokenizer("John/Smith/Jr.").getFullText(), "John Smith Jr.");
+    assertEquals(new NameTokenizer("a//b").getFullText(), "a b");
+    assertEquals(new NameTokenizer("  John  ").getFullText(), "John");
+    assertEquals(new NameTokenizer("//").getFullText(), "");
+  }
+
+  @Test
+  public void testSurnameParts() {
+    assertEquals(surnames("John /Smith/ Jr."), "[Smith]");
+    assertEquals(surnames("John / Smith, Jones /"), "[Smith, Jones]");
+    assertEquals(surnames("John /Smith"), "[Smith]");
+    assertEquals(surnames("John //"), "[]");
+    assertEquals(surnames("John"), "[]");
+  }
+
+  @Test
+  public void testNameParts() {
+    List<NamePart> parts = new ArrayList<NamePart>();
+    NameTokenizer.addNameParts(parts, "John,  Paul ,,George,", NamePartType.Given);
+    NameTokenizer.addNameParts(parts, null, NamePartType.Given);
+    assertEquals(values(parts), "[John, Paul, George]");
+    assertEquals(parts.get(0).getKnownType(), NamePartType.Given);
+  }
+
+  private static String surnames(String value) {
+    List<NamePart> parts = new ArrayList<NamePart>();
+    new NameTokenizer(value).addSurnameParts(parts);
+    for (NamePart part : parts) {
+      assertEquals(part.getKnownType(), NamePartType.Surname);
+    }
+    return values(parts);
+  }
+
+  private static String values(List<NamePart> parts) {
+    List<String> values = new ArrayList<String>();
+    for (NamePart part : parts) {
+      values.add(part.getValue());
+    }
+    return values.toString();
+  }
+}
@@ -0,0 +1,102 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomTag;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.conversion.GedcomxConversionResult;
+import org.gedcomx.fileformat.JacksonJsonSerialization;
+import org.gedcomx.tools.SyntheticGedcomGenerator;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class ParallelGedcomParserTest {
+  private final ObjectMapper objectMapper = JacksonJsonSerialization.createObjectMapper(false, Ordinance.class);
+
+  @Test
+  public void testChunksMapLikeTheWholeFile() throws Exception {
+    String[] files = {"Fam001.ged", "Case003-PersonsName.ged", "Case006-PersonsFacts.ged", "Case007-SourceCitations.ged",
+      "Case008-SubmitterRecord.ged", "Case009-Family.ged", "Case010-PersonOrdinances.ged"};
+    for (String name : files) {
+      File file = new File(getClass().getClassLoader().getResource(name).toURI());
+      // chunks of a few records each
+      Gedcom parallel = new ParallelGedcomParser(4, 64, 512).parseGedcom(file);
+      parallel.createIndexes();
+      Gedcom whole = new ModelParser().parseGedcom(file);
+      whole.createIndexes();
+
+      GedcomxConversionResult expected = new GedcomMapper(new MappingConfig(name, false)).toGedcomx(whole);
+      GedcomxConversionResult actual = new GedcomMapper(new MappingConfig(name, false)).toGedcomx(parallel);
+      assertEquals(objectMapper.writeValueAsString(actual.getDataset()), objectMapper.writeValueAsString(expected.getDataset()), name);
+      assertEquals(actual.getDiagnostics().getTotal(), expected.getDiagnostics().getTotal(), name);
+    }
+  }
+
+  @Test
+  public void testChunksOfALargerFile() throws Exception {
+    File file = File.createTempFile("synthetic", ".ged");
+    file.deleteOnExit();
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    generator.setSeed(11);
+    generator.setPersons(3000);
+    generator.setExtensions(0.1);
+    generator.write(file);
+
+    Gedcom whole = new ModelParser().parseGedcom(file);
+    List<Integer> chunkSizes = new ArrayList<Integer>();
+    Gedcom parallel = new Gedcom();
+    assertTrue(new ParallelGedcomParser(3, 1 << 12, 1 << 14).parseChunks(file, chunk -> {
+      chunkSizes.add(chunk.getPeople().size());
+      ParallelGedcomParser.merge(chunk, parallel);
+    }));
+
+    assertTrue(chunkSizes.size() > 10);
+    assertEquals(parallel.getHeader().getCharacterSet().getValue(), whole.getHeader().getCharacterSet().getValue());
+    assertEquals(ids(parallel), ids(whole));
+    assertEquals(parallel.getFamilies().size(), whole.getFamilies().size());
+    assertEquals(parallel.getSources().size(), whole.getSources().size());
+    assertEquals(parallel.getNotes().size(), whole.getNotes().size());
+    assertEquals(parallel.getSubmitters().size(), whole.getSubmitters().size());
+    assertEquals(moreTags(parallel), moreTags(whole));
+  }
+
+  @Test
+  public void testUtf16FilesAreParsedWhole() throws Exception {
+    File file = File.createTempFile("utf16", ".ged");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("\uFEFF0 HEAD\n1 CHAR UNICODE\n0 @I1@ INDI\n1 NAME John /Doe/\n0 @I2@ INDI\n0 TRLR\n".getBytes("UTF-16LE"));
+    }
+    ParallelGedcomParser parser = new ParallelGedcomParser(2, 8, 8);
+    assertFalse(parser.parseChunks(file, chunk -> { throw new AssertionError(); }));
+    assertEquals(parser.parseGedcom(file).getPeople().size(), 2);
+  }
+
+  private static List<String> ids(Gedcom gedcom) {
+    List<String> ids = new ArrayList<String>();
+    gedcom.getPeople().forEach(person -> ids.add(person.getId()));
+    return ids;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> moreTags(Gedcom gedcom) {
+    List<String> tags = new ArrayList<String>();
+    Object extension = gedcom.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY);
+    if (extension != null) {
+      for (GedcomTag tag : (List<GedcomTag>) extension) {
+        tags.add(tag.getTag() + " " + tag.getId());
+      }
+    }
+    return tags;
+  }
+}
@@ -42,7 +42,6 @@ public class SourceReferenceMapperTest {
 
   @BeforeClass
   public void setUp() throws Exception {
-    SequentialIdentifierGenerator.reset();
     URL gedcomUrl = this.getClass().getClassLoader().getResource("Case007-SourceCitations.ged");
     File gedcomFile = new File(gedcomUrl.toURI());
     ModelParser modelParser = new ModelParser();
@@ -84,7 +83,7 @@ public class SourceReferenceMapperTest {
         assertNotNull(gedxSourceReference.getDescriptionRef());
         assertTrue(gedxSourceReference.getDescriptionRef().toString().startsWith("#"));
         generatedId = gedxSourceReference.getDescriptionRef().toString().substring(1);
-        assertNotNull(generatedId, "1");
+        assertEquals(generatedId, "SOUR1-FAM1-1");
         assertNull(gedxSourceReference.getAttribution());
         assertNull(gedxSourceReference.getExtensionElements());
       }
@@ -138,7 +137,7 @@ public class SourceReferenceMapperTest {
         assertNotNull(gedxSourceReference.getDescriptionRef());
         assertTrue(gedxSourceReference.getDescriptionRef().toString().startsWith("#"));
         generatedId = gedxSourceReference.getDescriptionRef().toString().substring(1);
-        assertEquals(generatedId, "SOUR-2");
+        assertEquals(generatedId, "SOUR-FAM2-1");
         assertNull(gedxSourceReference.getAttribution());
       }
     }
@@ -0,0 +1,62 @@
+package org.gedcomx.conversion.gedcom.dq55;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.familysearch.platform.ordinances.OrdinanceType;
+import org.gedcomx.types.FactType;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+public class TagTableTest {
+
+  @Test
+  public void testLookup() {
+    assertEquals(FactMapper.factTypes.get("BIRT"), FactType.Birth);
+    assertEquals(FactMapper.factTypes.get("birt"), FactType.Birth);
+    assertEquals(FactMapper.factTypes.get(" Birth\t"), FactType.Birth);
+    assertEquals(FactMapper.factTypes.get(new StringBuilder("_milt")), FactType.MilitaryService);
+    assertEquals(FactMapper.factTypes.get("_MISN"), FactType.Mission);
+    assertNull(FactMapper.factTypes.get("SEX"));
+    assertNull(FactMapper.factTypes.get("BIR"));
+    assertNull(FactMapper.factTypes.get(""));
+    assertNull(FactMapper.factTypes.get(null));
+
+    assertEquals(FactMapper.ordinanceTypes.get("SLGC"), OrdinanceType.SealingChildToParents);
+    assertEquals(FactMapper.ordinanceTypes.get("endl"), OrdinanceType.Endowment);
+    assertNull(FactMapper.ordinanceTypes.get("BIRT"));
+  }
+
+  @Test
+  public void testCustomResources() {
+    TagTable<FactType> table = TagTable.load("fact-types.properties", "tag-table-test.properties", FactType::valueOf);
+    assertEquals(table.size(), FactMapper.factTypes.size() + 1);
+    assertEquals(table.get("_mybirth"), FactType.Birth);
+    assertEquals(table.get("OCCU"), FactType.Education);
+    assertEquals(table.get("BIRT"), FactType.Birth);
+  }
+
+  @Test
+  public void testCollisions() {
+    Map<String, Integer> entries = new LinkedHashMap<String, Integer>();
+    for (int i = 0; i < 1000; i++) {
+      entries.put("T" + i, i);
+    }
+    TagTable<Integer> table = new TagTable<Integer>(entries);
+    assertEquals(table.size(), 1000);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(table.get("t" + i), Integer.valueOf(i));
+    }
+    assertNull(table.get("T1000"));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testInvalidValue() {
+    TagTable.load("fact-types.properties", "tag-table-test.properties", value -> {
+      throw new IllegalArgumentException(value);
+    });
+  }
+}
@@ -7,6 +7,7 @@ import org.gedcomx.Gedcomx;
 import org.gedcomx.agent.Agent;
 import org.gedcomx.conclusion.Person;
 import org.gedcomx.conclusion.Relationship;
+import org.gedcomx.conversion.ConversionDiagnostics;
 import org.gedcomx.conversion.GedcomxConversionResult;
 import org.gedcomx.source.SourceDescription;
 
@@ -26,6 +27,7 @@ public class TestConversionResult implements GedcomxConversionResult {
   private List<org.gedcomx.agent.Agent> contributors = new ArrayList<org.gedcomx.agent.Agent>();
   private List<Agent> organizations = new ArrayList<Agent>();
   private String langCode = null;
+  private ConversionDiagnostics diagnostics = new ConversionDiagnostics();
 
   @Override
   public Gedcomx getDataset() {
@@ -91,6 +93,11 @@ public class TestConversionResult implements GedcomxConversionResult {
     this.langCode = langCode;
   }
 
+  @Override
+  public ConversionDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
   public Map<String, String> getEntryAttributes(String entryName) {
     return entryAttributes.get(entryName);
   }
@@ -0,0 +1,103 @@
+package org.gedcomx.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarFile;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class ConversionServerTest {
+
+  @Test
+  public void testConvertsTheFilesItIsSent() throws Exception {
+    File directory = Files.createTempDirectory("conversion-server-").toFile();
+    File fam001 = new File(directory, "Fam001.ged");
+    File case009 = new File(directory, "Case009-Family.ged");
+    File missing = new File(directory, "missing.ged");
+    File case009Out = new File(directory, "other.gedx");
+    File outside = new File(directory.getParentFile(), directory.getName() + ".gedx");
+    for (File file : new File[]{fam001, case009}) {
+      URL gedcomUrl = this.getClass().getClassLoader().getResource(file.getName());
+      Files.copy(new File(gedcomUrl.toURI()).toPath(), file.toPath());
+    }
+
+    ConversionServer server = new ConversionServer(new Gedcom2Gedcomx(), 0, 2, directory);
+    ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread serving = new Thread(() -> {
+      try {
+        server.serve(serverSocket);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    serving.start();
+
+    try {
+      Set<String> answers = new HashSet<>();
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(fam001.getPath() + "\n");
+        out.write(case009.getPath() + "\t" + case009Out.getPath() + "\n");
+        out.write(missing.getPath() + "\n");
+        // relative to the root directory of the server
+        out.write("Fam001.ged\tFam001-relative.gedx\n");
+        out.write(fam001.getPath() + "\t" + outside.getPath() + "\n");
+        out.write("../" + directory.getName() + "/../" + fam001.getName() + "\n");
+        out.flush();
+        socket.shutdownOutput();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+          answers.add(line.replaceAll(" \\(\\d+ ms\\)$", ""));
+        }
+      }
+
+      assertEquals(answers.size(), 6);
+      assertTrue(answers.contains("OK " + fam001.getPath()), answers.toString());
+      assertTrue(answers.contains("OK " + case009.getPath()), answers.toString());
+      assertTrue(answers.contains("FAILED " + missing.getPath() + ": no such file."), answers.toString());
+      assertTrue(answers.contains("OK Fam001.ged"), answers.toString());
+      assertTrue(answers.contains("FAILED " + fam001.getPath() + ": the output file is outside of the root directory of the server."), answers.toString());
+      assertTrue(answers.contains("FAILED ../" + directory.getName() + "/../" + fam001.getName() + ": outside of the root directory of the server."), answers.toString());
+
+      try (JarFile gedx = new JarFile(new File(directory, "Fam001.gedx"))) {
+        assertNotNull(gedx.getEntry("tree.json"));
+      }
+      try (JarFile gedx = new JarFile(case009Out)) {
+        assertNotNull(gedx.getEntry("tree.json"));
+      }
+      try (JarFile gedx = new JarFile(new File(directory, "Fam001-relative.gedx"))) {
+        assertNotNull(gedx.getEntry("tree.json"));
+      }
+      assertFalse(new File(directory, "Case009-Family.gedx").exists());
+      assertFalse(outside.exists());
+    }
+    finally {
+      outside.delete();
+      serverSocket.close();
+      serving.join(10000);
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package org.gedcomx.tools;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.JarFile;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class DirectoryWatcherTest {
+
+  @Test
+  public void testConvertsNewFilesOnce() throws Exception {
+    File input = Files.createTempDirectory("watch-in-").toFile();
+    File output = Files.createTempDirectory("watch-out-").toFile();
+    try {
+      copy("Case009-Family.ged", input);
+
+      // the file that is there when the watcher starts, then one that is added while it is watching
+      DirectoryWatcher watcher = new DirectoryWatcher(new Gedcom2Gedcomx(), input, output, 1, 100);
+      Thread watching = start(watcher);
+      waitFor(new File(output, "Case009-Family.gedx"));
+      copy("Fam001.ged", input);
+      waitFor(new File(output, "Fam001.gedx"));
+      watcher.stop();
+      watching.join(20000);
+      assertEquals(watcher.getConversions(), 2);
+
+      try (JarFile gedx = new JarFile(new File(output, "Fam001.gedx"))) {
+        assertNotNull(gedx.getEntry("tree.json"));
+      }
+      String state = new String(Files.readAllBytes(new File(output, DirectoryWatcher.STATE_FILE_NAME).toPath()), StandardCharsets.UTF_8);
+      assertTrue(state.contains("Fam001.ged\t"), state);
+      assertTrue(state.contains("Case009-Family.ged\t"), state);
+
+      // a restart doesn't convert the files again, unless they changed
+      DirectoryWatcher restarted = new DirectoryWatcher(new Gedcom2Gedcomx(), input, output, 1, 100);
+      watching = start(restarted);
+      Thread.sleep(500);
+      assertEquals(restarted.getConversions(), 0);
+      File fam001 = new File(input, "Fam001.ged");
+      Files.write(fam001.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      long deadline = System.currentTimeMillis() + 20000;
+      while (restarted.getConversions() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      restarted.stop();
+      watching.join(20000);
+      assertEquals(restarted.getConversions(), 1);
+      assertEquals(output.listFiles((dir, name) -> name.endsWith(".tmp")).length, 0);
+    }
+    finally {
+      for (File directory : new File[]{input, output}) {
+        for (File file : directory.listFiles()) {
+          file.delete();
+        }
+        directory.delete();
+      }
+    }
+  }
+
+  private void copy(String resource, File directory) throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource(resource);
+    Files.copy(new File(gedcomUrl.toURI()).toPath(), new File(directory, resource).toPath());
+  }
+
+  private static Thread start(DirectoryWatcher watcher) {
+    Thread watching = new Thread(() -> {
+      try {
+        watcher.watch();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    watching.setDaemon(true);
+    watching.start();
+    return watching;
+  }
+
+  private static void waitFor(File file) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 20000;
+    while (!file.exists() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertTrue(file.exists(), file.toString());
+  }
+}
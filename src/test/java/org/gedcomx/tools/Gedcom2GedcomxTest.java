@@ -0,0 +1,133 @@
+package org.gedcomx.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.familysearch.platform.ordinances.Ordinance;
+import org.gedcomx.conversion.SmileSerialization;
+import org.gedcomx.rt.GedcomxConstants;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class Gedcom2GedcomxTest {
+
+  @Test
+  public void testRawCopyKeepsTheEntriesAndTheManifest() throws Exception {
+    File directory = Files.createTempDirectory("raw-copy-").toFile();
+    try {
+      File gedx = convert(directory);
+      File copy = new File(directory, "copy.gedx");
+      Gedcom2Gedcomx.main(new String[]{"-ix", gedx.getPath(), "-o", copy.getPath(), "-rc"});
+
+      try (JarFile original = new JarFile(gedx); JarFile copied = new JarFile(copy)) {
+        assertEquals(copied.getManifest().getMainAttributes(), original.getManifest().getMainAttributes());
+        assertTrue(copied.getManifest().getMainAttributes().getValue("X-DC-creator").startsWith("tree.json#"));
+        assertEquals(copied.getManifest().getEntries(), original.getManifest().getEntries());
+
+        int entries = 0;
+        for (Enumeration<JarEntry> e = original.entries(); e.hasMoreElements(); ) {
+          JarEntry entry = e.nextElement();
+          if (!entry.getName().equals(JarFile.MANIFEST_NAME)) {
+            JarEntry copiedEntry = copied.getJarEntry(entry.getName());
+            assertNotNull(copiedEntry, entry.getName());
+            assertEquals(read(copied, copiedEntry), read(original, entry), entry.getName());
+            entries++;
+          }
+        }
+        assertEquals(entries, 2);
+      }
+    }
+    finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testRawCopyTranscodesToSmile() throws Exception {
+    File directory = Files.createTempDirectory("raw-copy-").toFile();
+    try {
+      File gedx = convert(directory);
+      File copy = new File(directory, "copy.gedx");
+      Gedcom2Gedcomx.main(new String[]{"-ix", gedx.getPath(), "-o", copy.getPath(), "-rc", "-f", "smile"});
+
+      try (JarFile original = new JarFile(gedx); JarFile copied = new JarFile(copy)) {
+        Attributes originalMain = original.getManifest().getMainAttributes();
+        Attributes copiedMain = copied.getManifest().getMainAttributes();
+        String contributor = originalMain.getValue("X-DC-creator").substring("tree.json".length());
+        assertEquals(copiedMain.getValue("X-DC-creator"), "tree.smile" + contributor);
+        assertEquals(copiedMain.getValue("X-DC-created"), originalMain.getValue("X-DC-created"));
+        assertEquals(copiedMain.getValue("X-DC-conformsTo"), originalMain.getValue("X-DC-conformsTo"));
+
+        assertNull(copied.getJarEntry("tree.json"));
+        assertNull(copied.getManifest().getAttributes("tree.json"));
+        Attributes tree = copied.getManifest().getAttributes("tree.smile");
+        assertEquals(tree.getValue(Attributes.Name.CONTENT_TYPE), SmileSerialization.SMILE_MEDIA_TYPE);
+        assertEquals(tree.getValue("X-DC-modified"), original.getManifest().getAttributes("tree.json").getValue("X-DC-modified"));
+
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper smile = SmileSerialization.createObjectMapper(Ordinance.class);
+        JsonNode expected = json.readTree(read(original, original.getJarEntry("tree.json")));
+        JsonNode actual = smile.readTree(read(copied, copied.getJarEntry("tree.smile")));
+        assertEquals(actual, expected);
+
+        // the entries that aren't GEDCOM X JSON are copied as they are
+        assertEquals(copied.getManifest().getAttributes("diagnostics.json"), original.getManifest().getAttributes("diagnostics.json"));
+        assertEquals(read(copied, copied.getJarEntry("diagnostics.json")), read(original, original.getJarEntry("diagnostics.json")));
+        assertNotEquals(copied.getManifest().getAttributes("diagnostics.json").getValue(Attributes.Name.CONTENT_TYPE), GedcomxConstants.GEDCOMX_JSON_MEDIA_TYPE);
+      }
+    }
+    finally {
+      delete(directory);
+    }
+  }
+
+  /**
+   * @return a GEDCOM X file with a contributor, a tree and a diagnostics entry
+   */
+  private File convert(File directory) throws Exception {
+    File gedcom = new File(directory, "Case008-SubmitterRecord.ged");
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("Case008-SubmitterRecord.ged")) {
+      Files.copy(in, gedcom.toPath());
+    }
+    File gedx = new File(directory, "Case008-SubmitterRecord.gedx");
+    Gedcom2Gedcomx.main(new String[]{"-i", gedcom.getPath(), "-o", gedx.getPath(), "-d"});
+    try (JarFile jar = new JarFile(gedx)) {
+      assertNotNull(jar.getManifest().getMainAttributes().getValue("X-DC-creator"));
+      assertNotNull(jar.getJarEntry("diagnostics.json"));
+    }
+    return gedx;
+  }
+
+  private static byte[] read(JarFile jar, JarEntry entry) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (InputStream in = jar.getInputStream(entry)) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        bytes.write(buffer, 0, read);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void delete(File directory) {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+}
@@ -0,0 +1,147 @@
+package org.gedcomx.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.folg.gedcom.model.ChildRef;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.SpouseRef;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedcomx.Gedcomx;
+import org.gedcomx.conversion.ConversionDiagnostics;
+import org.gedcomx.conversion.GedcomxConversionResult;
+import org.gedcomx.conversion.gedcom.dq55.GedcomMapper;
+import org.gedcomx.conversion.gedcom.dq55.MappingConfig;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+public class SyntheticGedcomGeneratorTest {
+
+  @Test
+  public void testSameSeedGeneratesSameFile() throws Exception {
+    byte[] first = generate(generator(42, 500));
+    byte[] second = generate(generator(42, 500));
+    byte[] other = generate(generator(43, 500));
+    assertTrue(Arrays.equals(first, second));
+    assertFalse(Arrays.equals(first, other));
+  }
+
+  @Test
+  public void testTreeLinksUp() throws Exception {
+    SyntheticGedcomGenerator generator = generator(7, 2000);
+    generator.setBadData(0);
+    Gedcom gedcom = parse(generate(generator));
+
+    assertEquals(gedcom.getPeople().size(), 2000);
+    assertTrue(gedcom.getFamilies().size() > 0);
+    assertTrue(gedcom.getSources().size() > 0);
+    for (Family family : gedcom.getFamilies()) {
+      for (SpouseRef husband : family.getHusbandRefs()) {
+        assertNotNull(gedcom.getPerson(husband.getRef()), husband.getRef());
+      }
+      for (ChildRef child : family.getChildRefs()) {
+        Person person = gedcom.getPerson(child.getRef());
+        assertNotNull(person, child.getRef());
+        assertEquals(person.getParentFamilyRefs().get(0).getRef(), family.getId());
+      }
+    }
+
+    // the children of earlier families marry into later ones
+    int married = 0;
+    for (Person person : gedcom.getPeople()) {
+      if (!person.getParentFamilyRefs().isEmpty() && !person.getSpouseFamilyRefs().isEmpty()) {
+        married++;
+      }
+    }
+    assertTrue(married > 0);
+  }
+
+  @Test
+  public void testBadDataIsReported() throws Exception {
+    SyntheticGedcomGenerator generator = generator(3, 1000);
+    generator.setBadData(0.2);
+    Gedcom gedcom = parse(generate(generator));
+
+    GedcomxConversionResult result = new GedcomMapper(new MappingConfig("synthetic.ged", false)).toGedcomx(gedcom);
+    Gedcomx gedcomx = result.getDataset();
+    assertEquals(gedcomx.getPersons().size(), 1000);
+    ConversionDiagnostics diagnostics = result.getDiagnostics();
+    assertNotNull(diagnostics.getIssue(ConversionDiagnostics.Category.INVALID, "SEX"));
+    assertNotNull(diagnostics.getIssue(ConversionDiagnostics.Category.INVALID, "DATE"));
+    assertNotNull(diagnostics.getIssue(ConversionDiagnostics.Category.UNRESOLVED, "CHIL"));
+  }
+
+  @Test
+  public void testNoCitationsOrNotes() throws Exception {
+    SyntheticGedcomGenerator generator = generator(5, 100);
+    generator.setCitationsPerFact(0);
+    generator.setNotes(0);
+    generator.setSources(0);
+    Gedcom gedcom = parse(generate(generator));
+    assertEquals(gedcom.getPeople().size(), 100);
+    assertTrue(gedcom.getSources().isEmpty());
+    assertTrue(gedcom.getNotes().isEmpty());
+  }
+
+  @Test
+  public void testNothingHappensAfterTheDateOfTheFile() throws Exception {
+    SyntheticGedcomGenerator generator = generator(11, 20000);
+    generator.setMarriageRate(1);
+    generator.setBadData(0);
+    String[] lines = new String(generate(generator), StandardCharsets.UTF_8).split("\n");
+
+    int latest = 0;
+    for (String line : lines) {
+      if (line.startsWith("2 DATE ")) {
+        latest = Math.max(latest, Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1)));
+      }
+    }
+    assertEquals(latest, 2019);
+  }
+
+  @Test
+  public void testInvalidSettings() throws Exception {
+    assertNull(generator(1, 0).checkSettings());
+    assertNotNull(generator(1, -1).checkSettings());
+    SyntheticGedcomGenerator generator = generator(1, 10);
+    generator.setMarriageRate(1.5);
+    assertNotNull(generator.checkSettings());
+    try {
+      generate(generator(1, -5));
+      fail();
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static SyntheticGedcomGenerator generator(long seed, int persons) {
+    SyntheticGedcomGenerator generator = new SyntheticGedcomGenerator();
+    generator.setSeed(seed);
+    generator.setPersons(persons);
+    return generator;
+  }
+
+  private static byte[] generate(SyntheticGedcomGenerator generator) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    generator.write(out);
+    return out.toByteArray();
+  }
+
+  private static Gedcom parse(byte[] file) throws Exception {
+    Gedcom gedcom = new ModelParser().parseGedcom(new ByteArrayInputStream(file));
+    gedcom.createIndexes();
+    return gedcom;
+  }
+}